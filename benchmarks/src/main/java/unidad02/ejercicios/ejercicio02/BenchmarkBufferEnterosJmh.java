@@ -0,0 +1,125 @@
+package unidad02.ejercicios.ejercicio02;
+
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark JMH de los buffers de int (BufferEnterosBloqueante y BufferEnterosAnillo) frente a los de
+ * Integer (BufferBQ y BufferAnillo), pasando valores fuera de la caché de Integer como BenchmarkBufferEnteros.
+ *
+ * Igual que BenchmarkBufferJmh: cada grupo es un buffer compartido con productores y consumidores, y se
+ * usan offerInt/pollInt (u offer/poll) con tiempo máximo para que ningún lado se quede esperando al acabar
+ * la iteración. Con -prof gc se ve lo que reserva cada elemento: unos 16 bytes con Integer y 0 con int.
+ *
+ * Parámetros (con -p nombre=valor1,valor2):
+ *  - implementacion: BufferEnterosBloqueante, BufferEnterosAnillo, BufferBQ, BufferAnillo.
+ *  - capacidad: 22 (la de Main) y 1024.
+ * El número de productores y consumidores se elige con -tg productores,consumidores (por defecto 1,1).
+ *
+ * Ejemplo: java -jar target/benchmarks.jar BenchmarkBufferEnterosJmh -tg 2,2 -prof gc
+ *
+ * @author Miguel Angel Ramirez
+ */
+@State(Scope.Group)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BenchmarkBufferEnterosJmh {
+
+    private static final long ESPERA_MS = 10;
+    // Los valores empiezan por encima de la caché de Integer (-128..127).
+    private static final int PRIMER_VALOR = 1000;
+
+    @Param({ "BufferEnterosBloqueante", "BufferEnterosAnillo", "BufferBQ", "BufferAnillo" })
+    public String implementacion;
+
+    @Param({ "22", "1024" })
+    public int capacidad;
+
+    // Solo uno de los dos es distinto de null.
+    private BufferEnteros enteros;
+    private BufferInterface<Integer> objetos;
+
+    /**
+     * Crea el buffer del grupo según los parámetros.
+     */
+    @Setup(Level.Trial)
+    public void crearBuffer() {
+        switch (implementacion) {
+            case "BufferEnterosBloqueante" -> enteros = new BufferEnterosBloqueante(capacidad);
+            case "BufferEnterosAnillo" -> enteros = new BufferEnterosAnillo(capacidad);
+            default -> objetos = SimuladorBuffer.crearBuffer(implementacion, capacidad);
+        }
+    }
+
+    /**
+     * Contadores de cada hilo, como en BenchmarkBufferJmh.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Contadores {
+        public long puestos;
+        public long sacados;
+        public long agotados;
+        private int siguiente;
+    }
+
+    /**
+     * Un productor: mete un valor.
+     */
+    @Benchmark
+    @Group("pasarEnteros")
+    @GroupThreads(1)
+    public boolean producir(Contadores contadores) throws InterruptedException {
+        int valor = PRIMER_VALOR + (contadores.siguiente++ & 0xFFFF);
+        boolean metido = enteros != null
+                ? enteros.offerInt(valor, ESPERA_MS, TimeUnit.MILLISECONDS)
+                : objetos.offer(valor, ESPERA_MS, TimeUnit.MILLISECONDS);
+        if (metido) {
+            contadores.puestos++;
+        } else {
+            contadores.agotados++;
+        }
+        return metido;
+    }
+
+    /**
+     * Un consumidor: saca un valor y lo devuelve como int, como lo usaría quien lo consume.
+     */
+    @Benchmark
+    @Group("pasarEnteros")
+    @GroupThreads(1)
+    public long consumir(Contadores contadores) throws InterruptedException {
+        long valor;
+        if (enteros != null) {
+            valor = enteros.pollInt(ESPERA_MS, TimeUnit.MILLISECONDS);
+        } else {
+            Integer elemento = objetos.poll(ESPERA_MS, TimeUnit.MILLISECONDS);
+            valor = elemento != null ? elemento : BufferEnteros.VACIO;
+        }
+        if (valor != BufferEnteros.VACIO) {
+            contadores.sacados++;
+        } else {
+            contadores.agotados++;
+        }
+        return valor;
+    }
+}
@@ -0,0 +1,130 @@
+package unidad02.ejercicios.ejercicio02;
+
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark JMH de todas las implementaciones de BufferInterface, sin los sleep de ProductorEnteros y
+ * ConsumidorEnteros que dominan el tiempo de Main y MainBQ.
+ *
+ * Cada grupo de JMH es un buffer compartido con productores (producir) y consumidores (consumir).
+ * Se mide en dos modos:
+ *  - Throughput: operaciones/s de cada lado; los contadores puestos/sacados cuentan solo las que
+ *    de verdad han pasado un elemento.
+ *  - SampleTime: latencia de cada put/get, con percentiles (incluye lo que se espera con el buffer
+ *    lleno o vacío).
+ *
+ * Se usan offer/poll con tiempo máximo en vez de put/get: al acabar cada iteración JMH deja de llamar
+ * a un lado antes que al otro, y un put() sin tiempo se quedaría esperando para siempre.
+ *
+ * Parámetros (con -p nombre=valor1,valor2):
+ *  - implementacion: Buffer, BufferBQ, BufferCondiciones, BufferCondicionesJusto, BufferAnillo,
+ *    BufferAdaptativo (crece hasta la capacidad).
+ *  - capacidad: 22 (la de Main) y 1024.
+ *  - carga: entero (Integer de la caché, sin crear objetos), bloque64 y bloque1024 (un byte[] nuevo
+ *    por elemento, como un productor que genera datos de verdad; con -prof gc se ve lo que cuesta).
+ * El número de productores y consumidores se elige con -tg productores,consumidores (por defecto 1,1).
+ *
+ * Ejemplo: java -jar target/benchmarks.jar BenchmarkBufferJmh -tg 4,4 -p capacidad=22 -prof gc
+ *
+ * @author Miguel Angel Ramirez
+ */
+@State(Scope.Group)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BenchmarkBufferJmh {
+
+    // Lo bastante largo para no fallar por un cambio de contexto, lo bastante corto para acabar la iteración.
+    private static final long ESPERA_MS = 10;
+
+    @Param({ "Buffer", "BufferBQ", "BufferCondiciones", "BufferCondicionesJusto", "BufferAnillo", "BufferAdaptativo" })
+    public String implementacion;
+
+    @Param({ "22", "1024" })
+    public int capacidad;
+
+    @Param({ "entero", "bloque64", "bloque1024" })
+    public String carga;
+
+    private BufferInterface<Object> buffer;
+    // 0 para enteros, si no el tamaño del byte[] de cada elemento.
+    private int tamBloque;
+
+    /**
+     * Crea el buffer del grupo según los parámetros.
+     */
+    @Setup(Level.Trial)
+    public void crearBuffer() {
+        buffer = SimuladorBuffer.crearBuffer(implementacion, capacidad);
+        tamBloque = switch (carga) {
+            case "entero" -> 0;
+            case "bloque64" -> 64;
+            case "bloque1024" -> 1024;
+            default -> throw new IllegalArgumentException("Carga desconocida: " + carga);
+        };
+    }
+
+    /**
+     * Contadores de cada hilo que JMH muestra junto al resultado: solo las operaciones que han pasado
+     * un elemento, y las que se han rendido por tiempo (normalmente solo al final de cada iteración).
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Contadores {
+        public long puestos;
+        public long sacados;
+        public long agotados;
+        private int siguiente;
+    }
+
+    /**
+     * Un productor: mete un elemento nuevo.
+     */
+    @Benchmark
+    @Group("pasarElementos")
+    @GroupThreads(1)
+    public boolean producir(Contadores contadores) throws InterruptedException {
+        Object elemento = tamBloque == 0 ? Integer.valueOf(contadores.siguiente++ & 127) : new byte[tamBloque];
+        if (buffer.offer(elemento, ESPERA_MS, TimeUnit.MILLISECONDS)) {
+            contadores.puestos++;
+            return true;
+        }
+        contadores.agotados++;
+        return false;
+    }
+
+    /**
+     * Un consumidor: saca un elemento. JMH se queda con el resultado para que no se elimine la llamada.
+     */
+    @Benchmark
+    @Group("pasarElementos")
+    @GroupThreads(1)
+    public Object consumir(Contadores contadores) throws InterruptedException {
+        Object elemento = buffer.poll(ESPERA_MS, TimeUnit.MILLISECONDS);
+        if (elemento != null) {
+            contadores.sacados++;
+        } else {
+            contadores.agotados++;
+        }
+        return elemento;
+    }
+}
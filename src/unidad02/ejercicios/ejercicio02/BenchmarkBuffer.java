@@ -0,0 +1,109 @@
+package unidad02.ejercicios.ejercicio02;
+
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Compara las implementaciones de BufferInterface (Buffer, BufferBQ, BufferCondiciones y BufferAnillo)
+ * con el mismo esquema que Main: varios productores y varios consumidores sobre un buffer compartido.
+ *
+ * A diferencia de ProductorEnteros y ConsumidorEnteros, aquí no hay sleep ni mensajes por elemento,
+ * así que lo que se mide es solo el coste de pasar elementos por el buffer. Los buffers se usan sin
+ * EscuchaBuffer, así que las esperas no se apuntan en ningún sitio.
+ *
+ * Con lote mayor que 1 se mide también a los consumidores sacando por lotes (get() y después drainTo()).
+ *
+ * Uso: BenchmarkBuffer [elementos=2000000] [capacidad=1024] [productores=4] [consumidores=4] [repeticiones=3]
+ *                      [lote=1]
+ *
+ * @author Miguel Angel Ramirez
+ */
+public class BenchmarkBuffer {
+
+    public static void main(String[] args) throws InterruptedException {
+        int elementos = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int capacidad = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+        int productores = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int consumidores = args.length > 3 ? Integer.parseInt(args[3]) : 4;
+        int repeticiones = args.length > 4 ? Integer.parseInt(args[4]) : 3;
+        int lote = args.length > 5 ? Integer.parseInt(args[5]) : 1;
+        // Cada productor y cada consumidor mueve la misma cantidad de elementos.
+        elementos = elementos / (productores * consumidores) * productores * consumidores;
+
+        String[] nombres = { "Buffer (wait/notifyAll)", "BufferBQ (ArrayBlockingQueue)",
+                "BufferCondiciones (signal)", "BufferAnillo (sin locks)" };
+        List<IntFunction<BufferInterface<Integer>>> fabricas = List.of(Buffer::new, BufferBQ::new,
+                BufferCondiciones::new, BufferAnillo::new);
+
+        System.out.println("--- " + elementos + " elementos, capacidad " + capacidad + ", " + productores
+                + " productores, " + consumidores + " consumidores, "
+                + Runtime.getRuntime().availableProcessors() + " CPUs ---");
+        int[] lotes = lote > 1 ? new int[] { 1, lote } : new int[] { 1 };
+        for (int i = 0; i < fabricas.size(); i++) {
+            for (int tamLote : lotes) {
+                // Una vuelta de calentamiento que no se cuenta.
+                medir(fabricas.get(i), elementos / 10, capacidad, productores, consumidores, tamLote);
+                long mejor = Long.MAX_VALUE;
+                for (int r = 0; r < repeticiones; r++) {
+                    mejor = Math.min(mejor,
+                            medir(fabricas.get(i), elementos, capacidad, productores, consumidores, tamLote));
+                }
+                System.out.printf("%-30s %-10s %8.1f ms %12.0f elementos/s%n", nombres[i],
+                        tamLote > 1 ? "lotes " + tamLote : "de 1 en 1", mejor / 1e6, elementos / (mejor / 1e9));
+            }
+        }
+    }
+
+    /**
+     * Pasa los elementos por un buffer nuevo y devuelve los nanosegundos que ha tardado.
+     * La usa también BenchmarkContencion.
+     */
+    static long medir(IntFunction<BufferInterface<Integer>> fabrica, int elementos, int capacidad,
+                              int productores, int consumidores, int lote) throws InterruptedException {
+        BufferInterface<Integer> buffer = fabrica.apply(capacidad);
+        int porProductor = elementos / productores;
+        int porConsumidor = elementos / consumidores;
+
+        List<Thread> hilos = new ArrayList<>();
+        for (int p = 0; p < productores; p++) {
+            hilos.add(new Thread(() -> {
+                try {
+                    for (int i = 0; i < porProductor; i++) {
+                        // Valores de la caché de Integer, para no medir la creación de objetos.
+                        buffer.put(i & 127);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "Productor-" + (p + 1)));
+        }
+        for (int c = 0; c < consumidores; c++) {
+            hilos.add(new Thread(() -> {
+                List<Integer> sacados = new ArrayList<>(lote);
+                try {
+                    for (int i = 0; i < porConsumidor; i += sacados.size()) {
+                        sacados.clear();
+                        sacados.add(buffer.get());
+                        if (lote > 1) {
+                            // Sin pasarse de los que le tocan, para que todos los consumidores terminen.
+                            buffer.drainTo(sacados, Math.min(lote, porConsumidor - i) - 1);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }, "Consumidor-" + (c + 1)));
+        }
+
+        long inicio = System.nanoTime();
+        for (Thread hilo : hilos) {
+            hilo.start();
+        }
+        for (Thread hilo : hilos) {
+            hilo.join();
+        }
+        return System.nanoTime() - inicio;
+    }
+}
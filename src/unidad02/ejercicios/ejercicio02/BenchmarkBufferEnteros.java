@@ -0,0 +1,141 @@
+package unidad02.ejercicios.ejercicio02;
+
+
+import com.sun.management.ThreadMXBean;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compara los buffers de Integer (BufferBQ y BufferAnillo) con los de int (BufferEnterosBloqueante
+ * y BufferEnterosAnillo) pasando valores que no están en la caché de Integer, como haría un productor real.
+ *
+ * Los hilos son ProductorPrimitivo y ConsumidorPrimitivo; los buffers de Integer se les pasan a través de
+ * un adaptador que convierte cada int en Integer al meterlo, como haría quien usa BufferInterface.
+ *
+ * Además del tiempo muestra los bytes reservados por elemento, sumando lo que ha reservado cada hilo
+ * productor y consumidor (ThreadMXBean.getCurrentThreadAllocatedBytes()). Con Integer son unos 16 bytes
+ * por elemento más lo que reserve el buffer; con int debería ser casi 0.
+ *
+ * Uso: BenchmarkBufferEnteros [elementos=2000000] [capacidad=1024] [productores=2] [consumidores=2] [repeticiones=3]
+ *
+ * @author Miguel Angel Ramirez
+ */
+public class BenchmarkBufferEnteros {
+    // Los valores empiezan por encima de la caché de Integer (-128..127).
+    private static final int PRIMER_VALOR = 1000;
+
+    private static final ThreadMXBean HILOS = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * Un buffer de Integer visto como BufferEnteros, para usarlo con ProductorPrimitivo y ConsumidorPrimitivo.
+     */
+    private static class AdaptadorInteger implements BufferEnteros {
+        private final BufferInterface<Integer> buffer;
+
+        private AdaptadorInteger(BufferInterface<Integer> buffer) {
+            this.buffer = buffer;
+        }
+
+        public void putInt(int valor) throws InterruptedException { buffer.put(valor); }
+        public int getInt() throws InterruptedException { return buffer.get(); }
+
+        public boolean offerInt(int valor, long tiempo, TimeUnit unidad) throws InterruptedException {
+            return buffer.offer(valor, tiempo, unidad);
+        }
+
+        public long pollInt(long tiempo, TimeUnit unidad) throws InterruptedException {
+            Integer valor = buffer.poll(tiempo, unidad);
+            return valor != null ? valor : VACIO;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int elementos = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int capacidad = args.length > 1 ? Integer.parseInt(args[1]) : 1024;
+        int productores = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        int consumidores = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+        int repeticiones = args.length > 4 ? Integer.parseInt(args[4]) : 3;
+        elementos = elementos / (productores * consumidores) * productores * consumidores;
+
+        System.out.println("--- " + elementos + " elementos, capacidad " + capacidad + ", " + productores
+                + " productores, " + consumidores + " consumidores ---");
+        for (String nombre : new String[] { "BufferBQ<Integer>", "BufferAnillo<Integer>",
+                "BufferEnterosBloqueante", "BufferEnterosAnillo" }) {
+            medir(nombre, elementos / 10, capacidad, productores, consumidores); // Calentamiento.
+            long[] mejor = { Long.MAX_VALUE, 0 };
+            for (int r = 0; r < repeticiones; r++) {
+                long[] medida = medir(nombre, elementos, capacidad, productores, consumidores);
+                if (medida[0] < mejor[0]) mejor = medida;
+            }
+            System.out.printf("%-26s %8.1f ms %12.0f elementos/s %8.1f bytes/elemento%n",
+                    nombre, mejor[0] / 1e6, elementos / (mejor[0] / 1e9), (double) mejor[1] / elementos);
+        }
+    }
+
+    private static BufferEnteros crear(String nombre, int capacidad) {
+        switch (nombre) {
+            case "BufferBQ<Integer>": return new AdaptadorInteger(new BufferBQ<>(capacidad));
+            case "BufferAnillo<Integer>": return new AdaptadorInteger(new BufferAnillo<>(capacidad));
+            case "BufferEnterosBloqueante": return new BufferEnterosBloqueante(capacidad);
+            default: return new BufferEnterosAnillo(capacidad);
+        }
+    }
+
+    /**
+     * Pasa los elementos por un buffer nuevo.
+     *
+     * @return Nanosegundos que ha tardado y bytes reservados por los hilos.
+     */
+    private static long[] medir(String nombre, int elementos, int capacidad, int productores, int consumidores)
+            throws InterruptedException {
+        BufferEnteros buffer = crear(nombre, capacidad);
+        int porProductor = elementos / productores;
+        int porConsumidor = elementos / consumidores;
+        LongAdder reservados = new LongAdder();
+        List<ConsumidorPrimitivo> consumidoresCreados = new ArrayList<>();
+
+        List<Thread> hilos = new ArrayList<>();
+        for (int p = 0; p < productores; p++) {
+            ProductorPrimitivo productor = new ProductorPrimitivo(buffer, PRIMER_VALOR, porProductor);
+            hilos.add(new Thread(() -> medirReservas(productor, reservados), "Productor-" + (p + 1)));
+        }
+        for (int c = 0; c < consumidores; c++) {
+            ConsumidorPrimitivo consumidor = new ConsumidorPrimitivo(buffer, porConsumidor);
+            consumidoresCreados.add(consumidor);
+            hilos.add(new Thread(() -> medirReservas(consumidor, reservados), "Consumidor-" + (c + 1)));
+        }
+
+        long inicio = System.nanoTime();
+        for (Thread hilo : hilos) {
+            hilo.start();
+        }
+        for (Thread hilo : hilos) {
+            hilo.join();
+        }
+        long nanos = System.nanoTime() - inicio;
+
+        long esperada = (long) productores * ((long) PRIMER_VALOR * porProductor
+                + (long) porProductor * (porProductor - 1) / 2);
+        long suma = 0;
+        for (ConsumidorPrimitivo consumidor : consumidoresCreados) {
+            suma += consumidor.getSuma();
+        }
+        if (suma != esperada) {
+            throw new IllegalStateException(nombre + ": se han perdido o repetido elementos");
+        }
+        return new long[] { nanos, reservados.sum() };
+    }
+
+    /**
+     * Ejecuta un productor o consumidor en el hilo actual y suma lo que ha reservado.
+     */
+    private static void medirReservas(Runnable tarea, LongAdder reservados) {
+        long antes = HILOS.getCurrentThreadAllocatedBytes();
+        tarea.run();
+        reservados.add(HILOS.getCurrentThreadAllocatedBytes() - antes);
+    }
+}
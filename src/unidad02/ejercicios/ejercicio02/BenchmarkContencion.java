@@ -0,0 +1,57 @@
+package unidad02.ejercicios.ejercicio02;
+
+
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * Mide cómo escalan los buffers cuando aumenta la contención: repite la medida de BenchmarkBuffer con
+ * 1, 2, 4... hasta 64 productores y el mismo número de consumidores, con un buffer pequeño para que
+ * los hilos tengan que esperar a menudo.
+ *
+ * Con Buffer cada put/get despierta a todos los hilos parados (notifyAll), así que cuantos más hilos
+ * hay más despertares inútiles. BufferCondiciones despierta solo a uno del otro lado con signal().
+ * Se mide también BufferCondiciones con el lock justo, que cede el turno por orden de llegada.
+ *
+ * Uso: BenchmarkContencion [elementos=262144] [capacidad=64] [maxHilos=64] [repeticiones=3]
+ *
+ * @author Miguel Angel Ramirez
+ */
+public class BenchmarkContencion {
+
+    public static void main(String[] args) throws InterruptedException {
+        int elementos = args.length > 0 ? Integer.parseInt(args[0]) : 262_144;
+        int capacidad = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+        int maxHilos = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+        int repeticiones = args.length > 3 ? Integer.parseInt(args[3]) : 3;
+
+        String[] nombres = { "Buffer", "BufferBQ", "Condiciones", "Condiciones justo", "BufferAnillo" };
+        List<IntFunction<BufferInterface<Integer>>> fabricas = List.of(Buffer::new, BufferBQ::new,
+                BufferCondiciones::new, c -> new BufferCondiciones<>(c, true), BufferAnillo::new);
+
+        System.out.println("--- " + elementos + " elementos, capacidad " + capacidad + ", "
+                + Runtime.getRuntime().availableProcessors() + " CPUs (miles de elementos/s) ---");
+        System.out.printf("%-10s", "hilos");
+        for (String nombre : nombres) {
+            System.out.printf("%19s", nombre);
+        }
+        System.out.println();
+
+        for (int hilos = 1; hilos <= maxHilos; hilos *= 2) {
+            // Cada productor y cada consumidor mueve la misma cantidad de elementos.
+            int total = elementos / (hilos * hilos) * hilos * hilos;
+            System.out.printf("%-10s", hilos + "+" + hilos);
+            for (IntFunction<BufferInterface<Integer>> fabrica : fabricas) {
+                // Una vuelta de calentamiento que no se cuenta.
+                BenchmarkBuffer.medir(fabrica, total / 10 / (hilos * hilos) * hilos * hilos, capacidad,
+                        hilos, hilos, 1);
+                long mejor = Long.MAX_VALUE;
+                for (int r = 0; r < repeticiones; r++) {
+                    mejor = Math.min(mejor, BenchmarkBuffer.medir(fabrica, total, capacidad, hilos, hilos, 1));
+                }
+                System.out.printf("%19.0f", total / (mejor / 1e9) / 1000);
+            }
+            System.out.println();
+        }
+    }
+}
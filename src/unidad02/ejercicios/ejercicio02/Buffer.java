@@ -1,13 +1,17 @@
 package unidad02.ejercicios.ejercicio02;
 
 
+import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Implementa un buffer para el Productor - Consumidor
  * Tiene un tamaño fijo y es "thread - safe"
  * Utiliza 'synchronized', 'wait()' y 'notifyAll()' para la sincronización
+ * Las esperas no se escriben por consola (se haría con el monitor tomado): se avisan a la EscuchaBuffer,
+ * si hay una, con un evento antes de cada wait() y otro al volver.
  *
  * @param <E> El tipo de elemento que almacenará el buffer.
  * @author Miguel Angel Ramirez
@@ -16,6 +20,7 @@ public class Buffer<E> implements BufferInterface<E>{
 
     private List<E> buffer;
     private final int SIZE;
+    private EscuchaBuffer escucha;
 
     /**
      * Construye un buffer con una capacidad fija máxima
@@ -35,8 +40,9 @@ public class Buffer<E> implements BufferInterface<E>{
     @Override
     public synchronized void put(E elemento) throws InterruptedException{
         while (buffer.size() == SIZE){
-            System.out.println(Thread.currentThread().getName() + " El buffer esta lleno. Esperando...");
+            avisar(EscuchaBuffer.Evento.LLENO);
             wait();
+            avisar(EscuchaBuffer.Evento.DESPIERTA);
         }
 
         buffer.add(elemento);
@@ -53,12 +59,124 @@ public class Buffer<E> implements BufferInterface<E>{
     @Override
     public synchronized E get() throws InterruptedException{
         while (buffer.isEmpty()){
-            System.out.println(Thread.currentThread().getName() + " El buffer esta vacío. Esperando...");
+            avisar(EscuchaBuffer.Evento.VACIO);
             wait();
+            avisar(EscuchaBuffer.Evento.DESPIERTA);
         }
 
         E elemento = buffer.removeFirst();
         notifyAll();
         return elemento;
     }
+
+    /**
+     * Añade varios elementos con una sola entrada al monitor.
+     * Si el buffer se llena, se avisa a los consumidores y se espera a que haya espacio para el resto.
+     * @param elementos los elementos a añadir, en orden.
+     * @throws InterruptedException por si el hilo se interrumpe mientas espera.
+     */
+    @Override
+    public synchronized void putAll(Collection<? extends E> elementos) throws InterruptedException{
+        for (E elemento : elementos){
+            while (buffer.size() == SIZE){
+                avisar(EscuchaBuffer.Evento.LLENO);
+                notifyAll();
+                wait();
+                avisar(EscuchaBuffer.Evento.DESPIERTA);
+            }
+            buffer.add(elemento);
+        }
+
+        notifyAll();
+    }
+
+    /**
+     * Saca hasta maximo elementos con una sola entrada al monitor, sin esperar.
+     * @param destino donde se añaden los elementos sacados.
+     * @param maximo número máximo de elementos a sacar.
+     * @return El número de elementos sacados.
+     */
+    @Override
+    public synchronized int drainTo(Collection<? super E> destino, int maximo){
+        int sacados = 0;
+        while (sacados < maximo && !buffer.isEmpty()){
+            destino.add(buffer.removeFirst());
+            sacados++;
+        }
+
+        if (sacados > 0){
+            notifyAll();
+        }
+        return sacados;
+    }
+
+    /**
+     * Añade un elemento esperando como mucho el tiempo indicado.
+     * @param elemento de tipo E para añadir.
+     * @param tiempo tiempo máximo de espera.
+     * @param unidad unidad del tiempo.
+     * @return false si el buffer sigue lleno al acabar el tiempo.
+     * @throws InterruptedException por si el hilo se interrumpe mientas espera.
+     */
+    @Override
+    public synchronized boolean offer(E elemento, long tiempo, TimeUnit unidad) throws InterruptedException{
+        long limite = System.nanoTime() + unidad.toNanos(tiempo);
+        while (buffer.size() == SIZE){
+            long restante = limite - System.nanoTime();
+            if (restante <= 0){
+                return false;
+            }
+            avisar(EscuchaBuffer.Evento.LLENO);
+            TimeUnit.NANOSECONDS.timedWait(this, restante);
+            avisar(EscuchaBuffer.Evento.DESPIERTA);
+        }
+
+        buffer.add(elemento);
+
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Extrae el primer elemento esperando como mucho el tiempo indicado.
+     * @param tiempo tiempo máximo de espera.
+     * @param unidad unidad del tiempo.
+     * @return El primer elemento del buffer, o null si sigue vacío al acabar el tiempo.
+     * @throws InterruptedException por si el hilo se interrumpe mientas espera.
+     */
+    @Override
+    public synchronized E poll(long tiempo, TimeUnit unidad) throws InterruptedException{
+        long limite = System.nanoTime() + unidad.toNanos(tiempo);
+        while (buffer.isEmpty()){
+            long restante = limite - System.nanoTime();
+            if (restante <= 0){
+                return null;
+            }
+            avisar(EscuchaBuffer.Evento.VACIO);
+            TimeUnit.NANOSECONDS.timedWait(this, restante);
+            avisar(EscuchaBuffer.Evento.DESPIERTA);
+        }
+
+        E elemento = buffer.removeFirst();
+        notifyAll();
+        return elemento;
+    }
+
+    /**
+     * Pone quién recibe los avisos de espera.
+     * @param escucha quien recibe los eventos, o null para no avisar a nadie.
+     */
+    @Override
+    public synchronized void setEscucha(EscuchaBuffer escucha){
+        this.escucha = escucha;
+    }
+
+    /**
+     * Avisa a la escucha, si la hay. Se llama con el monitor tomado.
+     */
+    private void avisar(EscuchaBuffer.Evento evento){
+        if (escucha != null){
+            escucha.evento(evento);
+        }
+    }
 }
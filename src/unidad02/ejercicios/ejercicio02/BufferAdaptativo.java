@@ -0,0 +1,132 @@
+package unidad02.ejercicios.ejercicio02;
+
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffer como BufferCondiciones (ReentrantLock con noLleno/noVacio y array circular) cuya capacidad
+ * cambia sola entre un mínimo y un máximo según lo que se observa en cada ventana de 100 ms:
+ *  - Crece al doble si los productores han tenido que esperar con el buffer lleno y han metido al menos
+ *    tantos elementos como han sacado los consumidores (llegan más deprisa de lo que se consume).
+ *  - Encoge a la mitad si los consumidores han ido al día (han sacado al menos lo que se ha metido)
+ *    y el buffer no ha pasado de un cuarto de su capacidad en toda la ventana.
+ * Así una ráfaga de productores no los bloquea, pero tampoco se queda un array grande reservado
+ * cuando la carga baja. Si los consumidores son siempre más lentos, el buffer llega al máximo y a partir
+ * de ahí los productores esperan como en cualquier buffer (o lo que diga BufferConPolitica si se envuelve).
+ *
+ * La ventana se revisa dentro de put()/get(), con el lock ya tomado: no hace falta otro hilo.
+ * Al cambiar de capacidad se copian los elementos a un array nuevo. El array circular, el lock y las
+ * operaciones son los de BufferCircular; aquí solo se sobrescriben lleno() y los avisos de cada
+ * elemento que entra o sale.
+ *
+ * @param <E> El tipo de elemento que almacenará el buffer.
+ * @author Miguel Angel Ramirez
+ */
+public class BufferAdaptativo<E> extends BufferCircular<E> {
+
+    private static final long VENTANA_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final int capacidadMinima;
+    private final int capacidadMaxima;
+
+    // Lo observado en la ventana actual.
+    private long inicioVentana = System.nanoTime();
+    private long entradas;
+    private long salidas;
+    private long esperasLleno;
+    private int maximoOcupado;
+    private int cambios;
+
+    /**
+     * Construye un buffer que empieza con la capacidad mínima.
+     * @param capacidadMinima capacidad por debajo de la que nunca encoge.
+     * @param capacidadMaxima capacidad por encima de la que nunca crece.
+     */
+    public BufferAdaptativo(int capacidadMinima, int capacidadMaxima){
+        super(comprobar(capacidadMinima, capacidadMaxima), false);
+        this.capacidadMinima = capacidadMinima;
+        this.capacidadMaxima = capacidadMaxima;
+    }
+
+    private static int comprobar(int capacidadMinima, int capacidadMaxima){
+        if (capacidadMinima < 1 || capacidadMaxima < capacidadMinima){
+            throw new IllegalArgumentException("Capacidades no válidas: " + capacidadMinima + "-" + capacidadMaxima);
+        }
+        return capacidadMinima;
+    }
+
+    /**
+     * @return La capacidad actual.
+     */
+    public int getCapacidad(){
+        lock.lock();
+        try {
+            return elementos.length;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Cuántas veces ha crecido o encogido.
+     */
+    public int getCambios(){
+        lock.lock();
+        try {
+            return cambios;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Mira si está lleno. Antes de decir que sí cuenta la espera y revisa la ventana, por si toca crecer.
+     */
+    @Override
+    boolean lleno(){
+        if (cantidad < elementos.length){
+            return false;
+        }
+        esperasLleno++;
+        revisar();
+        return cantidad == elementos.length;
+    }
+
+    @Override
+    void alInsertar(){
+        entradas++;
+        maximoOcupado = Math.max(maximoOcupado, cantidad);
+        revisar();
+    }
+
+    @Override
+    void alExtraer(){
+        salidas++;
+        revisar();
+    }
+
+    /**
+     * Si ha pasado la ventana, decide si crecer o encoger con lo observado y empieza otra ventana.
+     * Se llama con el lock tomado.
+     */
+    private void revisar(){
+        long ahora = System.nanoTime();
+        if (ahora - inicioVentana < VENTANA_NANOS){
+            return;
+        }
+        int capacidad = elementos.length;
+        if (esperasLleno > 0 && entradas >= salidas && capacidad < capacidadMaxima){
+            if (cambiarCapacidad((int) Math.min(capacidadMaxima, 2L * capacidad))) cambios++;
+            // Hay sitio nuevo para todos los productores que esperan.
+            noLleno.signalAll();
+        } else if (esperasLleno == 0 && salidas >= entradas && maximoOcupado <= capacidad / 4
+                && capacidad > capacidadMinima){
+            if (cambiarCapacidad(Math.max(capacidadMinima, Math.max(cantidad, capacidad / 2)))) cambios++;
+        }
+        inicioVentana = ahora;
+        entradas = 0;
+        salidas = 0;
+        esperasLleno = 0;
+        maximoOcupado = cantidad;
+    }
+}
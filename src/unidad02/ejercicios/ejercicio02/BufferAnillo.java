@@ -0,0 +1,281 @@
+package unidad02.ejercicios.ejercicio02;
+
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Implementa un buffer para el Productor - Consumidor sin locks (cola MPMC de Dmitry Vyukov).
+ *
+ * Los elementos se guardan en un array circular cuyo tamaño es potencia de dos, así la posición
+ * se calcula con una máscara en vez de con el resto. Cada casilla tiene un número de secuencia que indica
+ * de quién es el turno:
+ *  - secuencia == posición: la casilla está libre para el productor que vaya por esa posición.
+ *  - secuencia == posición + 1: tiene un elemento para el consumidor que vaya por esa posición.
+ * Productores y consumidores reservan su posición con un CAS sobre su propio contador, así un productor
+ * solo compite con otros productores y nunca se bloquea a todos los hilos con un monitor.
+ * Tampoco se crea un nodo por elemento como en la LinkedList de Buffer.
+ *
+ * Cuando el buffer está lleno (o vacío) el hilo primero gira unas vueltas, luego cede la CPU y al final
+ * se duerme con parkNanos cada vez más tiempo. No hay notify: nadie despierta al hilo, él vuelve a mirar.
+ *
+ * La capacidad se redondea a la siguiente potencia de dos (como mínimo 2) y no admite elementos null.
+ *
+ * @param <E> El tipo de elemento que almacenará el buffer.
+ * @author Miguel Angel Ramirez
+ */
+public class BufferAnillo<E> implements BufferInterface<E> {
+
+    // Estrategia de espera: vueltas con onSpinWait, después cesiones con yield y después parkNanos.
+    private static final int GIROS = 100;
+    private static final int CESIONES = 10;
+    private static final long PARK_MINIMO = 1_000;
+    private static final long PARK_MAXIMO = 1_000_000;
+
+    private final Object[] elementos;
+    private final AtomicLongArray secuencias;
+    private final int mascara;
+    // Siguiente posición a escribir y a leer. Cada una la modifican solo productores o solo consumidores.
+    private final AtomicLong posicionEscritura = new AtomicLong();
+    private final AtomicLong posicionLectura = new AtomicLong();
+    // Solo se lee cuando un hilo tiene que esperar, así que sin escucha no cuesta nada en el camino rápido.
+    private volatile EscuchaBuffer escucha;
+
+    /**
+     * Construye un buffer con una capacidad fija máxima, redondeada a potencia de dos.
+     * @param capacidadMaxima Número mínimo de elementos que el buffer puede tener.
+     */
+    public BufferAnillo(int capacidadMaxima){
+        int capacidad = potenciaDeDos(capacidadMaxima);
+        this.elementos = new Object[capacidad];
+        this.secuencias = new AtomicLongArray(capacidad);
+        this.mascara = capacidad - 1;
+        for (int i = 0; i < capacidad; i++){
+            secuencias.set(i, i);
+        }
+    }
+
+    /**
+     * Añade un elemento al buffer.
+     * Si el buffer está lleno, el hilo esperará (girando y después durmiendo) hasta que haya un espacio.
+     * @param elemento de tipo E para añadir (no puede ser null).
+     * @throws InterruptedException por si el hilo se interrumpe mientas espera.
+     */
+    @Override
+    public void put(E elemento) throws InterruptedException{
+        int intento = 0;
+        for (; !offer(elemento); intento++){
+            if (intento == 0) avisar(EscuchaBuffer.Evento.LLENO);
+            esperar(intento);
+        }
+        if (intento > 0) avisar(EscuchaBuffer.Evento.DESPIERTA);
+    }
+
+    /**
+     * Extrae y devuelve el primer elemento del buffer.
+     * Si el buffer está vacío, el hilo esperará (girando y después durmiendo) hasta que haya un elemento.
+     * @return El primer elemento del buffer
+     * @throws InterruptedException por si el hilo se interrumpe mientas espera.
+     */
+    @Override
+    public E get() throws InterruptedException{
+        E elemento;
+        int intento = 0;
+        for (; (elemento = poll()) == null; intento++){
+            if (intento == 0) avisar(EscuchaBuffer.Evento.VACIO);
+            esperar(intento);
+        }
+        if (intento > 0) avisar(EscuchaBuffer.Evento.DESPIERTA);
+        return elemento;
+    }
+
+    /**
+     * Añade varios elementos en orden, esperando cuando el buffer se llena.
+     * Cada elemento se reserva con su propio CAS: no hay monitor que tomar una sola vez.
+     * @param elementos los elementos a añadir (ninguno puede ser null).
+     * @throws InterruptedException por si el hilo se interrumpe mientas espera.
+     */
+    @Override
+    public void putAll(Collection<? extends E> elementos) throws InterruptedException{
+        for (E elemento : elementos){
+            put(elemento);
+        }
+    }
+
+    /**
+     * Saca los elementos que haya, como mucho maximo, sin esperar.
+     * @param destino donde se añaden los elementos sacados.
+     * @param maximo número máximo de elementos a sacar.
+     * @return El número de elementos sacados.
+     */
+    @Override
+    public int drainTo(Collection<? super E> destino, int maximo){
+        int sacados = 0;
+        E elemento;
+        while (sacados < maximo && (elemento = poll()) != null){
+            destino.add(elemento);
+            sacados++;
+        }
+        return sacados;
+    }
+
+    /**
+     * Añade un elemento esperando como mucho el tiempo indicado
+     * (puede pasarse hasta lo que dura una espera con parkNanos, 1 ms).
+     * @return false si el buffer sigue lleno al acabar el tiempo.
+     * @throws InterruptedException por si el hilo se interrumpe mientas espera.
+     */
+    @Override
+    public boolean offer(E elemento, long tiempo, TimeUnit unidad) throws InterruptedException{
+        long limite = System.nanoTime() + unidad.toNanos(tiempo);
+        int intento = 0;
+        for (; !offer(elemento); intento++){
+            if (System.nanoTime() - limite >= 0){
+                if (intento > 0) avisar(EscuchaBuffer.Evento.DESPIERTA);
+                return false;
+            }
+            if (intento == 0) avisar(EscuchaBuffer.Evento.LLENO);
+            esperar(intento);
+        }
+        if (intento > 0) avisar(EscuchaBuffer.Evento.DESPIERTA);
+        return true;
+    }
+
+    /**
+     * Extrae el primer elemento esperando como mucho el tiempo indicado
+     * (puede pasarse hasta lo que dura una espera con parkNanos, 1 ms).
+     * @return El primer elemento, o null si el buffer sigue vacío al acabar el tiempo.
+     * @throws InterruptedException por si el hilo se interrumpe mientas espera.
+     */
+    @Override
+    public E poll(long tiempo, TimeUnit unidad) throws InterruptedException{
+        long limite = System.nanoTime() + unidad.toNanos(tiempo);
+        E elemento;
+        int intento = 0;
+        for (; (elemento = poll()) == null; intento++){
+            if (System.nanoTime() - limite >= 0){
+                if (intento > 0) avisar(EscuchaBuffer.Evento.DESPIERTA);
+                return null;
+            }
+            if (intento == 0) avisar(EscuchaBuffer.Evento.VACIO);
+            esperar(intento);
+        }
+        if (intento > 0) avisar(EscuchaBuffer.Evento.DESPIERTA);
+        return elemento;
+    }
+
+    /**
+     * Intenta añadir un elemento sin esperar.
+     * @param elemento de tipo E para añadir (no puede ser null).
+     * @return false si el buffer está lleno.
+     */
+    public boolean offer(E elemento){
+        if (elemento == null) throw new NullPointerException("El buffer no admite elementos null");
+        long posicion = posicionEscritura.get();
+        while (true){
+            int indice = (int) posicion & mascara;
+            long diferencia = secuencias.getAcquire(indice) - posicion;
+            if (diferencia == 0){
+                // La casilla está libre: se reserva la posición y solo este hilo la escribe.
+                if (posicionEscritura.compareAndSet(posicion, posicion + 1)){
+                    elementos[indice] = elemento;
+                    // Publica el elemento: el consumidor lo ve al leer la nueva secuencia.
+                    secuencias.setRelease(indice, posicion + 1);
+                    return true;
+                }
+                posicion = posicionEscritura.get();
+            } else if (diferencia < 0){
+                // La casilla aún tiene el elemento de la vuelta anterior: está lleno.
+                return false;
+            } else {
+                // Otro productor ha ganado esta posición.
+                posicion = posicionEscritura.get();
+            }
+        }
+    }
+
+    /**
+     * Intenta extraer el primer elemento sin esperar.
+     * @return El primer elemento, o null si el buffer está vacío.
+     */
+    @SuppressWarnings("unchecked")
+    public E poll(){
+        long posicion = posicionLectura.get();
+        while (true){
+            int indice = (int) posicion & mascara;
+            long diferencia = secuencias.getAcquire(indice) - (posicion + 1);
+            if (diferencia == 0){
+                if (posicionLectura.compareAndSet(posicion, posicion + 1)){
+                    E elemento = (E) elementos[indice];
+                    elementos[indice] = null;
+                    // Deja la casilla libre para el productor de la siguiente vuelta.
+                    secuencias.setRelease(indice, posicion + mascara + 1);
+                    return elemento;
+                }
+                posicion = posicionLectura.get();
+            } else if (diferencia < 0){
+                // Ningún productor ha escrito todavía en esta posición: está vacío.
+                return null;
+            } else {
+                posicion = posicionLectura.get();
+            }
+        }
+    }
+
+    /**
+     * Pone quién recibe los avisos de espera. Aquí no hay wait(): se avisa al empezar a girar/dormir
+     * y al conseguirlo, no en cada vuelta.
+     * @param escucha quien recibe los eventos, o null para no avisar a nadie.
+     */
+    @Override
+    public void setEscucha(EscuchaBuffer escucha){
+        this.escucha = escucha;
+    }
+
+    private void avisar(EscuchaBuffer.Evento evento){
+        EscuchaBuffer escucha = this.escucha;
+        if (escucha != null){
+            escucha.evento(evento);
+        }
+    }
+
+    /**
+     * @return La capacidad real (potencia de dos).
+     */
+    public int getCapacidad(){
+        return elementos.length;
+    }
+
+    /**
+     * Redondea una capacidad a la siguiente potencia de dos, como mínimo 2.
+     * Con una sola casilla la secuencia de "libre para la siguiente vuelta" (posición + 1) sería la misma
+     * que la de "tiene elemento", y productor y consumidor se quedarían girando para siempre.
+     */
+    static int potenciaDeDos(int capacidad){
+        if (capacidad < 1 || capacidad > (1 << 30)){
+            throw new IllegalArgumentException("Capacidad no válida: " + capacidad);
+        }
+        return capacidad <= 2 ? 2 : Integer.highestOneBit(capacidad - 1) << 1;
+    }
+
+    /**
+     * Espera un poco antes de volver a intentarlo, cada vez más según los intentos fallidos.
+     * La usan también los otros buffers sin locks del paquete.
+     */
+    static void esperar(int intento) throws InterruptedException{
+        if (intento < GIROS){
+            Thread.onSpinWait();
+        } else if (intento < GIROS + CESIONES){
+            Thread.yield();
+        } else {
+            int dormidas = Math.min(intento - GIROS - CESIONES, 10);
+            LockSupport.parkNanos(Math.min(PARK_MAXIMO, PARK_MINIMO << dormidas));
+        }
+        if (Thread.interrupted()){
+            throw new InterruptedException();
+        }
+    }
+}
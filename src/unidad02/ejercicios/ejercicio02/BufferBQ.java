@@ -1,8 +1,10 @@
 package unidad02.ejercicios.ejercicio02;
 
 
+import java.util.Collection;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  *
@@ -10,6 +12,8 @@ import java.util.concurrent.BlockingQueue;
  */
 public class BufferBQ <E> implements BufferInterface<E> {
     private BlockingQueue<E> queue;
+    // Solo se lee cuando la cola está llena o vacía, así que sin escucha no cuesta nada en el camino rápido.
+    private volatile EscuchaBuffer escucha;
 
     /**
      * Construye un nuevo buffer.
@@ -23,13 +27,18 @@ public class BufferBQ <E> implements BufferInterface<E> {
     /**
      * Añade un elemento al buffer
      * Si la cola está llena, el método se bloqueará y esperará hasta que haya un espacio libre.
+     * Primero se prueba con offer(), para poder avisar a la escucha solo cuando de verdad hay que esperar.
      *
      * @param elemento de tipo E para añadir.
      * @throws InterruptedException por si el hilo se interrumpe mientas espera.
      */
     @Override
     public void put(E elemento) throws InterruptedException {
-        queue.put(elemento);
+        if (!queue.offer(elemento)) {
+            avisar(EscuchaBuffer.Evento.LLENO);
+            queue.put(elemento);
+            avisar(EscuchaBuffer.Evento.DESPIERTA);
+        }
     }
 
     /**
@@ -41,6 +50,90 @@ public class BufferBQ <E> implements BufferInterface<E> {
      */
     @Override
     public E get() throws InterruptedException {
-        return queue.take();
+        E elemento = queue.poll();
+        if (elemento == null) {
+            avisar(EscuchaBuffer.Evento.VACIO);
+            elemento = queue.take();
+            avisar(EscuchaBuffer.Evento.DESPIERTA);
+        }
+        return elemento;
+    }
+
+    /**
+     * Añade varios elementos en orden, esperando con put() si la cola se llena.
+     * (addAll() de la cola lanzaría una excepción en vez de esperar.)
+     *
+     * @param elementos los elementos a añadir.
+     * @throws InterruptedException por si el hilo se interrumpe mientas espera.
+     */
+    @Override
+    public void putAll(Collection<? extends E> elementos) throws InterruptedException {
+        for (E elemento : elementos) {
+            put(elemento);
+        }
+    }
+
+    /**
+     * Saca hasta maximo elementos con drainTo() de la cola, que toma el lock una sola vez.
+     *
+     * @param destino donde se añaden los elementos sacados.
+     * @param maximo número máximo de elementos a sacar.
+     * @return El número de elementos sacados.
+     */
+    @Override
+    public int drainTo(Collection<? super E> destino, int maximo) {
+        return queue.drainTo(destino, maximo);
+    }
+
+    /**
+     * Añade un elemento esperando como mucho el tiempo indicado.
+     *
+     * @return false si la cola sigue llena al acabar el tiempo.
+     * @throws InterruptedException por si el hilo se interrumpe mientas espera.
+     */
+    @Override
+    public boolean offer(E elemento, long tiempo, TimeUnit unidad) throws InterruptedException {
+        if (queue.offer(elemento)) {
+            return true;
+        }
+        avisar(EscuchaBuffer.Evento.LLENO);
+        boolean metido = queue.offer(elemento, tiempo, unidad);
+        avisar(EscuchaBuffer.Evento.DESPIERTA);
+        return metido;
+    }
+
+    /**
+     * Extrae el primer elemento esperando como mucho el tiempo indicado.
+     *
+     * @return El primer elemento, o null si la cola sigue vacía al acabar el tiempo.
+     * @throws InterruptedException por si el hilo se interrumpe mientas espera.
+     */
+    @Override
+    public E poll(long tiempo, TimeUnit unidad) throws InterruptedException {
+        E elemento = queue.poll();
+        if (elemento == null) {
+            avisar(EscuchaBuffer.Evento.VACIO);
+            elemento = queue.poll(tiempo, unidad);
+            avisar(EscuchaBuffer.Evento.DESPIERTA);
+        }
+        return elemento;
+    }
+
+    /**
+     * Pone quién recibe los avisos de espera. Como la espera la hace la cola, solo se avisa
+     * una vez al empezar a esperar y otra al terminar.
+     *
+     * @param escucha quien recibe los eventos, o null para no avisar a nadie.
+     */
+    @Override
+    public void setEscucha(EscuchaBuffer escucha) {
+        this.escucha = escucha;
+    }
+
+    private void avisar(EscuchaBuffer.Evento evento) {
+        EscuchaBuffer escucha = this.escucha;
+        if (escucha != null) {
+            escucha.evento(evento);
+        }
     }
 }
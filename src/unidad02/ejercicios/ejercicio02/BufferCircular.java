@@ -0,0 +1,261 @@
+package unidad02.ejercicios.ejercicio02;
+
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Parte común de BufferCondiciones y BufferAdaptativo: un array circular protegido por un ReentrantLock,
+ * con los productores esperando en noLleno y los consumidores en noVacio. Cada operación despierta con
+ * signal() a un solo hilo del otro lado.
+ *
+ * Las subclases pueden cambiar cuándo se considera lleno (lleno()), enterarse de cada elemento que entra
+ * o sale (alInsertar()/alExtraer()) y cambiar el tamaño del array (cambiarCapacidad()). Todo esto se
+ * llama con el lock tomado.
+ *
+ * @param <E> El tipo de elemento que almacenará el buffer.
+ * @author Miguel Angel Ramirez
+ */
+abstract class BufferCircular<E> implements BufferInterface<E> {
+
+    Object[] elementos;
+    int cabeza;
+    int cantidad;
+
+    final ReentrantLock lock;
+    final Condition noLleno;
+    final Condition noVacio;
+    // Solo se lee cuando un hilo va a esperar, así que sin escucha no cuesta nada en el camino rápido.
+    private volatile EscuchaBuffer escucha;
+
+    /**
+     * Construye el buffer con el array de la capacidad inicial.
+     * @param capacidad Número de elementos que caben al empezar.
+     * @param justo true para que el lock atienda a los hilos por orden de llegada.
+     */
+    BufferCircular(int capacidad, boolean justo){
+        this.elementos = new Object[capacidad];
+        this.lock = new ReentrantLock(justo);
+        this.noLleno = lock.newCondition();
+        this.noVacio = lock.newCondition();
+    }
+
+    /**
+     * Añade un elemento al buffer.
+     * Si el buffer está lleno, el hilo esperará hasta que haya un espacio.
+     * @param elemento de tipo E para añadir.
+     * @throws InterruptedException por si el hilo se interrumpe mientas espera.
+     */
+    @Override
+    public void put(E elemento) throws InterruptedException{
+        lock.lockInterruptibly();
+        try {
+            while (lleno()){
+                avisar(EscuchaBuffer.Evento.LLENO);
+                noLleno.await();
+                avisar(EscuchaBuffer.Evento.DESPIERTA);
+            }
+            insertar(elemento);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Extrae y devuelve el primer elemento del buffer.
+     * Si el buffer está vacío, el hilo actual esperará hasta que un elemento esté disponible.
+     * @return El primer elemento del buffer
+     * @throws InterruptedException por si el hilo se interrumpe mientas espera.
+     */
+    @Override
+    public E get() throws InterruptedException{
+        lock.lockInterruptibly();
+        try {
+            while (cantidad == 0){
+                avisar(EscuchaBuffer.Evento.VACIO);
+                noVacio.await();
+                avisar(EscuchaBuffer.Evento.DESPIERTA);
+            }
+            return extraer();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Añade varios elementos tomando el lock una sola vez.
+     * Mientras espera espacio el lock queda libre, así los consumidores pueden sacar los ya añadidos.
+     * @param elementos los elementos a añadir, en orden.
+     * @throws InterruptedException por si el hilo se interrumpe mientas espera.
+     */
+    @Override
+    public void putAll(Collection<? extends E> elementos) throws InterruptedException{
+        lock.lockInterruptibly();
+        try {
+            for (E elemento : elementos){
+                while (lleno()){
+                    avisar(EscuchaBuffer.Evento.LLENO);
+                    noLleno.await();
+                    avisar(EscuchaBuffer.Evento.DESPIERTA);
+                }
+                insertar(elemento);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Saca hasta maximo elementos tomando el lock una sola vez, sin esperar.
+     * @param destino donde se añaden los elementos sacados.
+     * @param maximo número máximo de elementos a sacar.
+     * @return El número de elementos sacados.
+     */
+    @Override
+    public int drainTo(Collection<? super E> destino, int maximo){
+        lock.lock();
+        try {
+            int sacados = 0;
+            while (sacados < maximo && cantidad > 0){
+                destino.add(extraer());
+                sacados++;
+            }
+            return sacados;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Añade un elemento esperando como mucho el tiempo indicado.
+     * @return false si el buffer sigue lleno al acabar el tiempo.
+     * @throws InterruptedException por si el hilo se interrumpe mientas espera.
+     */
+    @Override
+    public boolean offer(E elemento, long tiempo, TimeUnit unidad) throws InterruptedException{
+        long restante = unidad.toNanos(tiempo);
+        lock.lockInterruptibly();
+        try {
+            while (lleno()){
+                if (restante <= 0){
+                    return false;
+                }
+                avisar(EscuchaBuffer.Evento.LLENO);
+                restante = noLleno.awaitNanos(restante);
+                avisar(EscuchaBuffer.Evento.DESPIERTA);
+            }
+            insertar(elemento);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Extrae el primer elemento esperando como mucho el tiempo indicado.
+     * @return El primer elemento, o null si el buffer sigue vacío al acabar el tiempo.
+     * @throws InterruptedException por si el hilo se interrumpe mientas espera.
+     */
+    @Override
+    public E poll(long tiempo, TimeUnit unidad) throws InterruptedException{
+        long restante = unidad.toNanos(tiempo);
+        lock.lockInterruptibly();
+        try {
+            while (cantidad == 0){
+                if (restante <= 0){
+                    return null;
+                }
+                avisar(EscuchaBuffer.Evento.VACIO);
+                restante = noVacio.awaitNanos(restante);
+                avisar(EscuchaBuffer.Evento.DESPIERTA);
+            }
+            return extraer();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Pone quién recibe los avisos de espera.
+     * @param escucha quien recibe los eventos, o null para no avisar a nadie.
+     */
+    @Override
+    public void setEscucha(EscuchaBuffer escucha){
+        this.escucha = escucha;
+    }
+
+    /**
+     * @return true si no cabe otro elemento. Se llama con el lock tomado antes de cada espera.
+     */
+    boolean lleno(){
+        return cantidad == elementos.length;
+    }
+
+    /**
+     * Se llama con el lock tomado después de meter un elemento.
+     */
+    void alInsertar(){
+    }
+
+    /**
+     * Se llama con el lock tomado después de sacar un elemento.
+     */
+    void alExtraer(){
+    }
+
+    /**
+     * Copia los elementos, en orden, a un array nuevo del tamaño indicado. Se llama con el lock tomado
+     * y con nueva >= cantidad.
+     * @return false si ya tenía ese tamaño.
+     */
+    boolean cambiarCapacidad(int nueva){
+        if (nueva == elementos.length){
+            return false;
+        }
+        Object[] nuevos = new Object[nueva];
+        for (int i = 0; i < cantidad; i++){
+            nuevos[i] = elementos[(cabeza + i) % elementos.length];
+        }
+        elementos = nuevos;
+        cabeza = 0;
+        return true;
+    }
+
+    /**
+     * Avisa a la escucha, si la hay. Se llama con el lock tomado.
+     */
+    void avisar(EscuchaBuffer.Evento evento){
+        EscuchaBuffer escucha = this.escucha;
+        if (escucha != null){
+            escucha.evento(evento);
+        }
+    }
+
+    /**
+     * Guarda el elemento al final y despierta a un consumidor. Se llama con el lock tomado y con hueco.
+     */
+    private void insertar(E elemento){
+        int cola = cabeza + cantidad;
+        if (cola >= elementos.length) cola -= elementos.length;
+        elementos[cola] = elemento;
+        cantidad++;
+        noVacio.signal();
+        alInsertar();
+    }
+
+    /**
+     * Saca el primer elemento y despierta a un productor. Se llama con el lock tomado y sin estar vacío.
+     */
+    @SuppressWarnings("unchecked")
+    private E extraer(){
+        E elemento = (E) elementos[cabeza];
+        elementos[cabeza] = null;
+        if (++cabeza == elementos.length) cabeza = 0;
+        cantidad--;
+        noLleno.signal();
+        alExtraer();
+        return elemento;
+    }
+}
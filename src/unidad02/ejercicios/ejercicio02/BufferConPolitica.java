@@ -0,0 +1,157 @@
+package unidad02.ejercicios.ejercicio02;
+
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Envuelve cualquier BufferInterface para decidir qué pasa con put() cuando está lleno
+ * (ver PoliticaDesborde). Así cada buffer puede tener su política sin cambiar las implementaciones.
+ *
+ * Las políticas que no esperan usan offer() con tiempo 0 del buffer envuelto, y DESCARTAR_ANTIGUO saca
+ * con poll() con tiempo 0. Sacar el antiguo y meter el nuevo no es atómico: con varios productores otro
+ * puede ocupar el hueco, y entonces se vuelve a sacar otro.
+ *
+ * get(), drainTo(), y offer()/poll() con tiempo van directos al buffer envuelto: quien los llama ya ha
+ * elegido cuánto esperar.
+ *
+ * @param <E> El tipo de elemento que almacenará el buffer.
+ * @author Miguel Angel Ramirez
+ */
+public class BufferConPolitica<E> implements BufferInterface<E> {
+
+    private final BufferInterface<E> buffer;
+    private final PoliticaDesborde politica;
+    private final long esperaNanos;
+
+    private final LongAdder descartados = new LongAdder();
+    private final LongAdder rechazados = new LongAdder();
+
+    /**
+     * Envuelve un buffer con una política que no necesita tiempo de espera.
+     * @param buffer el buffer envuelto.
+     * @param politica qué hacer cuando está lleno (no puede ser BLOQUEAR_CON_TIEMPO).
+     */
+    public BufferConPolitica(BufferInterface<E> buffer, PoliticaDesborde politica){
+        this(buffer, politica, 0, TimeUnit.NANOSECONDS);
+        if (politica == PoliticaDesborde.BLOQUEAR_CON_TIEMPO){
+            throw new IllegalArgumentException("BLOQUEAR_CON_TIEMPO necesita un tiempo de espera");
+        }
+    }
+
+    /**
+     * Envuelve un buffer.
+     * @param buffer el buffer envuelto.
+     * @param politica qué hacer cuando está lleno.
+     * @param espera tiempo máximo de espera con BLOQUEAR_CON_TIEMPO (las demás lo ignoran).
+     * @param unidad unidad del tiempo.
+     */
+    public BufferConPolitica(BufferInterface<E> buffer, PoliticaDesborde politica, long espera, TimeUnit unidad){
+        if (espera < 0){
+            throw new IllegalArgumentException("Tiempo de espera no válido: " + espera);
+        }
+        this.buffer = buffer;
+        this.politica = politica;
+        this.esperaNanos = unidad.toNanos(espera);
+    }
+
+    /**
+     * Añade un elemento al buffer aplicando la política si está lleno.
+     * @param elemento de tipo E para añadir.
+     * @throws InterruptedException por si el hilo se interrumpe mientas espera.
+     * @throws IllegalStateException con RECHAZAR, o con BLOQUEAR_CON_TIEMPO si se acaba el tiempo.
+     */
+    @Override
+    public void put(E elemento) throws InterruptedException{
+        switch (politica){
+            case BLOQUEAR -> buffer.put(elemento);
+            case BLOQUEAR_CON_TIEMPO -> {
+                if (!buffer.offer(elemento, esperaNanos, TimeUnit.NANOSECONDS)){
+                    rechazar();
+                }
+            }
+            case DESCARTAR_NUEVO -> {
+                if (!buffer.offer(elemento, 0, TimeUnit.NANOSECONDS)){
+                    descartados.increment();
+                }
+            }
+            case DESCARTAR_ANTIGUO -> {
+                while (!buffer.offer(elemento, 0, TimeUnit.NANOSECONDS)){
+                    if (buffer.poll(0, TimeUnit.NANOSECONDS) != null){
+                        descartados.increment();
+                    }
+                }
+            }
+            case RECHAZAR -> {
+                if (!buffer.offer(elemento, 0, TimeUnit.NANOSECONDS)){
+                    rechazar();
+                }
+            }
+        }
+    }
+
+    @Override
+    public E get() throws InterruptedException{
+        return buffer.get();
+    }
+
+    /**
+     * Añade los elementos de uno en uno con put(), así cada uno sigue la política.
+     * Con RECHAZAR o BLOQUEAR_CON_TIEMPO la excepción deja sin meter el elemento que falla y los siguientes.
+     * @param elementos los elementos a añadir, en orden.
+     * @throws InterruptedException por si el hilo se interrumpe mientas espera.
+     */
+    @Override
+    public void putAll(Collection<? extends E> elementos) throws InterruptedException{
+        for (E elemento : elementos){
+            put(elemento);
+        }
+    }
+
+    @Override
+    public int drainTo(Collection<? super E> destino, int maximo){
+        return buffer.drainTo(destino, maximo);
+    }
+
+    @Override
+    public boolean offer(E elemento, long tiempo, TimeUnit unidad) throws InterruptedException{
+        return buffer.offer(elemento, tiempo, unidad);
+    }
+
+    @Override
+    public E poll(long tiempo, TimeUnit unidad) throws InterruptedException{
+        return buffer.poll(tiempo, unidad);
+    }
+
+    @Override
+    public void setEscucha(EscuchaBuffer escucha){
+        buffer.setEscucha(escucha);
+    }
+
+    /**
+     * @return La política del buffer.
+     */
+    public PoliticaDesborde getPolitica(){
+        return politica;
+    }
+
+    /**
+     * @return Elementos que se han tirado con DESCARTAR_NUEVO o DESCARTAR_ANTIGUO.
+     */
+    public long getDescartados(){
+        return descartados.sum();
+    }
+
+    /**
+     * @return Elementos que no se han metido con RECHAZAR o BLOQUEAR_CON_TIEMPO.
+     */
+    public long getRechazados(){
+        return rechazados.sum();
+    }
+
+    private void rechazar(){
+        rechazados.increment();
+        throw new IllegalStateException("Buffer lleno");
+    }
+}
@@ -0,0 +1,45 @@
+package unidad02.ejercicios.ejercicio02;
+
+
+/**
+ * Implementa un buffer para el Productor - Consumidor con un ReentrantLock y dos Condition.
+ *
+ * En Buffer todos los hilos esperan en el mismo monitor y cada put/get hace notifyAll(): se despiertan
+ * todos los productores y consumidores, aunque solo uno de un lado puede avanzar, y el resto vuelve a
+ * dormirse. Aquí los productores esperan en noLleno y los consumidores en noVacio, y cada operación
+ * despierta con signal() a un solo hilo del otro lado.
+ *
+ * Los elementos se guardan en un array circular reservado al crear el buffer, sin crear nodos
+ * (las operaciones están en BufferCircular, que comparte con BufferAdaptativo).
+ * Con justo = true el lock atiende a los hilos por orden de llegada (más lento, pero ninguno se queda
+ * esperando indefinidamente).
+ *
+ * @param <E> El tipo de elemento que almacenará el buffer.
+ * @author Miguel Angel Ramirez
+ */
+public class BufferCondiciones<E> extends BufferCircular<E> {
+
+    /**
+     * Construye un buffer con una capacidad fija máxima y un lock no justo.
+     * @param capacidadMaxima Número máximo de elementos que el buffer puede tener.
+     */
+    public BufferCondiciones(int capacidadMaxima){
+        this(capacidadMaxima, false);
+    }
+
+    /**
+     * Construye un buffer con una capacidad fija máxima.
+     * @param capacidadMaxima Número máximo de elementos que el buffer puede tener.
+     * @param justo true para que el lock atienda a los hilos por orden de llegada.
+     */
+    public BufferCondiciones(int capacidadMaxima, boolean justo){
+        super(comprobar(capacidadMaxima), justo);
+    }
+
+    private static int comprobar(int capacidadMaxima){
+        if (capacidadMaxima < 1){
+            throw new IllegalArgumentException("Capacidad no válida: " + capacidadMaxima);
+        }
+        return capacidadMaxima;
+    }
+}
@@ -0,0 +1,50 @@
+package unidad02.ejercicios.ejercicio02;
+
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffer del Productor - Consumidor especializado en int.
+ * Con BufferInterface&lt;Integer&gt; cada valor fuera de la caché de Integer (-128..127) se convierte
+ * en un objeto al meterlo y se convierte en basura al sacarlo; aquí los valores se guardan en un int[].
+ *
+ * @author Miguel Angel Ramirez
+ */
+public interface BufferEnteros {
+
+    /** Lo que devuelve pollInt() si el buffer sigue vacío (ningún int vale esto al pasarlo a long). */
+    long VACIO = Long.MIN_VALUE;
+
+    /**
+     * Inserta un valor dentro del buffer. Si está lleno se espera hasta que haya espacio
+     * @param valor es el valor a insertar
+     * @throws InterruptedException Por si el hilo se interrumpe al esperar
+     */
+    void putInt(int valor) throws InterruptedException;
+
+    /**
+     * Obtiene un valor del buffer. Si está vacío, espera hasta que haya un valor
+     * @return El valor obtenido
+     * @throws InterruptedException Por si el hilo se interrumpe al esperar
+     */
+    int getInt() throws InterruptedException;
+
+    /**
+     * Inserta un valor esperando como mucho el tiempo indicado.
+     * @param valor es el valor a insertar
+     * @param tiempo tiempo máximo de espera.
+     * @param unidad unidad del tiempo.
+     * @return false si el buffer sigue lleno al acabar el tiempo.
+     * @throws InterruptedException Por si el hilo se interrumpe al esperar
+     */
+    boolean offerInt(int valor, long tiempo, TimeUnit unidad) throws InterruptedException;
+
+    /**
+     * Obtiene un valor esperando como mucho el tiempo indicado.
+     * @param tiempo tiempo máximo de espera.
+     * @param unidad unidad del tiempo.
+     * @return El valor (como long), o VACIO si el buffer sigue vacío al acabar el tiempo.
+     * @throws InterruptedException Por si el hilo se interrumpe al esperar
+     */
+    long pollInt(long tiempo, TimeUnit unidad) throws InterruptedException;
+}
@@ -0,0 +1,158 @@
+package unidad02.ejercicios.ejercicio02;
+
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Buffer de int sin locks: el mismo algoritmo que BufferAnillo (cola MPMC de Vyukov) pero con los valores
+ * en un int[], así ni el buffer ni quien lo usa crean objetos por cada valor.
+ *
+ * La capacidad se redondea a la siguiente potencia de dos (como mínimo 2).
+ *
+ * @author Miguel Angel Ramirez
+ */
+public class BufferEnterosAnillo implements BufferEnteros {
+
+    private final int[] valores;
+    private final AtomicLongArray secuencias;
+    private final int mascara;
+    private final AtomicLong posicionEscritura = new AtomicLong();
+    private final AtomicLong posicionLectura = new AtomicLong();
+
+    /**
+     * Construye un buffer con una capacidad fija máxima, redondeada a potencia de dos.
+     * @param capacidadMaxima Número mínimo de valores que el buffer puede tener.
+     */
+    public BufferEnterosAnillo(int capacidadMaxima){
+        int capacidad = BufferAnillo.potenciaDeDos(capacidadMaxima);
+        this.valores = new int[capacidad];
+        this.secuencias = new AtomicLongArray(capacidad);
+        this.mascara = capacidad - 1;
+        for (int i = 0; i < capacidad; i++){
+            secuencias.set(i, i);
+        }
+    }
+
+    /**
+     * Añade un valor al buffer.
+     * Si el buffer está lleno, el hilo esperará (girando y después durmiendo) hasta que haya un espacio.
+     * @param valor el valor a añadir.
+     * @throws InterruptedException por si el hilo se interrumpe mientas espera.
+     */
+    @Override
+    public void putInt(int valor) throws InterruptedException{
+        for (int intento = 0; !offerInt(valor); intento++){
+            BufferAnillo.esperar(intento);
+        }
+    }
+
+    /**
+     * Extrae y devuelve el primer valor del buffer.
+     * Si el buffer está vacío, el hilo esperará (girando y después durmiendo) hasta que haya un valor.
+     * @return El primer valor del buffer
+     * @throws InterruptedException por si el hilo se interrumpe mientas espera.
+     */
+    @Override
+    public int getInt() throws InterruptedException{
+        long valor;
+        for (int intento = 0; (valor = pollInt()) == VACIO; intento++){
+            BufferAnillo.esperar(intento);
+        }
+        return (int) valor;
+    }
+
+    /**
+     * Añade un valor esperando como mucho el tiempo indicado
+     * (puede pasarse hasta lo que dura una espera con parkNanos, 1 ms).
+     * @return false si el buffer sigue lleno al acabar el tiempo.
+     * @throws InterruptedException por si el hilo se interrumpe mientas espera.
+     */
+    @Override
+    public boolean offerInt(int valor, long tiempo, TimeUnit unidad) throws InterruptedException{
+        long limite = System.nanoTime() + unidad.toNanos(tiempo);
+        for (int intento = 0; !offerInt(valor); intento++){
+            if (System.nanoTime() - limite >= 0){
+                return false;
+            }
+            BufferAnillo.esperar(intento);
+        }
+        return true;
+    }
+
+    /**
+     * Extrae el primer valor esperando como mucho el tiempo indicado
+     * (puede pasarse hasta lo que dura una espera con parkNanos, 1 ms).
+     * @return El valor (como long), o VACIO si el buffer sigue vacío al acabar el tiempo.
+     * @throws InterruptedException por si el hilo se interrumpe mientas espera.
+     */
+    @Override
+    public long pollInt(long tiempo, TimeUnit unidad) throws InterruptedException{
+        long limite = System.nanoTime() + unidad.toNanos(tiempo);
+        long valor;
+        for (int intento = 0; (valor = pollInt()) == VACIO; intento++){
+            if (System.nanoTime() - limite >= 0){
+                return VACIO;
+            }
+            BufferAnillo.esperar(intento);
+        }
+        return valor;
+    }
+
+    /**
+     * Intenta añadir un valor sin esperar.
+     * @param valor el valor a añadir.
+     * @return false si el buffer está lleno.
+     */
+    public boolean offerInt(int valor){
+        long posicion = posicionEscritura.get();
+        while (true){
+            int indice = (int) posicion & mascara;
+            long diferencia = secuencias.getAcquire(indice) - posicion;
+            if (diferencia == 0){
+                if (posicionEscritura.compareAndSet(posicion, posicion + 1)){
+                    valores[indice] = valor;
+                    secuencias.setRelease(indice, posicion + 1);
+                    return true;
+                }
+                posicion = posicionEscritura.get();
+            } else if (diferencia < 0){
+                return false;
+            } else {
+                posicion = posicionEscritura.get();
+            }
+        }
+    }
+
+    /**
+     * Intenta extraer el primer valor sin esperar.
+     * @return El valor (como long), o VACIO si el buffer está vacío.
+     */
+    public long pollInt(){
+        long posicion = posicionLectura.get();
+        while (true){
+            int indice = (int) posicion & mascara;
+            long diferencia = secuencias.getAcquire(indice) - (posicion + 1);
+            if (diferencia == 0){
+                if (posicionLectura.compareAndSet(posicion, posicion + 1)){
+                    int valor = valores[indice];
+                    secuencias.setRelease(indice, posicion + mascara + 1);
+                    return valor;
+                }
+                posicion = posicionLectura.get();
+            } else if (diferencia < 0){
+                return VACIO;
+            } else {
+                posicion = posicionLectura.get();
+            }
+        }
+    }
+
+    /**
+     * @return La capacidad real (potencia de dos).
+     */
+    public int getCapacidad(){
+        return valores.length;
+    }
+}
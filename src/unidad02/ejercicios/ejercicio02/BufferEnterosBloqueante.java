@@ -0,0 +1,117 @@
+package unidad02.ejercicios.ejercicio02;
+
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buffer de int con 'synchronized', 'wait()' y 'notifyAll()', como Buffer,
+ * pero sobre un array circular de int en vez de una LinkedList de Integer: no crea ningún objeto.
+ *
+ * Solo se avisa a los hilos que esperan cuando el buffer deja de estar vacío o de estar lleno,
+ * que es cuando alguno puede estar esperando.
+ *
+ * @author Miguel Angel Ramirez
+ */
+public class BufferEnterosBloqueante implements BufferEnteros {
+
+    private final int[] valores;
+    private int cabeza;
+    private int cantidad;
+
+    /**
+     * Construye un buffer con una capacidad fija máxima
+     * @param capacidadMaxima Número máximo de valores que el buffer puede tener.
+     */
+    public BufferEnterosBloqueante(int capacidadMaxima){
+        this.valores = new int[capacidadMaxima];
+    }
+
+    /**
+     * Añade un valor al buffer.
+     * Si el buffer está lleno, el hilo esperará hasta que haya un espacio.
+     * @param valor el valor a añadir.
+     * @throws InterruptedException por si el hilo se interrumpe mientas espera.
+     */
+    @Override
+    public synchronized void putInt(int valor) throws InterruptedException{
+        while (cantidad == valores.length){
+            wait();
+        }
+        meter(valor);
+    }
+
+    /**
+     * Extrae y devuelve el primer valor del buffer.
+     * Si el buffer está vacío, el hilo actual esperará hasta que un valor esté disponible.
+     * @return El primer valor del buffer
+     * @throws InterruptedException por si el hilo se interrumpe mientas espera.
+     */
+    @Override
+    public synchronized int getInt() throws InterruptedException{
+        while (cantidad == 0){
+            wait();
+        }
+        return sacar();
+    }
+
+    /**
+     * Añade un valor esperando como mucho el tiempo indicado.
+     * @return false si el buffer sigue lleno al acabar el tiempo.
+     * @throws InterruptedException por si el hilo se interrumpe mientas espera.
+     */
+    @Override
+    public synchronized boolean offerInt(int valor, long tiempo, TimeUnit unidad) throws InterruptedException{
+        long limite = System.nanoTime() + unidad.toNanos(tiempo);
+        while (cantidad == valores.length){
+            long restante = limite - System.nanoTime();
+            if (restante <= 0){
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, restante);
+        }
+        meter(valor);
+        return true;
+    }
+
+    /**
+     * Extrae el primer valor esperando como mucho el tiempo indicado.
+     * @return El valor (como long), o VACIO si el buffer sigue vacío al acabar el tiempo.
+     * @throws InterruptedException por si el hilo se interrumpe mientas espera.
+     */
+    @Override
+    public synchronized long pollInt(long tiempo, TimeUnit unidad) throws InterruptedException{
+        long limite = System.nanoTime() + unidad.toNanos(tiempo);
+        while (cantidad == 0){
+            long restante = limite - System.nanoTime();
+            if (restante <= 0){
+                return VACIO;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, restante);
+        }
+        return sacar();
+    }
+
+    /**
+     * Guarda el valor al final. Se llama con el monitor tomado y con hueco.
+     */
+    private void meter(int valor){
+        int cola = cabeza + cantidad;
+        if (cola >= valores.length) cola -= valores.length;
+        valores[cola] = valor;
+        if (cantidad++ == 0){
+            notifyAll(); // Puede haber consumidores esperando.
+        }
+    }
+
+    /**
+     * Saca el primer valor. Se llama con el monitor tomado y sin estar vacío.
+     */
+    private int sacar(){
+        int valor = valores[cabeza];
+        if (++cabeza == valores.length) cabeza = 0;
+        if (cantidad-- == valores.length){
+            notifyAll(); // Puede haber productores esperando.
+        }
+        return valor;
+    }
+}
@@ -1,5 +1,7 @@
 package unidad02.ejercicios.ejercicio02;
 
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author Miguel Angel Ramirez
@@ -19,4 +21,48 @@ public interface BufferInterface<E> {
      * @throws InterruptedException Por si el hilo se interrumpe al esperar
      */
     E get() throws InterruptedException;
+
+    /**
+     * Inserta todos los elementos en orden, esperando cuando el buffer se llena.
+     * Si caben todos se insertan de una vez; si no, los consumidores pueden ir sacando los primeros
+     * mientras se espera para meter el resto.
+     * @param elementos los elementos a insertar
+     * @throws InterruptedException Por si el hilo se interrumpe al esperar
+     */
+    void putAll(Collection<? extends E> elementos) throws InterruptedException;
+
+    /**
+     * Saca los elementos que haya en ese momento, como mucho maximo, sin esperar.
+     * @param destino donde se añaden los elementos sacados
+     * @param maximo número máximo de elementos a sacar
+     * @return El número de elementos sacados (0 si estaba vacío)
+     */
+    int drainTo(Collection<? super E> destino, int maximo);
+
+    /**
+     * Inserta un elemento esperando como mucho el tiempo indicado a que haya espacio.
+     * @param elemento es el elemento a insertar
+     * @param tiempo tiempo máximo de espera
+     * @param unidad unidad del tiempo
+     * @return false si no ha habido espacio a tiempo
+     * @throws InterruptedException Por si el hilo se interrumpe al esperar
+     */
+    boolean offer(E elemento, long tiempo, TimeUnit unidad) throws InterruptedException;
+
+    /**
+     * Obtiene un elemento esperando como mucho el tiempo indicado a que haya alguno.
+     * @param tiempo tiempo máximo de espera
+     * @param unidad unidad del tiempo
+     * @return El elemento obtenido, o null si no ha llegado ninguno a tiempo
+     * @throws InterruptedException Por si el hilo se interrumpe al esperar
+     */
+    E poll(long tiempo, TimeUnit unidad) throws InterruptedException;
+
+    /**
+     * Pone quién recibe los avisos cuando un hilo tiene que esperar (ver EscuchaBuffer y TrazaBuffer).
+     * Sin escucha (null, por defecto) el buffer no hace nada más que comprobar el campo.
+     * Conviene ponerla antes de arrancar los hilos que usan el buffer.
+     * @param escucha quien recibe los eventos, o null para no avisar a nadie
+     */
+    void setEscucha(EscuchaBuffer escucha);
 }
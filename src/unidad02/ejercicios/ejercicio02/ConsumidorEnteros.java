@@ -1,26 +1,41 @@
 package unidad02.ejercicios.ejercicio02;
 
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 
 /**
  * Representa un hilo.
  * Su tarea es extraer elemento de un buffer.
  * Se ejecuta en un buffer infinito y está hecho para ser detenido de forma seguro mediante una interrupción
+ * Con un tamaño de lote mayor que 1 saca varios elementos de una vez (ver consumirPorLotes).
  *
  * @author Miguel Angel Ramirez
  */
 public class ConsumidorEnteros implements Runnable {
     private BufferInterface<Integer> buffer;
 
+    private int tamLote;
+
     private Random random = new Random();
 
     /**
-     * Construye un nuevo Consumidor.
+     * Construye un nuevo Consumidor que saca los elementos de uno en uno.
      * @param buffer El buffer de donde se extraen los elementos
      */
     public ConsumidorEnteros(BufferInterface<Integer> buffer) {
+        this(buffer, 1);
+    }
+
+    /**
+     * Construye un nuevo Consumidor que saca hasta tamLote elementos de una vez.
+     * @param buffer El buffer de donde se extraen los elementos
+     * @param tamLote Número máximo de elementos por lote (1 = de uno en uno)
+     */
+    public ConsumidorEnteros(BufferInterface<Integer> buffer, int tamLote) {
         this.buffer = buffer;
+        this.tamLote = Math.max(1, tamLote);
     }
 
     /**
@@ -37,6 +52,10 @@ public class ConsumidorEnteros implements Runnable {
     @Override
     public void run() {
         try {
+            if (tamLote > 1) {
+                consumirPorLotes();
+                return;
+            }
             while (!Thread.currentThread().isInterrupted()) {
                 Integer elemento = buffer.get();
                 System.out.println(Thread.currentThread().getName() + " ha consumido: " + elemento);
@@ -46,4 +65,23 @@ public class ConsumidorEnteros implements Runnable {
             System.out.println(Thread.currentThread().getName() + " fué interrumpido y finalizado");
         }
     }
+
+    /**
+     * Modo por lotes: espera al primer elemento con get() y saca los que haya detrás con drainTo(),
+     * así se toma el lock del buffer dos veces por lote en vez de una por elemento.
+     * El tiempo de procesamiento se simula una vez por lote.
+     *
+     * @throws InterruptedException Cuando se interrumpe el hilo.
+     */
+    private void consumirPorLotes() throws InterruptedException {
+        List<Integer> lote = new ArrayList<>(tamLote);
+        while (!Thread.currentThread().isInterrupted()) {
+            lote.add(buffer.get());
+            buffer.drainTo(lote, tamLote - 1);
+            System.out.println(Thread.currentThread().getName() + " ha consumido un lote de " + lote.size()
+                    + ": " + lote);
+            lote.clear();
+            Thread.sleep(random.nextInt(1001));
+        }
+    }
 }
@@ -0,0 +1,50 @@
+package unidad02.ejercicios.ejercicio02;
+
+
+/**
+ * Versión de ConsumidorEnteros para un BufferEnteros: extrae int sin pasar por Integer.
+ * Saca numElementos valores, los va sumando y termina; con la suma se comprueba al final que no se ha
+ * perdido ni repetido ninguno (y el JIT no puede eliminar las lecturas).
+ *
+ * Como ProductorPrimitivo, no imprime nada ni espera entre valores.
+ *
+ * @author Miguel Angel Ramirez
+ */
+public class ConsumidorPrimitivo implements Runnable {
+    private final BufferEnteros buffer;
+    private final int numElementos;
+    // Se lee después de join(), así que no hace falta volatile.
+    private long suma;
+
+    /**
+     * Construye un nuevo Consumidor.
+     * @param buffer El buffer de donde se extraen los valores
+     * @param numElementos La cantidad total de valores que este hilo debe consumir.
+     */
+    public ConsumidorPrimitivo(BufferEnteros buffer, int numElementos) {
+        this.buffer = buffer;
+        this.numElementos = numElementos;
+    }
+
+    /**
+     * Logica del hilo consumidor: extrae cada valor del buffer (esperando si está vacío) y lo suma.
+     * Si se le interrumpe deja de consumir.
+     */
+    @Override
+    public void run() {
+        try {
+            for (int i = 0; i < numElementos; i++) {
+                suma += buffer.getInt();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return La suma de los valores consumidos.
+     */
+    public long getSuma() {
+        return suma;
+    }
+}
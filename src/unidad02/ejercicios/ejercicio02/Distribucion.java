@@ -0,0 +1,101 @@
+package unidad02.ejercicios.ejercicio02;
+
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tiempo de servicio de un productor o un consumidor: cuánto tarda en "producir" o "procesar"
+ * cada elemento. Se escribe como texto para poder pasarlo por argumentos a SimuladorBuffer:
+ *  - ninguna           sin espera (solo se mide el buffer).
+ *  - fijo:ms           siempre lo mismo.
+ *  - uniforme:min:max  entre min y max ms, todos igual de probables (lo que hacían los sleep de Main).
+ *  - exponencial:media media en ms; muchos rápidos y algunos muy lentos, como las peticiones reales.
+ * Los milisegundos pueden llevar decimales (por ejemplo fijo:0.05 son 50 µs).
+ *
+ * @author Miguel Angel Ramirez
+ */
+public class Distribucion {
+
+    private final String texto;
+    private final String tipo;
+    private final double a;
+    private final double b;
+
+    private Distribucion(String texto, String tipo, double a, double b) {
+        this.texto = texto;
+        this.tipo = tipo;
+        this.a = a;
+        this.b = b;
+    }
+
+    /**
+     * Lee una distribución con el formato de la descripción de la clase.
+     * @param texto por ejemplo "uniforme:0:3000".
+     * @return La distribución.
+     * @throws IllegalArgumentException si el formato no es válido.
+     */
+    public static Distribucion desdeTexto(String texto) {
+        String[] partes = texto.split(":");
+        try {
+            switch (partes[0]) {
+                case "ninguna":
+                    if (partes.length == 1) {
+                        return new Distribucion(texto, "ninguna", 0, 0);
+                    }
+                    break;
+                case "fijo":
+                case "exponencial":
+                    if (partes.length == 2 && Double.parseDouble(partes[1]) >= 0) {
+                        return new Distribucion(texto, partes[0], Double.parseDouble(partes[1]), 0);
+                    }
+                    break;
+                case "uniforme":
+                    if (partes.length == 3) {
+                        double min = Double.parseDouble(partes[1]);
+                        double max = Double.parseDouble(partes[2]);
+                        if (min >= 0 && max >= min) {
+                            return new Distribucion(texto, "uniforme", min, max);
+                        }
+                    }
+                    break;
+                default:
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            // Se avisa abajo con el mismo mensaje.
+        }
+        throw new IllegalArgumentException("Distribución no válida: " + texto
+                + " (ninguna, fijo:ms, uniforme:min:max o exponencial:media)");
+    }
+
+    /**
+     * @return Un tiempo de servicio al azar, en nanosegundos.
+     */
+    public long siguienteNanos() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double ms = switch (tipo) {
+            case "fijo" -> a;
+            case "uniforme" -> a + random.nextDouble() * (b - a);
+            case "exponencial" -> -a * Math.log(1 - random.nextDouble());
+            default -> 0;
+        };
+        return (long) (ms * 1_000_000);
+    }
+
+    /**
+     * Duerme el hilo actual un tiempo de servicio al azar.
+     * @throws InterruptedException si se interrumpe el hilo mientras duerme.
+     */
+    public void esperar() throws InterruptedException {
+        long nanos = siguienteNanos();
+        if (nanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return texto;
+    }
+}
@@ -0,0 +1,33 @@
+package unidad02.ejercicios.ejercicio02;
+
+
+/**
+ * Recibe los avisos de un buffer cuando un hilo tiene que esperar y cuando vuelve de la espera.
+ *
+ * El buffer llama a evento() desde el hilo que espera y, en los buffers con lock, con el lock tomado:
+ * la implementación tiene que ser rápida y no debe escribir por consola ni tomar otros locks
+ * (ver TrazaBuffer, que solo apunta el evento en un array del propio hilo).
+ *
+ * @author Miguel Angel Ramirez
+ */
+@FunctionalInterface
+public interface EscuchaBuffer {
+
+    /**
+     * Lo que le pasa al hilo que llama al buffer.
+     */
+    enum Evento {
+        /** El buffer está lleno y el productor se pone a esperar. */
+        LLENO,
+        /** El buffer está vacío y el consumidor se pone a esperar. */
+        VACIO,
+        /** El hilo vuelve de una espera (puede que tenga que volver a esperar). */
+        DESPIERTA
+    }
+
+    /**
+     * Avisa de un evento del hilo actual.
+     * @param evento lo que ha pasado.
+     */
+    void evento(Evento evento);
+}
@@ -0,0 +1,20 @@
+package unidad02.ejercicios.ejercicio02;
+
+
+/**
+ * Qué hace BufferConPolitica con put() cuando el buffer está lleno.
+ *
+ * @author Miguel Angel Ramirez
+ */
+public enum PoliticaDesborde {
+    /** Espera a que haya sitio, sin límite (lo que hacen todos los buffers sin política). */
+    BLOQUEAR,
+    /** Espera como mucho el tiempo indicado y, si sigue lleno, lo rechaza como RECHAZAR. */
+    BLOQUEAR_CON_TIEMPO,
+    /** No mete el elemento nuevo y sigue sin avisar (se cuenta como descartado). */
+    DESCARTAR_NUEVO,
+    /** Saca el elemento más antiguo para hacer sitio al nuevo (se cuenta el sacado como descartado). */
+    DESCARTAR_ANTIGUO,
+    /** No mete el elemento y lanza IllegalStateException, para que el productor decida qué hacer. */
+    RECHAZAR
+}
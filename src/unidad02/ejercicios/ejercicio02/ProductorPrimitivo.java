@@ -0,0 +1,44 @@
+package unidad02.ejercicios.ejercicio02;
+
+/**
+ * Versión de ProductorEnteros para un BufferEnteros: produce int sin convertirlos a Integer.
+ * Mete en el buffer los valores primerValor, primerValor + 1, ... hasta numElementos y termina por sí solo.
+ *
+ * No imprime nada ni espera entre valores: se usa para medir el buffer (BenchmarkBufferEnteros),
+ * y un String por cada valor reservaría mucha más memoria que la que se quiere ahorrar.
+ *
+ * @author Miguel Angel Ramirez
+ */
+public class ProductorPrimitivo implements Runnable{
+    private final BufferEnteros buffer;
+    private final int primerValor;
+    private final int numElementos;
+
+    /**
+     * Construye un nuevo Productor.
+     *
+     * @param buffer El buffer donde se depositarán los valores.
+     * @param primerValor El primer valor producido; los siguientes van de uno en uno.
+     * @param numElementos La cantidad total de valores que este hilo debe producir.
+     */
+    public ProductorPrimitivo(BufferEnteros buffer, int primerValor, int numElementos){
+        this.buffer = buffer;
+        this.primerValor = primerValor;
+        this.numElementos = numElementos;
+    }
+
+    /**
+     * La logica del hilo productor: añade cada valor al buffer (buffer.putInt()), esperando si está lleno.
+     * Si se le interrumpe deja de producir.
+     */
+    @Override
+    public void run(){
+        try{
+            for (int i = 0; i < numElementos; i++){
+                buffer.putInt(primerValor + i);
+            }
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+    }
+}
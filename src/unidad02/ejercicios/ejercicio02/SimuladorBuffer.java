@@ -0,0 +1,394 @@
+package unidad02.ejercicios.ejercicio02;
+
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Simulación configurable del Productor - Consumidor, para probar un buffer con una carga parecida
+ * a la real y decidir su capacidad. Sustituye a lo que hacían Main y MainBQ con valores fijos.
+ *
+ * Se configura con argumentos clave=valor (los que no se pongan toman el valor por defecto):
+ *  - implementacion=Buffer        Buffer, BufferBQ, BufferCondiciones, BufferCondicionesJusto, BufferAnillo
+ *                                 o BufferAdaptativo.
+ *  - capacidad=22                 con BufferAdaptativo es la máxima (empieza en capacidad/16).
+ *  - politica=BLOQUEAR            qué hace put() con el buffer lleno (ver PoliticaDesborde).
+ *  - espera=100                   ms que espera put() con politica=BLOQUEAR_CON_TIEMPO.
+ *  - productores=4, consumidores=2
+ *  - elementos=5,8,7,3            elementos de cada productor (y así el número de productores). Sin esto,
+ *                                 los productores no paran hasta que se acaba la duración.
+ *  - duracion=5                   segundos que producen los productores, si no se da elementos.
+ *  - hilos=plataforma             o virtuales. Buffer usa synchronized y en Java 21 un hilo virtual
+ *                                 que espera en wait() no suelta su hilo de plataforma.
+ *  - produccion=exponencial:1     tiempo de servicio de cada productor (ver Distribucion).
+ *  - consumo=exponencial:1        tiempo de servicio de cada consumidor.
+ *  - muestreo=10                  cada cuántos ms se mira cuántos elementos hay en el buffer.
+ *  - mensajes=no                  si=escribir cada elemento producido y consumido, como Main.
+ *  - traza=no                     si=mostrar al final la línea temporal de esperas (TrazaBuffer).
+ *
+ * Al acabar los productores se deja que los consumidores vacíen el buffer y después se interrumpen.
+ * El informe muestra los elementos/s, el tiempo que se pasa dentro de put() y get() (esperando
+ * sitio o elementos), cuántas veces ha tenido que esperar cada lado, los elementos descartados o
+ * rechazados por la política y un histograma de cuántos elementos había en el buffer en cada muestra.
+ *
+ * Ejemplo: SimuladorBuffer implementacion=BufferCondiciones capacidad=64 productores=8 consumidores=4
+ *          hilos=virtuales produccion=exponencial:2 consumo=uniforme:1:5 duracion=10
+ *
+ * @author Miguel Angel Ramirez
+ */
+public class SimuladorBuffer {
+
+    private static final String[] IMPLEMENTACIONES = { "Buffer", "BufferBQ", "BufferCondiciones",
+            "BufferCondicionesJusto", "BufferAnillo", "BufferAdaptativo" };
+    private static final int BARRAS_HISTOGRAMA = 10;
+    private static final int ANCHO_BARRA = 40;
+    private static final long ESPERA_VACIADO_MS = 5_000;
+
+    private String implementacion = "Buffer";
+    private int capacidad = 22;
+    private PoliticaDesborde politica = PoliticaDesborde.BLOQUEAR;
+    private long esperaMs = 100;
+    private int productores = 4;
+    private int consumidores = 2;
+    private int[] elementosPorProductor;
+    private double duracion = 5;
+    private boolean virtuales;
+    private Distribucion produccion = Distribucion.desdeTexto("exponencial:1");
+    private Distribucion consumo = Distribucion.desdeTexto("exponencial:1");
+    private long muestreoMs = 10;
+    private boolean mensajes;
+    private boolean traza;
+
+    private BufferInterface<Integer> buffer;
+    private BufferConPolitica<Integer> bufferConPolitica;
+    private BufferAdaptativo<Integer> adaptativo;
+    private final LongAdder producidos = new LongAdder();
+    private final LongAdder consumidos = new LongAdder();
+    private final LongAdder nanosEnPut = new LongAdder();
+    private final LongAdder nanosEnGet = new LongAdder();
+    private final LongAdder esperasLleno = new LongAdder();
+    private final LongAdder esperasVacio = new LongAdder();
+    private long[] profundidades;
+    private volatile boolean parar;
+
+    public static void main(String[] args) throws InterruptedException {
+        SimuladorBuffer simulador;
+        try {
+            simulador = desdeArgumentos(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Uso: SimuladorBuffer [implementacion=Buffer] [capacidad=22] [productores=4]"
+                    + " [politica=BLOQUEAR] [espera=100] [consumidores=2] [elementos=5,8,7,3] [duracion=5] [hilos=plataforma|virtuales]"
+                    + " [produccion=exponencial:1] [consumo=exponencial:1] [muestreo=10] [mensajes=no] [traza=no]");
+            return;
+        }
+        simulador.ejecutar();
+    }
+
+    /**
+     * Lee la configuración de argumentos clave=valor.
+     * @param args los argumentos.
+     * @return El simulador configurado.
+     * @throws IllegalArgumentException si algún argumento no es válido.
+     */
+    public static SimuladorBuffer desdeArgumentos(String... args) {
+        SimuladorBuffer simulador = new SimuladorBuffer();
+        for (String arg : args) {
+            int igual = arg.indexOf('=');
+            if (igual < 0) {
+                throw new IllegalArgumentException("Argumento sin valor: " + arg);
+            }
+            String clave = arg.substring(0, igual);
+            String valor = arg.substring(igual + 1);
+            try {
+                switch (clave) {
+                    case "implementacion" -> {
+                        crearBuffer(valor, 1);
+                        simulador.implementacion = valor;
+                    }
+                    case "capacidad" -> simulador.capacidad = Integer.parseInt(valor);
+                    case "politica" -> {
+                        try {
+                            simulador.politica = PoliticaDesborde.valueOf(valor);
+                        } catch (IllegalArgumentException e) {
+                            throw new IllegalArgumentException("Política desconocida: " + valor + " "
+                                    + Arrays.toString(PoliticaDesborde.values()));
+                        }
+                    }
+                    case "espera" -> simulador.esperaMs = Long.parseLong(valor);
+                    case "productores" -> simulador.productores = Integer.parseInt(valor);
+                    case "consumidores" -> simulador.consumidores = Integer.parseInt(valor);
+                    case "elementos" -> {
+                        String[] partes = valor.split(",");
+                        simulador.elementosPorProductor = new int[partes.length];
+                        for (int i = 0; i < partes.length; i++) {
+                            simulador.elementosPorProductor[i] = Integer.parseInt(partes[i].trim());
+                        }
+                        simulador.productores = partes.length;
+                    }
+                    case "duracion" -> simulador.duracion = Double.parseDouble(valor);
+                    case "hilos" -> {
+                        if (!valor.equals("plataforma") && !valor.equals("virtuales")) {
+                            throw new IllegalArgumentException("hilos tiene que ser plataforma o virtuales");
+                        }
+                        simulador.virtuales = valor.equals("virtuales");
+                    }
+                    case "produccion" -> simulador.produccion = Distribucion.desdeTexto(valor);
+                    case "consumo" -> simulador.consumo = Distribucion.desdeTexto(valor);
+                    case "muestreo" -> simulador.muestreoMs = Long.parseLong(valor);
+                    case "mensajes" -> simulador.mensajes = valor.equals("si");
+                    case "traza" -> simulador.traza = valor.equals("si");
+                    default -> throw new IllegalArgumentException("Opción desconocida: " + clave);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Número no válido en " + arg);
+            }
+        }
+        if (simulador.capacidad < 1 || simulador.productores < 1 || simulador.consumidores < 1
+                || simulador.duracion <= 0 || simulador.muestreoMs < 1 || simulador.esperaMs < 0) {
+            throw new IllegalArgumentException("capacidad, productores, consumidores, duracion y muestreo"
+                    + " tienen que ser mayores que 0");
+        }
+        if (simulador.elementosPorProductor != null
+                && simulador.elementosPorProductor.length != simulador.productores) {
+            throw new IllegalArgumentException("elementos da " + simulador.elementosPorProductor.length
+                    + " productores y productores=" + simulador.productores);
+        }
+        return simulador;
+    }
+
+    /**
+     * Crea una implementación de BufferInterface a partir de su nombre.
+     * @param implementacion Buffer, BufferBQ, BufferCondiciones, BufferCondicionesJusto, BufferAnillo
+     *                       o BufferAdaptativo.
+     * @param capacidad capacidad máxima del buffer (BufferAdaptativo empieza en capacidad/16).
+     * @return El buffer.
+     * @throws IllegalArgumentException si el nombre no es de ninguna implementación.
+     */
+    public static <E> BufferInterface<E> crearBuffer(String implementacion, int capacidad) {
+        return switch (implementacion) {
+            case "Buffer" -> new Buffer<>(capacidad);
+            case "BufferBQ" -> new BufferBQ<>(capacidad);
+            case "BufferCondiciones" -> new BufferCondiciones<>(capacidad);
+            case "BufferCondicionesJusto" -> new BufferCondiciones<>(capacidad, true);
+            case "BufferAnillo" -> new BufferAnillo<>(capacidad);
+            case "BufferAdaptativo" -> new BufferAdaptativo<>(Math.max(1, capacidad / 16), capacidad);
+            default -> throw new IllegalArgumentException("Implementación desconocida: " + implementacion
+                    + " (" + String.join(", ", IMPLEMENTACIONES) + ")");
+        };
+    }
+
+    /**
+     * Ejecuta la simulación y escribe el informe.
+     * @throws InterruptedException si se interrumpe el hilo principal.
+     */
+    public void ejecutar() throws InterruptedException {
+        buffer = crearBuffer(implementacion, capacidad);
+        // BufferAnillo redondea la capacidad a potencia de dos.
+        int capacidadReal = buffer instanceof BufferAnillo<?> anillo ? anillo.getCapacidad() : capacidad;
+        adaptativo = buffer instanceof BufferAdaptativo<Integer> b ? b : null;
+        if (politica != PoliticaDesborde.BLOQUEAR) {
+            bufferConPolitica = new BufferConPolitica<>(buffer, politica, esperaMs, TimeUnit.MILLISECONDS);
+            buffer = bufferConPolitica;
+        }
+        profundidades = new long[capacidadReal + 1];
+        TrazaBuffer trazaBuffer = traza ? new TrazaBuffer() : null;
+        buffer.setEscucha(evento -> {
+            switch (evento) {
+                case LLENO -> esperasLleno.increment();
+                case VACIO -> esperasVacio.increment();
+                default -> { }
+            }
+            if (trazaBuffer != null) {
+                trazaBuffer.evento(evento);
+            }
+        });
+
+        System.out.println("--- " + implementacion + " (capacidad " + capacidadReal + ", " + politica
+                + (politica == PoliticaDesborde.BLOQUEAR_CON_TIEMPO ? " " + esperaMs + " ms" : "") + "), " + productores
+                + " productores, " + consumidores + " consumidores, hilos " + (virtuales ? "virtuales" : "de plataforma")
+                + ", producción " + produccion + " ms, consumo " + consumo + " ms, "
+                + (elementosPorProductor != null ? "elementos " + Arrays.toString(elementosPorProductor)
+                : duracion + " s") + " ---");
+
+        List<Thread> hilosProductores = new ArrayList<>();
+        for (int i = 0; i < productores; i++) {
+            int elementos = elementosPorProductor != null ? elementosPorProductor[i] : Integer.MAX_VALUE;
+            hilosProductores.add(crearHilo(() -> producir(elementos), "Productor-" + (i + 1)));
+        }
+        List<Thread> hilosConsumidores = new ArrayList<>();
+        for (int i = 0; i < consumidores; i++) {
+            hilosConsumidores.add(crearHilo(this::consumir, "Consumidor-" + (i + 1)));
+        }
+        Thread muestreador = new Thread(this::muestrear, "Muestreo-Buffer");
+        muestreador.setDaemon(true);
+
+        long inicio = System.nanoTime();
+        muestreador.start();
+        for (Thread consumidor : hilosConsumidores) {
+            consumidor.start();
+        }
+        for (Thread productor : hilosProductores) {
+            productor.start();
+        }
+
+        // Con duración, se para a los productores al acabar el tiempo.
+        if (elementosPorProductor == null) {
+            TimeUnit.NANOSECONDS.sleep((long) (duracion * 1_000_000_000));
+            parar = true;
+            for (Thread productor : hilosProductores) {
+                productor.interrupt();
+            }
+        }
+        for (Thread productor : hilosProductores) {
+            productor.join();
+        }
+        if (mensajes) System.out.println("--- Productores han terminado. ---");
+
+        // Los consumidores vacían lo que quede antes de interrumpirlos.
+        long limite = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ESPERA_VACIADO_MS);
+        while (consumidos.sum() + descartados() < producidos.sum() && System.nanoTime() - limite < 0) {
+            Thread.sleep(10);
+        }
+        if (mensajes) System.out.println("--- Interrumpiendo consumidores... ---");
+        for (Thread consumidor : hilosConsumidores) {
+            consumidor.interrupt();
+        }
+        for (Thread consumidor : hilosConsumidores) {
+            consumidor.join();
+        }
+        long nanos = System.nanoTime() - inicio;
+        muestreador.interrupt();
+        muestreador.join();
+
+        if (trazaBuffer != null) {
+            trazaBuffer.imprimir(System.out);
+        }
+        imprimirInforme(nanos);
+    }
+
+    private Thread crearHilo(Runnable tarea, String nombre) {
+        return virtuales ? Thread.ofVirtual().name(nombre).unstarted(tarea) : new Thread(tarea, nombre);
+    }
+
+    /**
+     * Bucle de un productor: mete elementos hasta llegar a los suyos o hasta que se le pare.
+     */
+    private void producir(int elementos) {
+        try {
+            for (int i = 0; i < elementos && !parar; i++) {
+                int elemento = ThreadLocalRandom.current().nextInt(101);
+                long antes = System.nanoTime();
+                boolean metido = true;
+                try {
+                    buffer.put(elemento);
+                } catch (IllegalStateException e) {
+                    // Rechazado por la política: lo cuenta BufferConPolitica y se sigue con el siguiente.
+                    metido = false;
+                }
+                nanosEnPut.add(System.nanoTime() - antes);
+                if (metido) {
+                    producidos.increment();
+                    if (mensajes) System.out.println(Thread.currentThread().getName() + " acaba de producir: " + elemento);
+                }
+                // El siguiente elemento tarda lo mismo en producirse aunque este se haya rechazado.
+                produccion.esperar();
+            }
+            if (mensajes) System.out.println("--- " + Thread.currentThread().getName() + " ha terminado de producir ---");
+        } catch (InterruptedException e) {
+            // Se ha acabado el tiempo.
+        }
+    }
+
+    /**
+     * Bucle de un consumidor: saca elementos hasta que se le interrumpe.
+     */
+    private void consumir() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long antes = System.nanoTime();
+                Integer elemento = buffer.get();
+                nanosEnGet.add(System.nanoTime() - antes);
+                consumidos.increment();
+                if (mensajes) System.out.println(Thread.currentThread().getName() + " ha consumido: " + elemento);
+                consumo.esperar();
+            }
+        } catch (InterruptedException e) {
+            if (mensajes) System.out.println(Thread.currentThread().getName() + " fué interrumpido y finalizado");
+        }
+    }
+
+    /**
+     * Bucle del hilo de muestreo: apunta cuántos elementos hay en el buffer (metidos menos sacados).
+     * Los dos contadores no se leen a la vez, así que cada muestra es aproximada.
+     */
+    private void muestrear() {
+        try {
+            while (true) {
+                long enBuffer = producidos.sum() - consumidos.sum() - descartados();
+                profundidades[(int) Math.max(0, Math.min(profundidades.length - 1, enBuffer))]++;
+                Thread.sleep(muestreoMs);
+            }
+        } catch (InterruptedException e) {
+            // Fin de la simulación.
+        }
+    }
+
+    /**
+     * @return Elementos metidos con put() que la política ha tirado (0 sin política).
+     */
+    private long descartados() {
+        return bufferConPolitica != null ? bufferConPolitica.getDescartados() : 0;
+    }
+
+    private void imprimirInforme(long nanos) {
+        double segundos = nanos / 1e9;
+        long metidos = producidos.sum();
+        long sacados = consumidos.sum();
+        long rechazados = bufferConPolitica != null ? bufferConPolitica.getRechazados() : 0;
+        double nanosProductores = (double) nanos * productores;
+        double nanosConsumidores = (double) nanos * consumidores;
+
+        System.out.println();
+        System.out.println("--- Resultado ---");
+        System.out.printf("Tiempo: %.2f s. Producidos: %d. Consumidos: %d -> %.1f elementos/s%n",
+                segundos, metidos, sacados, sacados / segundos);
+        System.out.printf("Dentro de put(): %.3f s en total, %.1f µs por llamada, %.1f%% del tiempo de los productores."
+                        + " Esperas con el buffer lleno: %d%n",
+                nanosEnPut.sum() / 1e9, metidos + rechazados == 0 ? 0 : nanosEnPut.sum() / 1e3 / (metidos + rechazados),
+                100 * nanosEnPut.sum() / nanosProductores, esperasLleno.sum());
+        System.out.printf("Dentro de get(): %.3f s en total, %.1f µs por llamada, %.1f%% del tiempo de los consumidores."
+                        + " Esperas con el buffer vacío: %d%n",
+                nanosEnGet.sum() / 1e9, sacados == 0 ? 0 : nanosEnGet.sum() / 1e3 / sacados,
+                100 * nanosEnGet.sum() / nanosConsumidores, esperasVacio.sum());
+        if (bufferConPolitica != null) {
+            System.out.printf("Política %s: %d descartados, %d rechazados%n", politica, descartados(), rechazados);
+        }
+        if (adaptativo != null) {
+            System.out.printf("Capacidad al terminar: %d (ha cambiado %d veces)%n",
+                    adaptativo.getCapacidad(), adaptativo.getCambios());
+        }
+
+        long muestras = 0;
+        for (long veces : profundidades) {
+            muestras += veces;
+        }
+        System.out.println("Elementos en el buffer (" + muestras + " muestras, una cada " + muestreoMs + " ms):");
+        int porBarra = (profundidades.length + BARRAS_HISTOGRAMA - 1) / BARRAS_HISTOGRAMA;
+        for (int desde = 0; desde < profundidades.length; desde += porBarra) {
+            int hasta = Math.min(profundidades.length, desde + porBarra) - 1;
+            long veces = 0;
+            for (int i = desde; i <= hasta; i++) {
+                veces += profundidades[i];
+            }
+            double porcentaje = muestras == 0 ? 0 : 100.0 * veces / muestras;
+            System.out.printf("%11s | %-" + ANCHO_BARRA + "s %5.1f%%%n",
+                    desde == hasta ? String.valueOf(desde) : desde + "-" + hasta,
+                    "#".repeat((int) Math.round(porcentaje * ANCHO_BARRA / 100)), porcentaje);
+        }
+    }
+}
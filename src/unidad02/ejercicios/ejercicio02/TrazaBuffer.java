@@ -0,0 +1,176 @@
+package unidad02.ejercicios.ejercicio02;
+
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * EscuchaBuffer que apunta los eventos de espera para mostrarlos después como una línea temporal.
+ *
+ * Sustituye a los System.out.println que hacía Buffer dentro del monitor: escribir por consola toma el
+ * lock de System.out, así que con muchos hilos la zona sincronizada acaba esperando a la consola.
+ * Aquí cada hilo apunta sus eventos en su propio anillo (un array circular que solo escribe él),
+ * sin locks ni objetos nuevos por evento; si se llena, se pisan los eventos más antiguos de ese hilo.
+ *
+ * Los eventos se leen con getEventos() o imprimir() cuando los hilos que usan el buffer han terminado
+ * (después de join()); leerlos mientras siguen escribiendo puede dar eventos a medias.
+ *
+ * @author Miguel Angel Ramirez
+ */
+public class TrazaBuffer implements EscuchaBuffer {
+
+    private static final int CAPACIDAD_POR_DEFECTO = 1024;
+    private static final EscuchaBuffer.Evento[] TIPOS = EscuchaBuffer.Evento.values();
+
+    private final int capacidadPorHilo;
+    private final long inicio = System.nanoTime();
+    private final Queue<Anillo> anillos = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Anillo> anilloDelHilo = ThreadLocal.withInitial(this::nuevoAnillo);
+
+    /**
+     * Crea una traza que guarda los últimos 1024 eventos de cada hilo.
+     */
+    public TrazaBuffer() {
+        this(CAPACIDAD_POR_DEFECTO);
+    }
+
+    /**
+     * Crea una traza.
+     * @param capacidadPorHilo número de eventos que se guardan de cada hilo (los más recientes).
+     */
+    public TrazaBuffer(int capacidadPorHilo) {
+        if (capacidadPorHilo < 1) {
+            throw new IllegalArgumentException("Capacidad no válida: " + capacidadPorHilo);
+        }
+        this.capacidadPorHilo = capacidadPorHilo;
+    }
+
+    /**
+     * Apunta el evento en el anillo del hilo actual.
+     * @param evento lo que ha pasado.
+     */
+    @Override
+    public void evento(EscuchaBuffer.Evento evento) {
+        anilloDelHilo.get().apuntar(System.nanoTime(), evento);
+    }
+
+    /**
+     * @return Todos los eventos guardados, ordenados por tiempo.
+     */
+    public List<Registro> getEventos() {
+        List<Registro> eventos = new ArrayList<>();
+        for (Anillo anillo : anillos) {
+            anillo.copiarEn(eventos);
+        }
+        eventos.sort(Comparator.comparingLong(Registro::getNanos));
+        return eventos;
+    }
+
+    /**
+     * @return Número de eventos que se han perdido porque el anillo de su hilo estaba lleno.
+     */
+    public long getPerdidos() {
+        long perdidos = 0;
+        for (Anillo anillo : anillos) {
+            perdidos += Math.max(0, anillo.escritos - capacidadPorHilo);
+        }
+        return perdidos;
+    }
+
+    /**
+     * Escribe la línea temporal: un evento por línea, con los milisegundos desde que se creó la traza.
+     * @param salida donde se escribe.
+     */
+    public void imprimir(PrintStream salida) {
+        List<Registro> eventos = getEventos();
+        salida.println("--- Línea temporal del buffer (" + eventos.size() + " esperas y despertares) ---");
+        for (Registro registro : eventos) {
+            salida.println(registro);
+        }
+        long perdidos = getPerdidos();
+        if (perdidos > 0) {
+            salida.println("(" + perdidos + " eventos antiguos perdidos por falta de espacio)");
+        }
+    }
+
+    private Anillo nuevoAnillo() {
+        Anillo anillo = new Anillo(Thread.currentThread().getName(), capacidadPorHilo);
+        anillos.add(anillo);
+        return anillo;
+    }
+
+    /**
+     * Los eventos de un hilo. Solo lo escribe ese hilo, así que no necesita sincronización.
+     */
+    private class Anillo {
+        private final String hilo;
+        private final long[] tiempos;
+        private final byte[] tipos;
+        private long escritos;
+
+        Anillo(String hilo, int capacidad) {
+            this.hilo = hilo;
+            this.tiempos = new long[capacidad];
+            this.tipos = new byte[capacidad];
+        }
+
+        void apuntar(long nanos, EscuchaBuffer.Evento evento) {
+            int posicion = (int) (escritos % tiempos.length);
+            tiempos[posicion] = nanos;
+            tipos[posicion] = (byte) evento.ordinal();
+            escritos++;
+        }
+
+        void copiarEn(List<Registro> destino) {
+            long desde = Math.max(0, escritos - tiempos.length);
+            for (long i = desde; i < escritos; i++) {
+                int posicion = (int) (i % tiempos.length);
+                destino.add(new Registro(hilo, tiempos[posicion], TIPOS[tipos[posicion]]));
+            }
+        }
+    }
+
+    /**
+     * Un evento de la línea temporal.
+     */
+    public class Registro {
+        private final String hilo;
+        private final long nanos;
+        private final EscuchaBuffer.Evento evento;
+
+        private Registro(String hilo, long nanos, EscuchaBuffer.Evento evento) {
+            this.hilo = hilo;
+            this.nanos = nanos;
+            this.evento = evento;
+        }
+
+        public String getHilo() {
+            return hilo;
+        }
+
+        /**
+         * @return El momento del evento, en System.nanoTime().
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        public EscuchaBuffer.Evento getEvento() {
+            return evento;
+        }
+
+        @Override
+        public String toString() {
+            String texto = switch (evento) {
+                case LLENO -> "El buffer esta lleno. Esperando...";
+                case VACIO -> "El buffer esta vacío. Esperando...";
+                case DESPIERTA -> "Despierta";
+            };
+            return String.format("%10.3f ms  %-14s %s", (nanos - inicio) / 1e6, hilo, texto);
+        }
+    }
+}
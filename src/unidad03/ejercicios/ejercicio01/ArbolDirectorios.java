@@ -0,0 +1,165 @@
+package unidad03.ejercicios.ejercicio01;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Inventario recursivo de un directorio para el comando #tree.
+ *
+ * Cada directorio es una tarea de un ForkJoinPool: lee sus entradas, suma los ficheros que contiene
+ * y lanza (fork) una subtarea por cada subdirectorio, de forma que los subárboles se recorren en paralelo.
+ * Después une (join) los resultados para calcular los totales de cada subárbol.
+ *
+ * En memoria solo se guarda un resumen por directorio, no por fichero. La respuesta se envía en lotes
+ * de LOTE_LINEAS líneas.
+ *
+ * @author Miguel Angel Ramírez
+ */
+public class ArbolDirectorios {
+    private static final int LOTE_LINEAS = 256;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * @param paralelismo Número de hilos del ForkJoinPool.
+     */
+    public ArbolDirectorios(int paralelismo) {
+        this.pool = new ForkJoinPool(paralelismo);
+    }
+
+    /**
+     * Recorre el directorio y envía una línea por cada subdirectorio (en preorden, sangrada según su nivel)
+     * con sus ficheros y bytes propios y los totales de su subárbol.
+     *
+     * @param raiz Directorio de partida.
+     * @param profundidad Niveles de subdirectorios que se recorren (0 = solo la raíz).
+     * @param salida Donde se escribe la respuesta.
+     */
+    public void enviarArbol(Path raiz, int profundidad, SalidaRespuesta salida) {
+        Resumen resumen = pool.invoke(new TareaDirectorio(raiz, raiz, 0, profundidad));
+
+        salida.escribirLinea("Arbol: " + raiz + " (profundidad " + profundidad + ")");
+        int[] lineas = { 0 };
+        escribir(resumen, salida, lineas);
+        salida.escribirLinea("Arbol: " + resumen.directoriosTotales + " directorios, "
+                + resumen.ficherosTotales + " ficheros, " + resumen.bytesTotales + " bytes.");
+        salida.finRespuesta();
+    }
+
+    /**
+     * Detiene los hilos del ForkJoinPool.
+     */
+    public void cerrar() {
+        pool.shutdown();
+    }
+
+    /**
+     * Escribe el resumen de un directorio y, recursivamente, el de sus hijos.
+     * Cada LOTE_LINEAS líneas se vacía la salida para no acumular la respuesta entera.
+     */
+    private void escribir(Resumen r, SalidaRespuesta salida, int[] lineas) {
+        StringBuilder linea = new StringBuilder();
+        for (int i = 0; i < r.nivel; i++) linea.append("  ");
+        linea.append("D ").append(r.ruta.isEmpty() ? "." : r.ruta)
+                .append(" ficheros=").append(r.ficheros)
+                .append(" bytes=").append(r.bytes)
+                .append(" (total: ficheros=").append(r.ficherosTotales)
+                .append(" bytes=").append(r.bytesTotales).append(')');
+        if (r.error) linea.append(" [sin acceso]");
+        salida.escribirLinea(linea.toString());
+
+        if (++lineas[0] % LOTE_LINEAS == 0) {
+            salida.vaciar();
+        }
+        for (Resumen hijo : r.hijos) {
+            escribir(hijo, salida, lineas);
+        }
+    }
+
+    /**
+     * Resultado de recorrer un directorio.
+     */
+    private static class Resumen {
+        private final String ruta;
+        private final int nivel;
+        private final List<Resumen> hijos = new ArrayList<>();
+        private long ficheros;
+        private long bytes;
+        private long ficherosTotales;
+        private long bytesTotales;
+        private long directoriosTotales = 1;
+        private boolean error;
+
+        private Resumen(String ruta, int nivel) {
+            this.ruta = ruta;
+            this.nivel = nivel;
+        }
+    }
+
+    /**
+     * Tarea que resume un directorio y lanza una subtarea por cada subdirectorio.
+     * RecursiveTask es Serializable, pero las tareas solo viven en el ForkJoinPool y nunca se serializan.
+     */
+    @SuppressWarnings("serial")
+    private static class TareaDirectorio extends RecursiveTask<Resumen> {
+        private final Path raiz;
+        private final Path directorio;
+        private final int nivel;
+        private final int profundidad;
+
+        private TareaDirectorio(Path raiz, Path directorio, int nivel, int profundidad) {
+            this.raiz = raiz;
+            this.directorio = directorio;
+            this.nivel = nivel;
+            this.profundidad = profundidad;
+        }
+
+        @Override
+        protected Resumen compute() {
+            Resumen resumen = new Resumen(raiz.relativize(directorio).toString(), nivel);
+            List<TareaDirectorio> subtareas = new ArrayList<>();
+
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directorio)) {
+                for (Path p : stream) {
+                    // Sin seguir enlaces simbólicos, para no entrar en ciclos.
+                    BasicFileAttributes atributos;
+                    try {
+                        atributos = Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        continue;
+                    }
+                    if (atributos.isDirectory()) {
+                        if (nivel < profundidad) {
+                            TareaDirectorio subtarea = new TareaDirectorio(raiz, p, nivel + 1, profundidad);
+                            subtarea.fork();
+                            subtareas.add(subtarea);
+                        }
+                    } else {
+                        resumen.ficheros++;
+                        resumen.bytes += atributos.size();
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                resumen.error = true;
+            }
+
+            resumen.ficherosTotales = resumen.ficheros;
+            resumen.bytesTotales = resumen.bytes;
+            for (TareaDirectorio subtarea : subtareas) {
+                Resumen hijo = subtarea.join();
+                resumen.hijos.add(hijo);
+                resumen.ficherosTotales += hijo.ficherosTotales;
+                resumen.bytesTotales += hijo.bytesTotales;
+                resumen.directoriosTotales += hijo.directoriosTotales;
+            }
+            // Orden estable en la respuesta aunque las subtareas terminen en cualquier orden.
+            resumen.hijos.sort((a, b) -> a.ruta.compareTo(b.ruta));
+            return resumen;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package unidad03.ejercicios.ejercicio01;
+
+import java.io.*;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Mide lo que aporta "#comp on" en los listados grandes sobre un enlace lento.
+ *
+ * Crea un directorio con muchos ficheros, arranca un Servidor y, delante, un proxy que limita la velocidad
+ * de las respuestas (servidor -> cliente) para simular una red lenta por localhost. Pide los listados
+ * (#list, que sale de la caché en una trama, y "#list .", que va por partes) sin y con compresión,
+ * y muestra los bytes que han pasado por el proxy y el tiempo de cada respuesta.
+ *
+ * Uso: BenchmarkCompresion [ficheros=20000] [KB/s=1024] [repeticiones=5]
+ *
+ * @author Miguel Angel Ramírez
+ */
+public class BenchmarkCompresion {
+    private static final int PUERTO_SERVIDOR = 54335;
+    private static final int PUERTO_PROXY = 54336;
+    private static final int TAM_COPIA = 16 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        int ficheros = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        long bytesPorSegundo = (args.length > 1 ? Long.parseLong(args[1]) : 1024) * 1024;
+        int repeticiones = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        Path directorio = Files.createTempDirectory("benchmark-comp");
+        Servidor servidor = null;
+        Thread hilo = null;
+        try (ProxyLento proxy = new ProxyLento(PUERTO_PROXY, PUERTO_SERVIDOR, bytesPorSegundo)) {
+            System.out.println("--- Creando " + ficheros + " ficheros en " + directorio + " ---");
+            for (int i = 0; i < ficheros; i++) {
+                Files.createFile(directorio.resolve(String.format("documento_%06d.txt", i)));
+            }
+
+            servidor = new Servidor(directorio.toString(), PUERTO_SERVIDOR, 16);
+            hilo = new Thread(servidor::atenderConcurrente, "Servidor-Benchmark");
+            hilo.start();
+            proxy.iniciar();
+
+            String[] peticiones = { Protocolo.CMD_LIST, Protocolo.CMD_LIST + " ." };
+            StringBuilder resultados = new StringBuilder();
+            for (String peticion : peticiones) {
+                for (boolean comprimir : new boolean[] { false, true }) {
+                    resultados.append(medir(proxy, peticion, comprimir, repeticiones)).append('\n');
+                }
+            }
+
+            System.out.println();
+            System.out.println("--- RESULTADOS (" + ficheros + " ficheros, enlace de " + bytesPorSegundo / 1024
+                    + " KB/s, " + repeticiones + " repeticiones) ---");
+            System.out.print(resultados);
+        } finally {
+            if (servidor != null) {
+                servidor.detener();
+                hilo.join();
+            }
+            try (Stream<Path> rutas = Files.walk(directorio)) {
+                rutas.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * Se conecta a través del proxy, pide la respuesta varias veces y mide bytes y tiempo.
+     *
+     * @return Una línea con el resumen de la medida.
+     */
+    private static String medir(ProxyLento proxy, String peticion, boolean comprimir, int repeticiones)
+            throws IOException, InterruptedException {
+        try (Socket socket = conectar(PUERTO_PROXY)) {
+            negociarBinario(socket);
+            DataInputStream entrada = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            if (comprimir) {
+                TramaBinaria.escribirPeticion(salida, Protocolo.CMD_COMP + " on");
+                leerRespuesta(entrada);
+            }
+
+            // Una petición de calentamiento que no se cuenta (llena la caché y compila el código).
+            TramaBinaria.escribirPeticion(salida, peticion);
+            leerRespuesta(entrada);
+
+            long bytesInicio = proxy.getBytesRespuestas();
+            long original = 0;
+            long inicio = System.nanoTime();
+            for (int i = 0; i < repeticiones; i++) {
+                TramaBinaria.escribirPeticion(salida, peticion);
+                original += leerRespuesta(entrada);
+            }
+            double segundos = (System.nanoTime() - inicio) / 1_000_000_000.0;
+            long enRed = proxy.getBytesRespuestas() - bytesInicio;
+
+            TramaBinaria.escribirPeticion(salida, Protocolo.CMD_FIN);
+            return String.format("%-8s %-14s %10d bytes/respuesta (%5.1f%% de %d) %9.1f ms/respuesta",
+                    peticion, comprimir ? "comprimido" : "sin comprimir", enRed / repeticiones,
+                    100.0 * enRed / original, original / repeticiones, segundos * 1000 / repeticiones);
+        }
+    }
+
+    /**
+     * Lee todas las tramas de una respuesta.
+     *
+     * @return Bytes de texto de la respuesta, ya descomprimidos.
+     */
+    private static long leerRespuesta(DataInputStream entrada) throws IOException {
+        long bytes = 0;
+        TramaBinaria.Trama trama;
+        do {
+            trama = TramaBinaria.leerRespuesta(entrada);
+            if (trama.getEstado() == TramaBinaria.ESTADO_ERROR) {
+                throw new IOException(trama.getTexto());
+            }
+            bytes += trama.getLongitud();
+        } while (!trama.esUltima());
+        return bytes;
+    }
+
+    /**
+     * Envía "#proto bin" en modo texto y lee la confirmación byte a byte, para no dejar nada en un buffer.
+     */
+    private static void negociarBinario(Socket socket) throws IOException {
+        OutputStream salida = socket.getOutputStream();
+        salida.write((TramaBinaria.CMD_PROTO_BIN + "\n").getBytes());
+        salida.flush();
+
+        InputStream entrada = socket.getInputStream();
+        StringBuilder linea = new StringBuilder();
+        int c;
+        while ((c = entrada.read()) >= 0) {
+            if (c != '\n') {
+                linea.append((char) c);
+            } else if (linea.toString().equals(Protocolo.FIN_RESPUESTA)) {
+                return;
+            } else {
+                linea.setLength(0);
+            }
+        }
+        throw new EOFException("El servidor cerró la conexión");
+    }
+
+    /**
+     * Se conecta reintentando mientras el servidor termina de arrancar.
+     */
+    private static Socket conectar(int puerto) throws IOException, InterruptedException {
+        for (int intento = 0; ; intento++) {
+            try {
+                return new Socket("localhost", puerto);
+            } catch (ConnectException e) {
+                if (intento == 50) throw e;
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    /**
+     * Proxy TCP que reenvía cada conexión al servidor y limita la velocidad de las respuestas,
+     * contando los bytes que pasan. Las peticiones (cliente -> servidor) pasan sin límite.
+     */
+    private static class ProxyLento implements Closeable {
+        private final ServerSocket serverSocket;
+        private final int puertoDestino;
+        private final long bytesPorSegundo;
+        private final AtomicLong bytesRespuestas = new AtomicLong();
+
+        ProxyLento(int puerto, int puertoDestino, long bytesPorSegundo) throws IOException {
+            this.serverSocket = new ServerSocket(puerto);
+            this.puertoDestino = puertoDestino;
+            this.bytesPorSegundo = bytesPorSegundo;
+        }
+
+        void iniciar() {
+            Thread aceptador = new Thread(() -> {
+                try {
+                    while (true) {
+                        Socket cliente = serverSocket.accept();
+                        Socket servidor = conectar(puertoDestino);
+                        reenviar(cliente, servidor, false);
+                        reenviar(servidor, cliente, true);
+                    }
+                } catch (IOException | InterruptedException e) {
+                    // Se ha cerrado el proxy.
+                }
+            }, "Proxy-Aceptador");
+            aceptador.setDaemon(true);
+            aceptador.start();
+        }
+
+        long getBytesRespuestas() {
+            return bytesRespuestas.get();
+        }
+
+        /**
+         * Copia de un socket a otro en un hilo aparte. Si se limita, cada trozo espera antes de reenviarse
+         * el tiempo que tardaría en pasar a bytesPorSegundo.
+         */
+        private void reenviar(Socket origen, Socket destino, boolean limitar) {
+            Thread hilo = new Thread(() -> {
+                byte[] buffer = new byte[TAM_COPIA];
+                try (origen; destino) {
+                    InputStream entrada = origen.getInputStream();
+                    OutputStream salida = destino.getOutputStream();
+                    int n;
+                    while ((n = entrada.read(buffer)) >= 0) {
+                        if (limitar) {
+                            // El trozo "tarda" en pasar lo que tardaría en el enlace lento.
+                            bytesRespuestas.addAndGet(n);
+                            long espera = n * 1_000_000_000L / bytesPorSegundo;
+                            Thread.sleep(espera / 1_000_000, (int) (espera % 1_000_000));
+                        }
+                        salida.write(buffer, 0, n);
+                        salida.flush();
+                    }
+                } catch (IOException | InterruptedException e) {
+                    // Una de las dos conexiones se ha cerrado.
+                }
+            }, "Proxy-" + (limitar ? "Respuestas" : "Peticiones"));
+            hilo.setDaemon(true);
+            hilo.start();
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+        }
+    }
+}
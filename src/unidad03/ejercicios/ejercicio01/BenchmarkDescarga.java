@@ -0,0 +1,213 @@
+package unidad03.ejercicios.ejercicio01;
+
+import java.io.*;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Mide el rendimiento de #get descargando un fichero grande por localhost de dos formas:
+ *  1. Copia por flujos: el servidor lee el fichero en un buffer de 64 KB y lo escribe en el socket,
+ *     y el cliente hace lo mismo al revés.
+ *  2. Envío directo: el servidor usa FileChannel.transferTo() (sendfile) y el cliente FileChannel.transferFrom().
+ *
+ * Muestra MB/s y el tiempo de cada descarga. Conviene probar con ficheros de varios GB
+ * (por ejemplo "BenchmarkDescarga 4096") para que la caché de disco y el JIT no dominen la medida;
+ * hace falta el doble de espacio libre en el directorio temporal.
+ *
+ * Uso: BenchmarkDescarga [MB=1024] [repeticiones=3]
+ *
+ * @author Miguel Angel Ramírez
+ */
+public class BenchmarkDescarga {
+    private static final int PUERTO = 54333;
+    private static final int TAM_COPIA = 64 * 1024;
+    private static final String NOMBRE = "fichero.bin";
+
+    public static void main(String[] args) throws Exception {
+        long megas = args.length > 0 ? Long.parseLong(args[0]) : 1024;
+        int repeticiones = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+        Path directorio = Files.createTempDirectory("benchmark-get");
+        try {
+            System.out.println("--- Creando fichero de " + megas + " MB en " + directorio + " ---");
+            crearFichero(directorio.resolve(NOMBRE), megas * 1024 * 1024);
+            Path destino = Files.createTempFile("benchmark-get", ".descarga");
+
+            try {
+                String[] resultados = {
+                        medir("Copia por flujos (64 KB)", false, directorio, destino, repeticiones, PUERTO),
+                        medir("transferTo/transferFrom", true, directorio, destino, repeticiones, PUERTO + 1)
+                };
+
+                System.out.println();
+                System.out.println("--- RESULTADOS (#get de " + megas + " MB, " + repeticiones + " repeticiones) ---");
+                for (String r : resultados) {
+                    System.out.println(r);
+                }
+            } finally {
+                Files.deleteIfExists(destino);
+            }
+        } finally {
+            try (Stream<Path> rutas = Files.walk(directorio)) {
+                rutas.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * Arranca un servidor con el modo de envío indicado, descarga el fichero varias veces y lo detiene.
+     *
+     * @return Una línea con el resumen de la medida.
+     */
+    private static String medir(String nombre, boolean directo, Path directorio, Path destino,
+                                int repeticiones, int puerto) throws Exception {
+        Servidor servidor = new Servidor(directorio.toString(), puerto, 16);
+        servidor.setEnvioDirecto(directo);
+        Thread hilo = new Thread(servidor::atenderConcurrente, "Servidor-" + nombre);
+        hilo.start();
+
+        try (Socket socket = conectar(puerto)) {
+            negociarBinario(socket);
+            DataInputStream entrada = new DataInputStream(socket.getInputStream());
+            DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            // Una descarga de calentamiento que no se cuenta.
+            descargar(socket, entrada, salida, destino, directo);
+
+            long bytes = 0;
+            long inicio = System.nanoTime();
+            for (int i = 0; i < repeticiones; i++) {
+                bytes += descargar(socket, entrada, salida, destino, directo);
+            }
+            double segundos = (System.nanoTime() - inicio) / 1_000_000_000.0;
+
+            TramaBinaria.escribirPeticion(salida, Protocolo.CMD_FIN);
+            return String.format("%-26s %9.1f MB/s %9.3f s/descarga",
+                    nombre, bytes / segundos / (1024 * 1024), segundos / repeticiones);
+        } finally {
+            servidor.detener();
+            hilo.join();
+        }
+    }
+
+    /**
+     * Pide el fichero con #get y lo guarda en el destino.
+     *
+     * @return Bytes del fichero recibidos.
+     */
+    private static long descargar(Socket socket, DataInputStream entrada, DataOutputStream salida,
+                                  Path destino, boolean directo) throws IOException {
+        TramaBinaria.escribirPeticion(salida, Protocolo.CMD_GET + " " + NOMBRE);
+        long recibidos = 0;
+        TramaBinaria.Trama trama;
+        do {
+            trama = TramaBinaria.leerRespuesta(entrada);
+            if (trama.getEstado() == TramaBinaria.ESTADO_ERROR) {
+                throw new IOException(trama.getTexto());
+            }
+            if (trama.esFichero()) {
+                recibidos = directo
+                        ? recibirDirecto(socket.getChannel(), destino, trama.getLongitud())
+                        : recibirCopiando(entrada, destino, trama.getLongitud());
+            }
+        } while (!trama.esUltima());
+        return recibidos;
+    }
+
+    /**
+     * Recibe el fichero con FileChannel.transferFrom() desde el canal del socket.
+     */
+    private static long recibirDirecto(SocketChannel canal, Path destino, long longitud) throws IOException {
+        try (FileChannel fichero = FileChannel.open(destino, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long posicion = 0;
+            while (posicion < longitud) {
+                long n = fichero.transferFrom(canal, posicion, longitud - posicion);
+                if (n <= 0) throw new EOFException("Conexión cerrada durante la descarga");
+                posicion += n;
+            }
+            return posicion;
+        }
+    }
+
+    /**
+     * Recibe el fichero leyendo del flujo del socket en un buffer de 64 KB.
+     */
+    private static long recibirCopiando(InputStream entrada, Path destino, long longitud) throws IOException {
+        byte[] buffer = new byte[TAM_COPIA];
+        try (OutputStream fichero = Files.newOutputStream(destino, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            long pendientes = longitud;
+            while (pendientes > 0) {
+                int n = entrada.read(buffer, 0, (int) Math.min(buffer.length, pendientes));
+                if (n < 0) throw new EOFException("Conexión cerrada durante la descarga");
+                fichero.write(buffer, 0, n);
+                pendientes -= n;
+            }
+            return longitud;
+        }
+    }
+
+    /**
+     * Envía "#proto bin" en modo texto y lee la confirmación byte a byte, para no dejar nada en un buffer.
+     */
+    private static void negociarBinario(Socket socket) throws IOException {
+        OutputStream salida = socket.getOutputStream();
+        salida.write((TramaBinaria.CMD_PROTO_BIN + "\n").getBytes());
+        salida.flush();
+
+        InputStream entrada = socket.getInputStream();
+        StringBuilder linea = new StringBuilder();
+        int c;
+        while ((c = entrada.read()) >= 0) {
+            if (c != '\n') {
+                linea.append((char) c);
+            } else if (linea.toString().equals(Protocolo.FIN_RESPUESTA)) {
+                return;
+            } else {
+                linea.setLength(0);
+            }
+        }
+        throw new EOFException("El servidor cerró la conexión");
+    }
+
+    /**
+     * Crea el fichero de prueba con datos aleatorios, escribiendo el mismo bloque de 1 MB varias veces.
+     */
+    private static void crearFichero(Path fichero, long tamaño) throws IOException {
+        byte[] bloque = new byte[1024 * 1024];
+        new Random(42).nextBytes(bloque);
+        try (FileChannel canal = FileChannel.open(fichero, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.wrap(bloque);
+            for (long escritos = 0; escritos < tamaño; ) {
+                buffer.clear().limit((int) Math.min(bloque.length, tamaño - escritos));
+                escritos += canal.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Se conecta al servidor (a través de un SocketChannel, para poder usar transferFrom)
+     * reintentando mientras termina de arrancar.
+     */
+    private static Socket conectar(int puerto) throws IOException, InterruptedException {
+        for (int intento = 0; ; intento++) {
+            try {
+                return SocketChannel.open(new InetSocketAddress("localhost", puerto)).socket();
+            } catch (ConnectException e) {
+                if (intento == 50) throw e;
+                Thread.sleep(100);
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package unidad03.ejercicios.ejercicio01;
+
+import java.io.*;
+import java.net.ConnectException;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Mide el coste de "#tree 1" sobre un directorio grande con las distintas formas de escribir las respuestas:
+ *  1. PrintWriter con autoflush (una escritura por cada línea o bloque) y Nagle activado.
+ *  2. PrintWriter con autoflush y TCP_NODELAY.
+ *  3. Respuesta agrupada en una sola escritura y TCP_NODELAY (opción por defecto).
+ *
+ * Para cada caso muestra peticiones por segundo, MB/s y escrituras en el socket por petición
+ * (cada escritura es una llamada al sistema).
+ *
+ * No se usa #list: sin argumentos sale de la caché ya codificado en un solo bloque, así que con autoflush
+ * también es una sola escritura. #tree escribe una línea por cada subdirectorio (una de cada diez entradas).
+ *
+ * Uso: BenchmarkListado [entradas=10000] [peticiones=200]
+ *
+ * @author Miguel Angel Ramírez
+ */
+public class BenchmarkListado {
+    private static final int PUERTO = 54330;
+    private static final int CALENTAMIENTO = 20;
+    private static final String PETICION = Protocolo.CMD_TREE + " 1";
+
+    public static void main(String[] args) throws Exception {
+        int entradas = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int peticiones = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+
+        Path directorio = Files.createTempDirectory("benchmark-list");
+        try {
+            System.out.println("--- Creando " + entradas + " entradas en " + directorio + " ---");
+            for (int i = 0; i < entradas; i++) {
+                if (i % 10 == 0) {
+                    Files.createDirectory(directorio.resolve("directorio-" + i));
+                } else {
+                    Files.createFile(directorio.resolve("fichero-" + i + ".txt"));
+                }
+            }
+
+            String[] resultados = {
+                    medir("Autoflush + Nagle", false, false, directorio, peticiones, PUERTO),
+                    medir("Autoflush + TCP_NODELAY", false, true, directorio, peticiones, PUERTO + 1),
+                    medir("Agrupada + TCP_NODELAY", true, true, directorio, peticiones, PUERTO + 2)
+            };
+
+            System.out.println();
+            System.out.println("--- RESULTADOS (" + PETICION + " de " + entradas + " entradas, " + peticiones + " peticiones) ---");
+            for (String r : resultados) {
+                System.out.println(r);
+            }
+        } finally {
+            try (Stream<Path> rutas = Files.walk(directorio)) {
+                rutas.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    /**
+     * Arranca un servidor con la configuración indicada, le lanza las peticiones y lo detiene.
+     *
+     * @return Una línea con el resumen de la medida.
+     */
+    private static String medir(String nombre, boolean agrupada, boolean tcpNoDelay, Path directorio,
+                                int peticiones, int puerto) throws Exception {
+        Servidor servidor = new Servidor(directorio.toString(), puerto, 16);
+        servidor.setEscrituraAgrupada(agrupada);
+        servidor.setTcpNoDelay(tcpNoDelay);
+        Thread hilo = new Thread(servidor::atenderConcurrente, "Servidor-" + nombre);
+        hilo.start();
+
+        try (Socket socket = conectar(puerto);
+             PrintWriter printWriter = new PrintWriter(socket.getOutputStream(), true);
+             BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()), 64 * 1024)) {
+
+            // Las primeras peticiones calientan la caché de directorios y el JIT.
+            for (int i = 0; i < CALENTAMIENTO; i++) {
+                pedirArbol(printWriter, reader);
+            }
+
+            long escriturasAntes = servidor.getEscrituras();
+            long bytesAntes = servidor.getBytesEnviados();
+            long inicio = System.nanoTime();
+            for (int i = 0; i < peticiones; i++) {
+                pedirArbol(printWriter, reader);
+            }
+            double segundos = (System.nanoTime() - inicio) / 1_000_000_000.0;
+            long escrituras = servidor.getEscrituras() - escriturasAntes;
+            long bytes = servidor.getBytesEnviados() - bytesAntes;
+
+            printWriter.println(Protocolo.CMD_FIN);
+            return String.format("%-26s %8.1f peticiones/s %8.1f MB/s %10.1f escrituras/petición",
+                    nombre, peticiones / segundos, bytes / segundos / (1024 * 1024), (double) escrituras / peticiones);
+        } finally {
+            servidor.detener();
+            hilo.join();
+        }
+    }
+
+    /**
+     * Envía la petición y lee la respuesta hasta FIN_RESPUESTA.
+     */
+    private static void pedirArbol(PrintWriter printWriter, BufferedReader reader) throws IOException {
+        printWriter.println(PETICION);
+        String linea;
+        while ((linea = reader.readLine()) != null && !linea.equals(Protocolo.FIN_RESPUESTA)) {
+            // Solo se consume la respuesta.
+        }
+    }
+
+    /**
+     * Se conecta al servidor reintentando mientras termina de arrancar.
+     */
+    private static Socket conectar(int puerto) throws IOException, InterruptedException {
+        for (int intento = 0; ; intento++) {
+            try {
+                return new Socket("localhost", puerto);
+            } catch (ConnectException e) {
+                if (intento == 50) throw e;
+                Thread.sleep(100);
+            }
+        }
+    }
+}
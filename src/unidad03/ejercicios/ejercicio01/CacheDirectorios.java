@@ -0,0 +1,282 @@
+package unidad03.ejercicios.ejercicio01;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Caché de los listados de directorio que devuelve #list.
+ *
+ * Listar un directorio con File.listFiles() + isDirectory() cuesta una llamada al sistema por cada entrada.
+ * Aquí cada directorio se lee entero una sola vez y después se mantiene al día con un WatchService:
+ * cuando se crea o se borra una entrada solo se actualiza esa entrada. La respuesta ya codificada en UTF-8
+ * se guarda y se reutiliza mientras el directorio no cambie.
+ *
+ * Si el WatchService no está disponible o pierde eventos (OVERFLOW), se comprueba la fecha de modificación
+ * del directorio en cada consulta y, si ha cambiado, se vuelve a leer entero.
+ *
+ * @author Miguel Angel Ramírez
+ */
+public class CacheDirectorios {
+    private static final int MAX_DIRECTORIOS = 1024;
+
+    private final Map<Path, Entrada> entradas = new ConcurrentHashMap<>();
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder actualizaciones = new LongAdder();
+    private WatchService vigilante;
+
+    /**
+     * Crea la caché y arranca el hilo que recibe los eventos del WatchService.
+     */
+    public CacheDirectorios() {
+        try {
+            vigilante = FileSystems.getDefault().newWatchService();
+            Thread hilo = new Thread(this::vigilar, "Vigilante-Directorios");
+            hilo.setDaemon(true);
+            hilo.start();
+        } catch (IOException | UnsupportedOperationException e) {
+            // Sin WatchService la caché sigue funcionando comprobando la fecha de modificación.
+            vigilante = null;
+        }
+    }
+
+    /**
+     * Devuelve el listado de un directorio con el formato de #list (cabecera y una línea "D/F nombre" por entrada),
+     * ya codificado en UTF-8 y sin la línea FIN_RESPUESTA.
+     *
+     * @param ruta La ruta tal y como la escribió el usuario (se usa en la cabecera).
+     * @return El listado, o null si la ruta no es un directorio válido.
+     */
+    public byte[] obtenerListado(String ruta) {
+        Path directorio = Paths.get(ruta).toAbsolutePath().normalize();
+        FileTime modificacion;
+        try {
+            // Una sola llamada al sistema para saber si existe, si es directorio y su fecha de modificación.
+            BasicFileAttributes atributos = Files.readAttributes(directorio, BasicFileAttributes.class);
+            if (!atributos.isDirectory()) {
+                return null;
+            }
+            modificacion = atributos.lastModifiedTime();
+        } catch (IOException e) {
+            return null;
+        }
+
+        Entrada entrada = entradas.get(directorio);
+        if (entrada != null && entrada.vigente(modificacion)) {
+            aciertos.increment();
+            return entrada.renderizar(ruta);
+        }
+
+        fallos.increment();
+        if (entrada == null) {
+            entrada = registrar(directorio);
+        }
+        entrada.recargar(modificacion);
+        return entrada.renderizar(ruta);
+    }
+
+    /**
+     * @return Número de consultas servidas desde la caché.
+     */
+    public long getAciertos() {
+        return aciertos.sum();
+    }
+
+    /**
+     * @return Número de consultas que obligaron a leer el directorio entero.
+     */
+    public long getFallos() {
+        return fallos.sum();
+    }
+
+    /**
+     * @return Número de cambios aplicados entrada a entrada desde los eventos del WatchService.
+     */
+    public long getActualizaciones() {
+        return actualizaciones.sum();
+    }
+
+    /**
+     * @return Número de directorios guardados en la caché.
+     */
+    public int getDirectorios() {
+        return entradas.size();
+    }
+
+    /**
+     * Detiene el WatchService.
+     */
+    public void cerrar() {
+        try {
+            if (vigilante != null) vigilante.close();
+        } catch (IOException e) {
+            System.err.println("-> Servidor: Error al cerrar el WatchService.");
+        }
+    }
+
+    /**
+     * Añade un directorio nuevo a la caché y lo registra en el WatchService.
+     * Si la caché está llena se descarta otro directorio para no crecer sin límite.
+     */
+    private Entrada registrar(Path directorio) {
+        if (entradas.size() >= MAX_DIRECTORIOS) {
+            Iterator<Entrada> it = entradas.values().iterator();
+            if (it.hasNext()) {
+                Entrada descartada = it.next();
+                it.remove();
+                if (descartada.clave != null) descartada.clave.cancel();
+            }
+        }
+
+        WatchKey clave = null;
+        if (vigilante != null) {
+            try {
+                clave = directorio.register(vigilante, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+            } catch (IOException | ClosedWatchServiceException e) {
+                // Se usará solo la fecha de modificación.
+            }
+        }
+        Entrada nueva = new Entrada(directorio, clave);
+        Entrada anterior = entradas.putIfAbsent(directorio, nueva);
+        return anterior != null ? anterior : nueva;
+    }
+
+    /**
+     * Bucle del hilo vigilante: aplica cada evento a la entrada del directorio afectado.
+     */
+    private void vigilar() {
+        try {
+            while (true) {
+                WatchKey clave = vigilante.take();
+                Path directorio = (Path) clave.watchable();
+                Entrada entrada = entradas.get(directorio);
+
+                for (WatchEvent<?> evento : clave.pollEvents()) {
+                    if (entrada == null) continue;
+                    if (evento.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        entrada.invalidar();
+                    } else {
+                        Path nombre = (Path) evento.context();
+                        entrada.aplicar(nombre.toString(), evento.kind() == StandardWatchEventKinds.ENTRY_CREATE);
+                        actualizaciones.increment();
+                    }
+                }
+                if (!clave.reset() && entrada != null) {
+                    // El directorio ya no existe o no se puede vigilar.
+                    entradas.remove(directorio);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Se ha cerrado la caché.
+        }
+    }
+
+    /**
+     * Contenido cacheado de un directorio: nombre -> tipo ('D' o 'F'), ordenado por nombre,
+     * y la respuesta ya renderizada mientras no haya cambios.
+     */
+    private static class Entrada {
+        private final Path directorio;
+        private final WatchKey clave;
+        private final TreeMap<String, Character> contenido = new TreeMap<>();
+        private FileTime modificacion;
+        private boolean valida;
+        private byte[] renderizado;
+        private String rutaRenderizada;
+
+        private Entrada(Path directorio, WatchKey clave) {
+            this.directorio = directorio;
+            this.clave = clave;
+        }
+
+        /**
+         * La entrada vale si está cargada y el directorio no se ha modificado desde entonces
+         * (los cambios ya aplicados por el vigilante actualizan la fecha guardada).
+         */
+        private synchronized boolean vigente(FileTime actual) {
+            return valida && actual.equals(modificacion);
+        }
+
+        /**
+         * Lee el directorio entero.
+         */
+        private synchronized void recargar(FileTime actual) {
+            contenido.clear();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directorio)) {
+                for (Path p : stream) {
+                    contenido.put(p.getFileName().toString(), tipo(p));
+                }
+                valida = true;
+            } catch (IOException | DirectoryIteratorException e) {
+                contenido.clear();
+                valida = false;
+            }
+            modificacion = actual;
+            renderizado = null;
+        }
+
+        /**
+         * Aplica un único cambio llegado del WatchService.
+         */
+        private synchronized void aplicar(String nombre, boolean creado) {
+            if (!valida) return;
+            if (creado) {
+                contenido.put(nombre, tipo(directorio.resolve(nombre)));
+            } else {
+                contenido.remove(nombre);
+            }
+            try {
+                modificacion = Files.getLastModifiedTime(directorio);
+            } catch (IOException e) {
+                valida = false;
+            }
+            renderizado = null;
+        }
+
+        private synchronized void invalidar() {
+            valida = false;
+            renderizado = null;
+        }
+
+        /**
+         * Devuelve la respuesta codificada, generándola solo si ha cambiado algo.
+         */
+        private synchronized byte[] renderizar(String ruta) {
+            if (renderizado != null && ruta.equals(rutaRenderizada)) {
+                return renderizado;
+            }
+            ByteArrayOutputStream salida = new ByteArrayOutputStream(64 + contenido.size() * 24);
+            if (contenido.isEmpty()) {
+                salida.writeBytes("Lista: Directorio vacío o acceso denegado.\n".getBytes(StandardCharsets.UTF_8));
+            } else {
+                salida.writeBytes(("Lista: Contenido de " + ruta + ": \n").getBytes(StandardCharsets.UTF_8));
+                for (Map.Entry<String, Character> e : contenido.entrySet()) {
+                    salida.write(e.getValue());
+                    salida.write(' ');
+                    salida.writeBytes(e.getKey().getBytes(StandardCharsets.UTF_8));
+                    salida.write('\n');
+                }
+            }
+            renderizado = salida.toByteArray();
+            rutaRenderizada = ruta;
+            return renderizado;
+        }
+
+        private static char tipo(Path p) {
+            try {
+                return Files.readAttributes(p, BasicFileAttributes.class).isDirectory() ? 'D' : 'F';
+            } catch (IOException e) {
+                return 'F';
+            }
+        }
+    }
+}
@@ -1,16 +1,23 @@
 package unidad03.ejercicios.ejercicio01;
 
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
+import java.io.*;
 import java.net.ConnectException;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.Scanner;
 
 /**
  * Clase principal que gestiona el lado del Cliente.
  * Se encarga de conectarse al servidor, enviar mensajes por el Usuario y recibir respuestas del Servidor.
+ * En modo binario se puede pedir "#comp on": las tramas comprimidas se descomprimen al leerlas
+ * (ver TramaBinaria.leerRespuesta), así que se muestran igual que las demás.
  *
  * @author Miguel Angel Ramírez
  */
@@ -18,10 +25,19 @@ public class Cliente {
     private Socket clienteSocket;
     private PrintWriter printWriter;
     private BufferedReader reader;
+    // Flujos del modo binario, se crean al negociar "#proto bin".
+    private DataInputStream entradaBinaria;
+    private DataOutputStream salidaBinaria;
+    private boolean binario;
     private final String HOST = "localhost";
     private final int PUERTO = 54321;
 
     private static final String FIN_RESPUESTA = "--- FIN RESPUESTA ---";
+    // Carpeta donde se guardan los ficheros descargados con #get.
+    private static final String CARPETA_DESCARGAS = "descargas";
+    // Tiempo máximo para conectar y para esperar cada lectura, para no quedarse colgado si el servidor no responde.
+    private static final int TIMEOUT_CONEXION_MS = 5_000;
+    private static final int TIMEOUT_LECTURA_MS = 60_000;
 
     /**
      * Establece la conexión con el servidor.
@@ -32,7 +48,10 @@ public class Cliente {
     public boolean conectar() {
         try {
             // Crea el socket del cliente y se conecta al servidor con el host y puerto.
-            clienteSocket = new Socket(HOST, PUERTO);
+            // Se abre a través de un SocketChannel para poder recibir los ficheros de #get con transferFrom().
+            clienteSocket = SocketChannel.open().socket();
+            clienteSocket.connect(new InetSocketAddress(HOST, PUERTO), TIMEOUT_CONEXION_MS);
+            clienteSocket.setSoTimeout(TIMEOUT_LECTURA_MS);
             // Configura que el PrintWriter pueda enviar mensajes.
             printWriter = new PrintWriter(clienteSocket.getOutputStream(), true);
             // Configura el BufferedReader para recibir mensajes del servidor.
@@ -68,6 +87,29 @@ public class Cliente {
                     continue;
                 }
 
+                if (binario) {
+                    // En modo binario se envía una trama y se lee la respuesta por su longitud.
+                    Path destino = null;
+                    if (entrada.toLowerCase().startsWith(Protocolo.CMD_GET + " ")) {
+                        destino = prepararDescarga(entrada.substring(Protocolo.CMD_GET.length()).trim());
+                        if (destino != null && !entrada.trim().matches(".* \\d+")) {
+                            // Sin posición se continúa desde lo que ya se tenga descargado.
+                            long existente = Files.exists(destino) ? Files.size(destino) : 0;
+                            entrada = entrada.trim() + " " + existente;
+                        }
+                    }
+                    TramaBinaria.escribirPeticion(salidaBinaria, entrada);
+                    if (leerRespuestaBinaria(destino)) {
+                        break;
+                    }
+                    continue;
+                }
+
+                if (entrada.equalsIgnoreCase(TramaBinaria.CMD_PROTO_BIN)) {
+                    negociarBinario();
+                    continue;
+                }
+
                 printWriter.println(entrada);
 
                 if (entrada.equalsIgnoreCase("#fin")) {
@@ -107,6 +149,117 @@ public class Cliente {
         System.out.println("------------------------------");
     }
 
+    /**
+     * Pide al servidor el cambio a tramas binarias ("#proto bin") y lee su respuesta en modo texto.
+     * Solo se cambia de modo si el servidor lo confirma; si no lo admite se sigue en modo texto.
+     *
+     * @throws IOException Si ocurre un error de entrada/salida.
+     */
+    private void negociarBinario() throws IOException {
+        printWriter.println(TramaBinaria.CMD_PROTO_BIN);
+
+        String linea;
+        boolean aceptado = false;
+        System.out.println("--- RESPUESTA DEL SERVIDOR ---");
+        while ((linea = reader.readLine()) != null && !linea.equals(FIN_RESPUESTA)) {
+            System.out.println(linea);
+            if (linea.equals(TramaBinaria.RESPUESTA_PROTO_BIN)) {
+                aceptado = true;
+            }
+        }
+        System.out.println("------------------------------");
+
+        if (aceptado) {
+            // Sin buffer en la entrada: los ficheros de #get se leen directamente del canal del socket
+            // y un buffer se podría quedar con parte de sus bytes.
+            entradaBinaria = new DataInputStream(clienteSocket.getInputStream());
+            salidaBinaria = new DataOutputStream(new BufferedOutputStream(clienteSocket.getOutputStream()));
+            binario = true;
+            System.out.println("-> Cliente: Modo binario activado.");
+        }
+    }
+
+    /**
+     * Lee una respuesta en modo binario (una o varias tramas) y la muestra en la consola.
+     * Si llega un fichero (#get) se guarda en el destino indicado.
+     *
+     * @param destino Fichero donde guardar la descarga, o null si la petición no es #get.
+     * @return true si es la respuesta a #fin.
+     * @throws IOException Si ocurre un error de entrada/salida.
+     */
+    private boolean leerRespuestaBinaria(Path destino) throws IOException {
+        TramaBinaria.Trama trama;
+        long desde = 0;
+        System.out.println("--- RESPUESTA DEL SERVIDOR ---");
+        do {
+            trama = TramaBinaria.leerRespuesta(entradaBinaria);
+            if (trama.esFichero()) {
+                if (destino == null) {
+                    TramaBinaria.saltarFichero(entradaBinaria, trama);
+                } else {
+                    guardarFichero(destino, desde, trama.getLongitud());
+                    System.out.println("-> Cliente: Guardado en " + destino);
+                }
+            } else {
+                String texto = trama.getTexto();
+                // La primera línea de #get indica desde qué posición se envía el fichero.
+                if (texto.startsWith("Get: ") && texto.contains(", desde ")) {
+                    String resto = texto.substring(texto.lastIndexOf(", desde ") + 8).trim();
+                    desde = Long.parseLong(resto.split("\\s")[0]);
+                }
+                System.out.print(texto);
+            }
+        } while (!trama.esUltima());
+        System.out.println("------------------------------");
+        return trama.esCierre();
+    }
+
+    /**
+     * Comprueba el nombre pedido en #get y devuelve dónde se guardará la descarga.
+     *
+     * @param argumentos Lo escrito detrás de #get.
+     * @return El fichero destino dentro de la carpeta de descargas, o null si el nombre no es válido.
+     */
+    private Path prepararDescarga(String argumentos) throws IOException {
+        String nombre = argumentos.replaceAll(" \\d+$", "").trim();
+        if (nombre.isEmpty()) {
+            return null;
+        }
+        // Solo el nombre del fichero, sin carpetas, para no escribir fuera de la carpeta de descargas.
+        Path carpeta = Files.createDirectories(Paths.get(CARPETA_DESCARGAS));
+        return carpeta.resolve(Paths.get(nombre).getFileName());
+    }
+
+    /**
+     * Escribe en disco los bytes del fichero que llegan por el socket, con FileChannel.transferFrom(),
+     * sin pasar por un buffer intermedio en Java.
+     *
+     * @param destino Fichero donde se guarda.
+     * @param desde Posición del fichero a partir de la cual se escribe (para continuar descargas).
+     * @param longitud Bytes que envía el servidor.
+     * @throws IOException Si ocurre un error de entrada/salida.
+     */
+    private void guardarFichero(Path destino, long desde, long longitud) throws IOException {
+        SocketChannel canal = clienteSocket.getChannel();
+        try (FileChannel fichero = FileChannel.open(destino, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            long posicion = desde;
+            long fin = desde + longitud;
+            while (posicion < fin) {
+                long recibidos = fichero.transferFrom(canal, posicion, fin - posicion);
+                if (recibidos <= 0) {
+                    // transferFrom no distingue fin de flujo: se comprueba leyendo un byte.
+                    int b = entradaBinaria.read();
+                    if (b < 0) throw new EOFException("Conexión cerrada durante la descarga");
+                    fichero.write(ByteBuffer.wrap(new byte[] { (byte) b }), posicion);
+                    recibidos = 1;
+                }
+                posicion += recibidos;
+            }
+            // Si el fichero local era más largo que el del servidor se recorta.
+            fichero.truncate(fin);
+        }
+    }
+
     /**
      * Cierra los recursos abiertos: PrintWriter, BufferedReader y Socket.
      */
@@ -0,0 +1,194 @@
+package unidad03.ejercicios.ejercicio01;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Cliente para usar desde código, no desde la consola: cada petición devuelve un CompletableFuture
+ * con su Respuesta y muchas peticiones comparten la misma conexión a la vez.
+ *
+ * Los servidores responden en el mismo orden en que reciben las peticiones, así que basta con una cola
+ * de peticiones pendientes: al enviar se añade su futuro al final y un único hilo lector completa el
+ * primero de la cola cada vez que llega un FIN_RESPUESTA. Quien envía no espera la respuesta y no hace
+ * falta un hilo por petición pendiente.
+ *
+ * Los futuros se completan en el hilo lector, así que lo que se encadene con thenApply() y similares
+ * se ejecuta en él; para trabajo pesado conviene usar las versiones *Async. Para limitar la espera
+ * de una petición se puede usar orTimeout().
+ *
+ * @author Miguel Angel Ramírez
+ */
+public class ClienteAsincrono implements Closeable {
+    private final Socket socket;
+    private final BufferedWriter writer;
+    private final BufferedReader reader;
+    private final Queue<CompletableFuture<Respuesta>> pendientes = new ConcurrentLinkedQueue<>();
+    private final Thread lector;
+    private volatile IOException fallo;
+
+    /**
+     * Se conecta al servidor en modo texto y arranca el hilo lector.
+     *
+     * @param host Host del servidor.
+     * @param puerto Puerto del servidor.
+     * @param timeoutConexionMs Tiempo máximo para conectar.
+     * @throws IOException Si no se puede conectar.
+     */
+    public ClienteAsincrono(String host, int puerto, int timeoutConexionMs) throws IOException {
+        socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, puerto), timeoutConexionMs);
+            socket.setTcpNoDelay(true);
+            writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8),
+                    64 * 1024);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        lector = new Thread(this::leerRespuestas, "Lector-ClienteAsincrono");
+        lector.setDaemon(true);
+        lector.start();
+    }
+
+    /**
+     * Envía una petición sin esperar la respuesta.
+     *
+     * @param mensaje La línea a enviar.
+     * @return Futuro que se completa con la respuesta o, si la conexión falla, con la IOException.
+     */
+    public CompletableFuture<Respuesta> enviar(String mensaje) {
+        CompletableFuture<Respuesta> futuro = new CompletableFuture<>();
+        // Encolar y escribir juntos, para que el orden de la cola sea el orden en que salen las peticiones.
+        synchronized (writer) {
+            if (fallo != null) {
+                futuro.completeExceptionally(fallo);
+                return futuro;
+            }
+            pendientes.add(futuro);
+            try {
+                writer.write(mensaje);
+                writer.newLine();
+                writer.flush();
+            } catch (IOException e) {
+                fallar(e);
+            }
+        }
+        return futuro;
+    }
+
+    /**
+     * @return Peticiones enviadas que aún no tienen respuesta.
+     */
+    public int getPendientes() {
+        return pendientes.size();
+    }
+
+    /**
+     * Cierra la conexión. Las peticiones pendientes terminan con una IOException.
+     */
+    @Override
+    public void close() {
+        fallar(new IOException("Cliente cerrado"));
+        try {
+            lector.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Bucle del hilo lector: junta las líneas de cada respuesta y completa la petición pendiente más antigua.
+     */
+    private void leerRespuestas() {
+        List<String> lineas = new ArrayList<>();
+        boolean error = false;
+        try {
+            String linea;
+            while ((linea = reader.readLine()) != null) {
+                if (linea.equals(Protocolo.FIN_RESPUESTA)) {
+                    completar(new Respuesta(lineas, error, false));
+                    lineas.clear();
+                    error = false;
+                    continue;
+                }
+                lineas.add(linea);
+                if (linea.startsWith("Error:")) {
+                    error = true;
+                }
+                if (linea.startsWith("Fin: ")) {
+                    // Respuesta a #fin: el servidor cierra la conexión.
+                    completar(new Respuesta(lineas, error, true));
+                    break;
+                }
+            }
+            fallar(new EOFException("El servidor ha cerrado la conexión"));
+        } catch (IOException e) {
+            fallar(e);
+        }
+    }
+
+    private void completar(Respuesta respuesta) throws IOException {
+        CompletableFuture<Respuesta> futuro = pendientes.poll();
+        if (futuro == null) {
+            throw new IOException("Respuesta sin petición pendiente");
+        }
+        futuro.complete(respuesta);
+    }
+
+    /**
+     * Marca la conexión como fallida, la cierra y termina con error todas las peticiones pendientes.
+     */
+    private void fallar(IOException causa) {
+        // Primero se cierra el socket, que desbloquea a quien esté escribiendo con el lock de writer.
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Ya estaba cerrado.
+        }
+        synchronized (writer) {
+            if (fallo == null) {
+                fallo = causa;
+            }
+        }
+        CompletableFuture<Respuesta> futuro;
+        while ((futuro = pendientes.poll()) != null) {
+            futuro.completeExceptionally(fallo);
+        }
+    }
+
+    /**
+     * Ejemplo de uso: lanza a la vez varias peticiones #info, #list y mensajes por una sola conexión
+     * y muestra cuánto tarda en llegar la última respuesta.
+     *
+     * Uso: ClienteAsincrono [host=localhost] [puerto=54321] [peticiones=1000]
+     */
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int puerto = args.length > 1 ? Integer.parseInt(args[1]) : 54321;
+        int peticiones = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        String[] comandos = { Protocolo.CMD_INFO, Protocolo.CMD_LIST, "Mensaje asíncrono" };
+
+        try (ClienteAsincrono cliente = new ClienteAsincrono(host, puerto, 5_000)) {
+            long inicio = System.nanoTime();
+            List<CompletableFuture<Respuesta>> futuros = new ArrayList<>();
+            for (int i = 0; i < peticiones; i++) {
+                futuros.add(cliente.enviar(comandos[i % comandos.length]));
+            }
+            CompletableFuture.allOf(futuros.toArray(new CompletableFuture<?>[0])).join();
+            double segundos = (System.nanoTime() - inicio) / 1_000_000_000.0;
+
+            long errores = futuros.stream().filter(f -> f.join().isError()).count();
+            System.out.printf("-> ClienteAsincrono: %d respuestas en %.3f s -> %.1f peticiones/s. Errores: %d%n",
+                    peticiones, segundos, peticiones / segundos, errores);
+            System.out.println(cliente.enviar(Protocolo.CMD_FIN).join());
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package unidad03.ejercicios.ejercicio01;
+
+/**
+ * Un comando del protocolo (#info, #list...). Se registra por su nombre en RegistroComandos.
+ *
+ * @author Miguel Angel Ramírez
+ */
+@FunctionalInterface
+public interface Comando {
+
+    /**
+     * Ejecuta el comando y escribe su respuesta completa.
+     *
+     * @param argumentos Lo que va detrás del nombre del comando, sin espacios a los lados ("" si no hay).
+     * @param salida Donde se escribe la respuesta.
+     * @return true si se debe cerrar la conexión después de responder.
+     */
+    boolean ejecutar(String argumentos, SalidaRespuesta salida);
+
+    /**
+     * Los comandos lentos (leen el disco, recorren directorios...) se ejecutan aparte para que
+     * los rápidos no esperen detrás de ellos: en ServidorNIO en un grupo de hilos trabajadores
+     * y en Servidor con un máximo de ejecuciones a la vez.
+     *
+     * @return true si el comando es lento.
+     */
+    default boolean esLento() {
+        return false;
+    }
+
+    /**
+     * Marca un comando como lento.
+     *
+     * @param comando El comando.
+     * @return El mismo comando con esLento() a true.
+     */
+    static Comando lento(Comando comando) {
+        return new Comando() {
+            @Override
+            public boolean ejecutar(String argumentos, SalidaRespuesta salida) {
+                return comando.ejecutar(argumentos, salida);
+            }
+
+            @Override
+            public boolean esLento() {
+                return true;
+            }
+        };
+    }
+}
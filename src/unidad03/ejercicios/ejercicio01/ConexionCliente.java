@@ -0,0 +1,147 @@
+package unidad03.ejercicios.ejercicio01;
+
+import java.io.*;
+import java.net.Socket;
+
+/**
+ * Representa la conexión con un único cliente.
+ * Cada conexión tiene su propio socket, PrintWriter y BufferedReader, de forma que
+ * varios clientes pueden ser atendidos a la vez (cada uno en su propio hilo) sin compartir estado.
+ *
+ * @author Miguel Angel Ramírez
+ */
+public class ConexionCliente implements Runnable {
+    private final Servidor servidor;
+    private final Socket clienteSocket;
+    private final Protocolo protocolo;
+    private PrintWriter printWriter;
+    private BufferedReader reader;
+
+    // Buffer del modo binario: cabe la cabecera y una respuesta normal, que salen en una sola escritura.
+    private static final int TAM_BUFFER_BINARIO = 64 * 1024;
+
+    /**
+     * Construye la conexión para un cliente ya aceptado.
+     *
+     * @param servidor El servidor al que pertenece la conexión.
+     * @param clienteSocket El socket devuelto por accept().
+     * @param protocolo La lógica de comandos, compartida por todas las conexiones.
+     */
+    ConexionCliente(Servidor servidor, Socket clienteSocket, Protocolo protocolo) {
+        this.servidor = servidor;
+        this.clienteSocket = clienteSocket;
+        this.protocolo = protocolo;
+    }
+
+    /**
+     * Atiende al cliente: lee mensajes hasta recibir #fin o hasta que se cierre la conexión.
+     * Al terminar libera sus recursos y avisa al servidor.
+     */
+    @Override
+    public void run() {
+        String origen = clienteSocket.getInetAddress().getHostAddress() + ":" + clienteSocket.getPort();
+        Servidor.LOG.info("-> Servidor: Cliente conectado desde ", origen);
+
+        try {
+            // Configura la entrada y salida para la comunicación con el cliente.
+            clienteSocket.setTcpNoDelay(servidor.isTcpNoDelay());
+            OutputStream salidaSocket = servidor.contarEscrituras(clienteSocket.getOutputStream());
+            printWriter = new PrintWriter(salidaSocket, true);
+            reader = new BufferedReader(new InputStreamReader(servidor.contarLecturas(clienteSocket.getInputStream())));
+            // Por defecto cada respuesta se junta y se envía con una sola escritura.
+            SalidaRespuesta salida = servidor.isEscrituraAgrupada()
+                    ? new SalidaTextoAgrupada(salidaSocket)
+                    : new SalidaTexto(printWriter, salidaSocket);
+
+            // Lee mensajes hasta que el cliente envíe el comando de fin.
+            String mensaje;
+            while ((mensaje = reader.readLine()) != null) {
+                Servidor.LOG.info("-> Servidor (Recibido de ", origen, "): ", mensaje);
+
+                if (mensaje.equalsIgnoreCase(TramaBinaria.CMD_PROTO_BIN)) {
+                    // El cliente pide cambiar a tramas binarias: se confirma en texto y se cambia de bucle.
+                    salida.escribirLinea(TramaBinaria.RESPUESTA_PROTO_BIN);
+                    salida.finRespuesta();
+                    atenderBinario(origen);
+                    break;
+                }
+
+                if (servidor.procesar(mensaje, salida)) {
+                    break; // Sale del bucle si es el comando de fin.
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            // Si el servidor se está deteniendo el socket se cierra a propósito.
+            if (servidor.isActivo()) {
+                System.err.println("-> Servidor: Error en la conexión con " + origen + ": " + e.getMessage());
+            }
+        } finally {
+            cerrar();
+            servidor.conexionTerminada(this);
+            Servidor.LOG.info("-> Servidor: Conexión con ", origen, " cerrada.");
+        }
+    }
+
+    /**
+     * Bucle de atención en modo binario (ver TramaBinaria).
+     * El cliente no envía ninguna trama hasta recibir la confirmación de "#proto bin",
+     * así que el BufferedReader del modo texto no se ha quedado con datos de este modo.
+     *
+     * @param origen Dirección del cliente, para los mensajes por consola.
+     * @throws IOException Si ocurre un error de entrada/salida.
+     */
+    private void atenderBinario(String origen) throws IOException {
+        DataInputStream entrada = new DataInputStream(new BufferedInputStream(
+                servidor.contarLecturas(clienteSocket.getInputStream())));
+        DataOutputStream salidaDatos = new DataOutputStream(new BufferedOutputStream(
+                servidor.contarEscrituras(clienteSocket.getOutputStream()), TAM_BUFFER_BINARIO));
+        // El canal existe porque el servidor acepta con ServerSocketChannel; lo usa #get para transferTo.
+        SalidaBinaria salida = new SalidaBinaria(salidaDatos,
+                servidor.isEnvioDirecto() ? clienteSocket.getChannel() : null, servidor::contarEnvioDirecto);
+
+        try {
+            String mensaje;
+            while ((mensaje = TramaBinaria.leerPeticion(entrada)) != null) {
+                Servidor.LOG.info("-> Servidor (Recibido de ", origen, ", bin): ", mensaje);
+
+                if (Protocolo.esSubida(mensaje)) {
+                    // #put lee del socket los trozos que siguen a la petición.
+                    protocolo.recibirFichero(mensaje, entrada, salida);
+                    continue;
+                }
+
+                if (servidor.procesar(mensaje, salida)) {
+                    break; // Sale del bucle si es el comando de fin.
+                }
+            }
+        } finally {
+            salida.cerrar();
+        }
+    }
+
+    /**
+     * Cierra la entrada del socket para que el siguiente readLine() devuelva null.
+     * La petición que se esté procesando en ese momento termina de responderse con normalidad,
+     * por eso se usa para detener el servidor de forma ordenada.
+     */
+    void finalizarLectura() {
+        try {
+            if (!clienteSocket.isClosed()) clienteSocket.shutdownInput();
+        } catch (IOException e) {
+            // El socket ya estaba cerrado, no hay nada más que hacer.
+        }
+    }
+
+    /**
+     * Cierra los recursos de la conexión: PrintWriter, BufferedReader y Socket.
+     */
+    void cerrar() {
+        try {
+            if (printWriter != null) printWriter.close();
+            if (reader != null) reader.close();
+            clienteSocket.close();
+        } catch (IOException e) {
+            System.err.println("-> Servidor: Error al cerrar los recursos de la conexión.");
+        }
+    }
+}
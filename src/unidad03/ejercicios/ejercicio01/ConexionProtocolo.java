@@ -0,0 +1,127 @@
+package unidad03.ejercicios.ejercicio01;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Una conexión en modo texto con el servidor, pensada para reutilizarse (ver PoolConexiones).
+ *
+ * A diferencia de Cliente, tiene tiempo máximo para conectar y para esperar cada respuesta,
+ * así que un servidor caído o colgado se detecta en lugar de dejar el hilo bloqueado para siempre.
+ * Si algo falla la conexión queda marcada como cerrada y no se debe volver a usar.
+ *
+ * @author Miguel Angel Ramírez
+ */
+public class ConexionProtocolo implements Closeable {
+    private final Socket socket;
+    private final BufferedWriter writer;
+    private final BufferedReader reader;
+    private volatile long ultimoUso = System.nanoTime();
+    private volatile boolean cerrada;
+
+    /**
+     * Abre la conexión.
+     *
+     * @param host Host del servidor.
+     * @param puerto Puerto del servidor.
+     * @param timeoutConexionMs Tiempo máximo para conectar.
+     * @param timeoutLecturaMs Tiempo máximo de espera de cada respuesta (0 = sin límite).
+     * @throws IOException Si no se puede conectar a tiempo.
+     */
+    public ConexionProtocolo(String host, int puerto, int timeoutConexionMs, int timeoutLecturaMs) throws IOException {
+        socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, puerto), timeoutConexionMs);
+            socket.setSoTimeout(timeoutLecturaMs);
+            socket.setTcpNoDelay(true);
+            socket.setKeepAlive(true);
+            writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Envía una petición y espera su respuesta completa.
+     *
+     * @param mensaje La línea a enviar.
+     * @return La respuesta del servidor.
+     * @throws IOException Si falla la conexión o se agota el tiempo de espera (la conexión queda cerrada).
+     */
+    public Respuesta enviar(String mensaje) throws IOException {
+        if (cerrada) {
+            throw new IOException("La conexión está cerrada");
+        }
+        try {
+            writer.write(mensaje);
+            writer.newLine();
+            writer.flush();
+
+            List<String> lineas = new ArrayList<>();
+            boolean error = false;
+            String linea;
+            while ((linea = reader.readLine()) != null) {
+                if (linea.equals(Protocolo.FIN_RESPUESTA)) {
+                    ultimoUso = System.nanoTime();
+                    return new Respuesta(lineas, error, false);
+                }
+                lineas.add(linea);
+                if (linea.startsWith("Error:")) {
+                    error = true;
+                }
+                if (linea.startsWith("Fin: ")) {
+                    // Tras #fin el servidor cierra la conexión.
+                    close();
+                    return new Respuesta(lineas, error, true);
+                }
+            }
+            throw new EOFException("El servidor ha cerrado la conexión");
+        } catch (IOException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Comprueba que la conexión sigue viva con #ping.
+     *
+     * @return true si el servidor ha respondido sin error.
+     */
+    public boolean ping() {
+        try {
+            return !enviar(Protocolo.CMD_PING).isError();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return Momento (System.nanoTime()) de la última respuesta recibida o de la apertura.
+     */
+    public long getUltimoUso() {
+        return ultimoUso;
+    }
+
+    public boolean isCerrada() {
+        return cerrada;
+    }
+
+    /**
+     * Cierra la conexión sin avisar al servidor (él lo detecta al leer el fin del flujo).
+     */
+    @Override
+    public void close() {
+        cerrada = true;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Ya estaba cerrada.
+        }
+    }
+}
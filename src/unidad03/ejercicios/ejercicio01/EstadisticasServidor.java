@@ -0,0 +1,141 @@
+package unidad03.ejercicios.ejercicio01;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Estadísticas en vivo de un servidor, que se muestran en #info y #stats:
+ * tiempo en marcha, conexiones activas, comandos atendidos, bytes recibidos y enviados
+ * y, por cada comando, sus peticiones y latencias (ver MetricaComando).
+ *
+ * Las conexiones y los bytes los lleva cada servidor a su manera (Servidor con FlujoContador y
+ * FlujoEntradaContador, ServidorNIO al leer y escribir en el canal), así que aquí solo se guarda cómo consultarlos.
+ * Los comandos se cuentan con un LongAdder porque los incrementan todos los hilos a la vez.
+ *
+ * También se pueden consultar por JMX (ver EstadisticasServidorMBean).
+ *
+ * @author Miguel Angel Ramírez
+ */
+public class EstadisticasServidor implements EstadisticasServidorMBean {
+    private final long inicio = System.nanoTime();
+    private final LongAdder comandos = new LongAdder();
+    private final IntSupplier conexionesActivas;
+    private final LongSupplier bytesEnviados;
+    private final LongSupplier bytesRecibidos;
+    // Ordenadas por nombre para que #stats salga siempre igual.
+    private final Map<String, MetricaComando> metricas = new ConcurrentSkipListMap<>();
+    private ObjectName nombreJmx;
+
+    /**
+     * @param conexionesActivas Cómo consultar las conexiones abiertas en este momento.
+     * @param bytesEnviados Cómo consultar los bytes enviados a los clientes.
+     * @param bytesRecibidos Cómo consultar los bytes recibidos de los clientes.
+     */
+    public EstadisticasServidor(IntSupplier conexionesActivas, LongSupplier bytesEnviados, LongSupplier bytesRecibidos) {
+        this.conexionesActivas = conexionesActivas;
+        this.bytesEnviados = bytesEnviados;
+        this.bytesRecibidos = bytesRecibidos;
+    }
+
+    /**
+     * Devuelve la métrica de un comando, creándola la primera vez.
+     * Se llama al registrar los comandos, no en cada petición.
+     *
+     * @param nombre Nombre del comando.
+     * @return Su métrica.
+     */
+    public MetricaComando metrica(String nombre) {
+        return metricas.computeIfAbsent(nombre, MetricaComando::new);
+    }
+
+    /**
+     * Cuenta una petición atendida (comando o mensaje normal).
+     */
+    public void contarComando() {
+        comandos.increment();
+    }
+
+    /**
+     * @return Segundos desde que se creó el servidor.
+     */
+    @Override
+    public long getSegundosActivo() {
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - inicio);
+    }
+
+    @Override
+    public int getConexionesActivas() {
+        return conexionesActivas.getAsInt();
+    }
+
+    @Override
+    public long getComandos() {
+        return comandos.sum();
+    }
+
+    @Override
+    public long getBytesEnviados() {
+        return bytesEnviados.getAsLong();
+    }
+
+    @Override
+    public long getBytesRecibidos() {
+        return bytesRecibidos.getAsLong();
+    }
+
+    @Override
+    public String[] getResumenComandos() {
+        return metricas.values().stream()
+                .filter(m -> m.getPeticiones() > 0)
+                .map(MetricaComando::resumen)
+                .toArray(String[]::new);
+    }
+
+    /**
+     * Publica las estadísticas en el servidor JMX de la máquina virtual.
+     *
+     * @param tipo Tipo de servidor (ej. "Servidor", "ServidorNIO").
+     * @param puerto Puerto del servidor, para distinguir varios en la misma máquina virtual.
+     */
+    public synchronized void registrarJmx(String tipo, int puerto) {
+        try {
+            nombreJmx = new ObjectName("unidad03.ejercicio01:type=" + tipo + ",puerto=" + puerto);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(nombreJmx)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this, nombreJmx);
+            }
+        } catch (JMException e) {
+            System.err.println("-> Servidor: No se pudieron publicar las estadísticas por JMX: " + e.getMessage());
+            nombreJmx = null;
+        }
+    }
+
+    /**
+     * Retira las estadísticas del servidor JMX.
+     */
+    public synchronized void quitarJmx() {
+        if (nombreJmx == null) return;
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(nombreJmx);
+        } catch (JMException e) {
+            // Ya no estaba registrado.
+        }
+        nombreJmx = null;
+    }
+
+    /**
+     * @return Una línea con las estadísticas para #info.
+     */
+    public String resumen() {
+        long segundos = getSegundosActivo();
+        return String.format("Info: Activo: %dh %02dm %02ds. Conexiones: %d. Comandos: %d. Bytes enviados: %d",
+                segundos / 3600, segundos / 60 % 60, segundos % 60,
+                getConexionesActivas(), getComandos(), getBytesEnviados());
+    }
+}
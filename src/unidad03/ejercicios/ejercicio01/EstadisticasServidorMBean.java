@@ -0,0 +1,24 @@
+package unidad03.ejercicios.ejercicio01;
+
+/**
+ * Atributos de EstadisticasServidor que se pueden consultar por JMX (por ejemplo con jconsole).
+ *
+ * @author Miguel Angel Ramírez
+ */
+public interface EstadisticasServidorMBean {
+
+    long getSegundosActivo();
+
+    int getConexionesActivas();
+
+    long getComandos();
+
+    long getBytesEnviados();
+
+    long getBytesRecibidos();
+
+    /**
+     * @return Una línea por comando con sus peticiones y latencias.
+     */
+    String[] getResumenComandos();
+}
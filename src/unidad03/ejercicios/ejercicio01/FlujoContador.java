@@ -0,0 +1,44 @@
+package unidad03.ejercicios.ejercicio01;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Flujo de salida que cuenta las escrituras y los bytes que llegan al socket.
+ * Cada write sobre el flujo del socket es una llamada al sistema, así que el contador de escrituras
+ * sirve para ver cuántas hace el servidor por respuesta.
+ *
+ * @author Miguel Angel Ramírez
+ */
+public class FlujoContador extends FilterOutputStream {
+    private final LongAdder escrituras;
+    private final LongAdder bytes;
+
+    /**
+     * @param out El flujo del socket.
+     * @param escrituras Contador de llamadas a write.
+     * @param bytes Contador de bytes escritos.
+     */
+    public FlujoContador(OutputStream out, LongAdder escrituras, LongAdder bytes) {
+        super(out);
+        this.escrituras = escrituras;
+        this.bytes = bytes;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        escrituras.increment();
+        bytes.increment();
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        // FilterOutputStream escribiría byte a byte; aquí se pasa el array entero al socket.
+        out.write(b, off, len);
+        escrituras.increment();
+        bytes.add(len);
+    }
+}
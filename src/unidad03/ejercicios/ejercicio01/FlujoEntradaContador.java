@@ -0,0 +1,38 @@
+package unidad03.ejercicios.ejercicio01;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Flujo de entrada que cuenta los bytes que llegan del socket.
+ *
+ * @author Miguel Angel Ramírez
+ */
+public class FlujoEntradaContador extends FilterInputStream {
+    private final LongAdder bytes;
+
+    /**
+     * @param in El flujo del socket.
+     * @param bytes Contador de bytes leídos.
+     */
+    public FlujoEntradaContador(InputStream in, LongAdder bytes) {
+        super(in);
+        this.bytes = bytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b >= 0) bytes.increment();
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int n = in.read(b, off, len);
+        if (n > 0) bytes.add(n);
+        return n;
+    }
+}
@@ -0,0 +1,268 @@
+package unidad03.ejercicios.ejercicio01;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Generador de carga para los servidores (Servidor o ServidorNIO), sin consola interactiva.
+ *
+ * Abre N conexiones a la vez (en hilos de plataforma o virtuales) y cada una envía peticiones
+ * elegidas al azar según una mezcla de #info, #list y mensajes normales, repartiendo entre todas
+ * la tasa objetivo. Al terminar muestra peticiones por segundo, latencias (p50, p99, p99.9 y máxima),
+ * errores y el tiempo de conexión.
+ *
+ * Con tasa objetivo cada conexión tiene un horario fijo de envíos y la latencia se mide desde el momento
+ * en que tocaba enviar, no desde que se envió: si el servidor se atasca, las peticiones que se retrasan
+ * cuentan su espera (como hace HdrHistogram al corregir la "omisión coordinada").
+ * Con tasa 0 cada conexión envía la siguiente petición nada más recibir la respuesta.
+ *
+ * Uso: GeneradorCarga [host=localhost] [puerto=54321] [conexiones=50] [segundos=10] [tasa=1000]
+ *                     [mezcla=info:1,list:1,msg:8] [virtuales=s]
+ *
+ * @author Miguel Angel Ramírez
+ */
+public class GeneradorCarga {
+    private static final String MENSAJE = "Mensaje de prueba del generador de carga";
+
+    private final String host;
+    private final int puerto;
+    private final int conexiones;
+    private final long duracionNanos;
+    private final double tasa;
+    private final String[] comandos;
+    private final int[] pesosAcumulados;
+    private final boolean virtuales;
+
+    /**
+     * @param host Host del servidor.
+     * @param puerto Puerto del servidor.
+     * @param conexiones Número de conexiones simultáneas.
+     * @param segundos Duración de la prueba.
+     * @param tasa Peticiones por segundo entre todas las conexiones (0 = sin límite).
+     * @param mezcla Peso de cada tipo de petición, con el formato "info:1,list:1,msg:8".
+     * @param virtuales true para usar un hilo virtual por conexión.
+     */
+    public GeneradorCarga(String host, int puerto, int conexiones, int segundos, double tasa,
+                          String mezcla, boolean virtuales) {
+        this.host = host;
+        this.puerto = puerto;
+        this.conexiones = conexiones;
+        this.duracionNanos = TimeUnit.SECONDS.toNanos(segundos);
+        this.tasa = tasa;
+        this.virtuales = virtuales;
+
+        String[] partes = mezcla.split(",");
+        this.comandos = new String[partes.length];
+        this.pesosAcumulados = new int[partes.length];
+        int acumulado = 0;
+        for (int i = 0; i < partes.length; i++) {
+            String[] tipoPeso = partes[i].trim().split(":");
+            comandos[i] = switch (tipoPeso[0].trim().toLowerCase()) {
+                case "info" -> Protocolo.CMD_INFO;
+                case "list" -> Protocolo.CMD_LIST;
+                case "tree" -> Protocolo.CMD_TREE + " 1";
+                case "msg" -> MENSAJE;
+                default -> throw new IllegalArgumentException("Tipo de petición desconocido: " + tipoPeso[0]);
+            };
+            acumulado += tipoPeso.length > 1 ? Integer.parseInt(tipoPeso[1].trim()) : 1;
+            pesosAcumulados[i] = acumulado;
+        }
+        if (acumulado <= 0) {
+            throw new IllegalArgumentException("La mezcla no tiene ninguna petición: " + mezcla);
+        }
+    }
+
+    /**
+     * Lanza las conexiones, espera a que terminen y junta sus resultados.
+     *
+     * @return El resultado de la prueba.
+     * @throws InterruptedException Si se interrumpe la espera.
+     */
+    public Resultado ejecutar() throws InterruptedException {
+        List<Resultado> parciales = new ArrayList<>();
+        ExecutorService ejecutor = virtuales
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(conexiones);
+
+        long inicio = System.nanoTime();
+        long fin = inicio + duracionNanos;
+        for (int i = 0; i < conexiones; i++) {
+            Resultado parcial = new Resultado();
+            parciales.add(parcial);
+            // Cada conexión empieza desfasada para que los envíos no salgan todos a la vez.
+            long desfase = tasa > 0 ? (long) (i * 1e9 / tasa) : 0;
+            ejecutor.execute(() -> atenderConexion(parcial, inicio + desfase, fin));
+        }
+        ejecutor.shutdown();
+        ejecutor.awaitTermination(duracionNanos + TimeUnit.MINUTES.toNanos(1), TimeUnit.NANOSECONDS);
+        ejecutor.shutdownNow();
+
+        Resultado total = new Resultado();
+        for (Resultado parcial : parciales) {
+            total.sumar(parcial);
+        }
+        total.nanos = System.nanoTime() - inicio;
+        return total;
+    }
+
+    /**
+     * Bucle de una conexión: se conecta, envía peticiones hasta el final de la prueba y envía #fin.
+     * Solo este hilo escribe en su Resultado.
+     */
+    private void atenderConexion(Resultado resultado, long primerEnvio, long fin) {
+        long inicioConexion = System.nanoTime();
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(host, puerto), 10_000);
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(30_000);
+            resultado.conexion.registrar(System.nanoTime() - inicioConexion);
+
+            BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
+            BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()), 64 * 1024);
+            // Intervalo entre envíos de esta conexión para repartir la tasa entre todas.
+            long intervalo = tasa > 0 ? (long) (1e9 * conexiones / tasa) : 0;
+            long programado = primerEnvio;
+
+            while (true) {
+                if (intervalo > 0) {
+                    long espera = programado - System.nanoTime();
+                    if (espera > 0) LockSupport.parkNanos(espera);
+                }
+                long envio = System.nanoTime();
+                if (envio >= fin) break;
+                long referencia = intervalo > 0 ? programado : envio;
+
+                writer.write(elegirComando());
+                writer.newLine();
+                writer.flush();
+                if (!leerRespuesta(reader)) {
+                    resultado.errores++;
+                }
+                resultado.latencias.registrar(System.nanoTime() - referencia);
+                programado += intervalo;
+            }
+
+            writer.write(Protocolo.CMD_FIN);
+            writer.newLine();
+            writer.flush();
+            leerRespuesta(reader);
+        } catch (IOException e) {
+            if (resultado.conexion.getTotal() == 0) {
+                resultado.fallosConexion++;
+            } else {
+                resultado.errores++;
+            }
+        }
+    }
+
+    /**
+     * Lee una respuesta hasta FIN_RESPUESTA.
+     *
+     * @return false si la respuesta contiene un error.
+     * @throws IOException Si el servidor cierra la conexión antes de terminar la respuesta.
+     */
+    private static boolean leerRespuesta(BufferedReader reader) throws IOException {
+        boolean correcta = true;
+        String linea;
+        while ((linea = reader.readLine()) != null) {
+            if (linea.equals(Protocolo.FIN_RESPUESTA) || linea.startsWith("Fin: ")) {
+                return correcta;
+            }
+            if (linea.startsWith("Error:")) {
+                correcta = false;
+            }
+        }
+        throw new EOFException("El servidor ha cerrado la conexión");
+    }
+
+    private String elegirComando() {
+        int r = ThreadLocalRandom.current().nextInt(pesosAcumulados[pesosAcumulados.length - 1]);
+        for (int i = 0; i < pesosAcumulados.length; i++) {
+            if (r < pesosAcumulados[i]) return comandos[i];
+        }
+        return comandos[comandos.length - 1];
+    }
+
+    /**
+     * Medidas de una conexión o, tras sumarlas, de la prueba entera.
+     */
+    public static class Resultado {
+        private final HistogramaLatencias latencias = new HistogramaLatencias();
+        private final HistogramaLatencias conexion = new HistogramaLatencias();
+        private long errores;
+        private long fallosConexion;
+        private long nanos;
+
+        private void sumar(Resultado otro) {
+            latencias.sumar(otro.latencias);
+            conexion.sumar(otro.conexion);
+            errores += otro.errores;
+            fallosConexion += otro.fallosConexion;
+        }
+
+        /**
+         * @return Peticiones respondidas por segundo.
+         */
+        public double getPeticionesPorSegundo() {
+            return nanos == 0 ? 0 : latencias.getTotal() / (nanos / 1e9);
+        }
+
+        public HistogramaLatencias getLatencias() {
+            return latencias;
+        }
+
+        public HistogramaLatencias getConexion() {
+            return conexion;
+        }
+
+        public long getErrores() {
+            return errores;
+        }
+
+        public long getFallosConexion() {
+            return fallosConexion;
+        }
+
+        /**
+         * Muestra el resumen por consola.
+         *
+         * @param nombre Título de la prueba.
+         */
+        public void mostrar(String nombre) {
+            System.out.println("--- RESULTADOS (" + nombre + ") ---");
+            System.out.printf("Peticiones: %d en %.2f s -> %.1f peticiones/s%n",
+                    latencias.getTotal(), nanos / 1e9, getPeticionesPorSegundo());
+            System.out.printf("Latencia (ms): p50=%.3f p99=%.3f p99.9=%.3f máx=%.3f media=%.3f%n",
+                    latencias.percentil(50) / 1e6, latencias.percentil(99) / 1e6,
+                    latencias.percentil(99.9) / 1e6, latencias.getMaximo() / 1e6, latencias.getMedia() / 1e6);
+            System.out.printf("Conexión (ms): p50=%.3f p99=%.3f máx=%.3f%n",
+                    conexion.percentil(50) / 1e6, conexion.percentil(99) / 1e6, conexion.getMaximo() / 1e6);
+            System.out.println("Errores: " + errores + ". Conexiones fallidas: " + fallosConexion);
+            System.out.println("------------------------------");
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int puerto = args.length > 1 ? Integer.parseInt(args[1]) : 54321;
+        int conexiones = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        int segundos = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+        double tasa = args.length > 4 ? Double.parseDouble(args[4]) : 1000;
+        String mezcla = args.length > 5 ? args[5] : "info:1,list:1,msg:8";
+        boolean virtuales = args.length <= 6 || args[6].equalsIgnoreCase("s");
+
+        System.out.println("-> Generador: " + conexiones + " conexiones a " + host + ":" + puerto + " durante "
+                + segundos + " s, tasa " + (tasa > 0 ? tasa + " peticiones/s" : "sin límite")
+                + ", mezcla " + mezcla + (virtuales ? ", hilos virtuales" : ", hilos de plataforma"));
+        GeneradorCarga generador = new GeneradorCarga(host, puerto, conexiones, segundos, tasa, mezcla, virtuales);
+        generador.ejecutar().mostrar(host + ":" + puerto);
+    }
+}
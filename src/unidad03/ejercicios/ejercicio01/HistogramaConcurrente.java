@@ -0,0 +1,81 @@
+package unidad03.ejercicios.ejercicio01;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias que pueden registrar varios hilos a la vez, con las mismas cubetas
+ * que HistogramaLatencias (error menor que el 1%).
+ *
+ * Cada cubeta es un contador atómico y el total, la suma y el máximo son LongAdder y LongAccumulator,
+ * así que registrar no usa locks ni reserva memoria. Los percentiles se calculan sobre los contadores
+ * en ese momento; con registros a la vez el resultado puede no cuadrar exactamente con el total,
+ * lo que para unas estadísticas no importa.
+ *
+ * @author Miguel Angel Ramírez
+ */
+public class HistogramaConcurrente {
+    private final AtomicLongArray cuentas = new AtomicLongArray(HistogramaLatencias.CUBETAS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder suma = new LongAdder();
+    private final LongAccumulator maximo = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Registra un valor (los negativos cuentan como 0).
+     *
+     * @param valor La medida, normalmente en nanosegundos.
+     */
+    public void registrar(long valor) {
+        if (valor < 0) valor = 0;
+        cuentas.incrementAndGet(HistogramaLatencias.indice(valor));
+        total.increment();
+        suma.add(valor);
+        maximo.accumulate(valor);
+    }
+
+    /**
+     * Devuelve el valor por debajo del cual queda el porcentaje indicado de las medidas.
+     *
+     * @param porcentaje Entre 0 y 100 (ej. 99.9).
+     * @return El percentil, o 0 si no hay medidas.
+     */
+    public long percentil(double porcentaje) {
+        long n = 0;
+        for (int i = 0; i < HistogramaLatencias.CUBETAS; i++) {
+            n += cuentas.get(i);
+        }
+        if (n == 0) return 0;
+        long objetivo = Math.max(1, (long) Math.ceil(porcentaje / 100.0 * n));
+        long acumulado = 0;
+        for (int i = 0; i < HistogramaLatencias.CUBETAS; i++) {
+            acumulado += cuentas.get(i);
+            if (acumulado >= objetivo) {
+                return Math.min(HistogramaLatencias.valorMaximo(i), getMaximo());
+            }
+        }
+        return getMaximo();
+    }
+
+    /**
+     * @return Número de medidas registradas.
+     */
+    public long getTotal() {
+        return total.sum();
+    }
+
+    /**
+     * @return La media de las medidas, o 0 si no hay.
+     */
+    public double getMedia() {
+        long n = total.sum();
+        return n == 0 ? 0 : (double) suma.sum() / n;
+    }
+
+    /**
+     * @return La mayor medida.
+     */
+    public long getMaximo() {
+        return maximo.get();
+    }
+}
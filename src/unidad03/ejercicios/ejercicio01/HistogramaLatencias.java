@@ -0,0 +1,126 @@
+package unidad03.ejercicios.ejercicio01;
+
+/**
+ * Histograma de latencias con el mismo esquema que HdrHistogram: memoria fija y error relativo acotado.
+ *
+ * Los valores se reparten en grupos por potencias de dos y cada grupo se divide en SUBCUBETAS cubetas
+ * iguales, así el error de cada medida es menor que 1 / SUBCUBETAS (< 1%) tanto para microsegundos
+ * como para segundos. Los valores menores que 2 * SUBCUBETAS se guardan exactos.
+ *
+ * Registrar un valor no reserva memoria ni usa locks; no es seguro entre hilos, así que cada hilo usa
+ * su propio histograma y al final se juntan con sumar().
+ *
+ * @author Miguel Angel Ramírez
+ */
+public class HistogramaLatencias {
+    private static final int BITS_SUBCUBETA = 7;
+    private static final int SUBCUBETAS = 1 << BITS_SUBCUBETA;
+    // Cubetas para cualquier long positivo: 2 * SUBCUBETAS exactas y SUBCUBETAS por cada potencia de dos.
+    static final int CUBETAS = (64 - BITS_SUBCUBETA + 1) * SUBCUBETAS;
+
+    private final long[] cuentas = new long[CUBETAS];
+    private long total;
+    private long minimo = Long.MAX_VALUE;
+    private long maximo;
+    private double suma;
+
+    /**
+     * Registra un valor (los negativos cuentan como 0).
+     *
+     * @param valor La medida, normalmente en nanosegundos.
+     */
+    public void registrar(long valor) {
+        if (valor < 0) valor = 0;
+        cuentas[indice(valor)]++;
+        total++;
+        suma += valor;
+        if (valor < minimo) minimo = valor;
+        if (valor > maximo) maximo = valor;
+    }
+
+    /**
+     * Suma a este histograma los valores de otro.
+     *
+     * @param otro El histograma a sumar.
+     */
+    public void sumar(HistogramaLatencias otro) {
+        for (int i = 0; i < CUBETAS; i++) {
+            cuentas[i] += otro.cuentas[i];
+        }
+        total += otro.total;
+        suma += otro.suma;
+        minimo = Math.min(minimo, otro.minimo);
+        maximo = Math.max(maximo, otro.maximo);
+    }
+
+    /**
+     * Devuelve el valor por debajo del cual queda el porcentaje indicado de las medidas.
+     *
+     * @param porcentaje Entre 0 y 100 (ej. 99.9).
+     * @return El percentil, o 0 si no hay medidas.
+     */
+    public long percentil(double porcentaje) {
+        if (total == 0) return 0;
+        long objetivo = Math.max(1, (long) Math.ceil(porcentaje / 100.0 * total));
+        long acumulado = 0;
+        for (int i = 0; i < CUBETAS; i++) {
+            acumulado += cuentas[i];
+            if (acumulado >= objetivo) {
+                return Math.min(valorMaximo(i), maximo);
+            }
+        }
+        return maximo;
+    }
+
+    /**
+     * @return Número de medidas registradas.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * @return La media de las medidas, o 0 si no hay.
+     */
+    public double getMedia() {
+        return total == 0 ? 0 : suma / total;
+    }
+
+    /**
+     * @return La menor medida, o 0 si no hay.
+     */
+    public long getMinimo() {
+        return total == 0 ? 0 : minimo;
+    }
+
+    /**
+     * @return La mayor medida.
+     */
+    public long getMaximo() {
+        return maximo;
+    }
+
+    /**
+     * Cubeta de un valor: exacta por debajo de 2 * SUBCUBETAS y, por encima, los BITS_SUBCUBETA + 1
+     * bits más altos del valor junto con su desplazamiento.
+     */
+    static int indice(long valor) {
+        if (valor < 2 * SUBCUBETAS) {
+            return (int) valor;
+        }
+        int desplazamiento = 63 - Long.numberOfLeadingZeros(valor) - BITS_SUBCUBETA;
+        return desplazamiento * SUBCUBETAS + (int) (valor >>> desplazamiento);
+    }
+
+    /**
+     * Mayor valor que cae en la cubeta indicada.
+     */
+    static long valorMaximo(int indice) {
+        if (indice < 2 * SUBCUBETAS) {
+            return indice;
+        }
+        int desplazamiento = indice / SUBCUBETAS - 1;
+        long sub = indice - (long) desplazamiento * SUBCUBETAS;
+        return ((sub + 1) << desplazamiento) - 1;
+    }
+}
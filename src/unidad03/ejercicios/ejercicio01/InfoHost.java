@@ -0,0 +1,69 @@
+package unidad03.ejercicios.ejercicio01;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Línea de #info con el nombre del host, ya codificada en UTF-8.
+ *
+ * InetAddress.getLocalHost().getHostName() puede tardar segundos si el DNS está mal configurado, así que
+ * no se llama al atender #info: un hilo aparte lo resuelve al arrancar y lo vuelve a resolver cada TTL.
+ * Mientras no haya respuesta se usa el mensaje de host no disponible, y si una actualización falla
+ * se mantiene el último nombre conocido.
+ *
+ * @author Miguel Angel Ramírez
+ */
+public class InfoHost {
+    private static final long TTL_MINUTOS = 5;
+
+    private final int puerto;
+    private final ScheduledExecutorService resolvedor;
+    private volatile byte[] linea;
+
+    /**
+     * Arranca el hilo que resuelve el nombre del host.
+     *
+     * @param puerto El puerto del servidor (se muestra en la línea).
+     */
+    public InfoHost(int puerto) {
+        this.puerto = puerto;
+        this.linea = codificar("Info: Puerto: " + puerto + " Host no disponible.");
+        this.resolvedor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "Resolvedor-Host");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        resolvedor.scheduleWithFixedDelay(this::resolver, 0, TTL_MINUTOS, TimeUnit.MINUTES);
+    }
+
+    /**
+     * @return La línea "Info: Host: ... Puerto: ..." terminada en '\n' (no se debe modificar).
+     */
+    public byte[] getLinea() {
+        return linea;
+    }
+
+    /**
+     * Detiene el hilo que resuelve el nombre.
+     */
+    public void cerrar() {
+        resolvedor.shutdownNow();
+    }
+
+    private void resolver() {
+        try {
+            String host = InetAddress.getLocalHost().getHostName();
+            linea = codificar("Info: Host: " + host + ". Puerto: " + puerto);
+        } catch (UnknownHostException e) {
+            // Se mantiene el último valor.
+        }
+    }
+
+    private static byte[] codificar(String texto) {
+        return (texto + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+}
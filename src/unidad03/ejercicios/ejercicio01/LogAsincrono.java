@@ -0,0 +1,99 @@
+package unidad03.ejercicios.ejercicio01;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Mensajes por consola que no frenan a quien los escribe.
+ *
+ * System.out.println() es síncrono y tiene un lock: con muchas conexiones mostrando cada mensaje recibido,
+ * los hilos acaban esperando a la consola. Aquí el mensaje se deja en una cola acotada y un hilo aparte
+ * lo escribe. Además se limitan los mensajes por segundo: los que pasan del límite o no caben en la cola
+ * se descartan y, cada segundo, se indica cuántos se han omitido.
+ *
+ * El texto se pasa en partes y se une en el hilo del log, así que un mensaje descartado no llega
+ * a construirse.
+ *
+ * @author Miguel Angel Ramírez
+ */
+public class LogAsincrono {
+    private static final int CAPACIDAD = 1024;
+
+    private final int maximoPorSegundo;
+    private final BlockingQueue<Object[]> cola = new ArrayBlockingQueue<>(CAPACIDAD);
+    private final AtomicLong segundoActual = new AtomicLong();
+    private final AtomicLong usadosEnSegundo = new AtomicLong();
+    private final LongAdder omitidos = new LongAdder();
+
+    /**
+     * Arranca el hilo que escribe los mensajes.
+     *
+     * @param nombre Nombre del hilo.
+     * @param maximoPorSegundo Mensajes por segundo que se muestran como máximo.
+     */
+    public LogAsincrono(String nombre, int maximoPorSegundo) {
+        this.maximoPorSegundo = maximoPorSegundo;
+        Thread hilo = new Thread(this::escribir, nombre);
+        hilo.setDaemon(true);
+        hilo.start();
+    }
+
+    /**
+     * Deja un mensaje para mostrarlo. Nunca bloquea.
+     *
+     * @param partes Las partes del mensaje, que se unen con String.valueOf() en el hilo del log.
+     */
+    public void info(Object... partes) {
+        long segundo = System.nanoTime() / 1_000_000_000L;
+        long anterior = segundoActual.get();
+        if (segundo != anterior && segundoActual.compareAndSet(anterior, segundo)) {
+            usadosEnSegundo.set(0);
+        }
+        if (usadosEnSegundo.incrementAndGet() > maximoPorSegundo || !cola.offer(partes)) {
+            omitidos.increment();
+        }
+    }
+
+    /**
+     * @return Número de mensajes descartados desde el arranque.
+     */
+    public long getOmitidos() {
+        return omitidos.sum();
+    }
+
+    /**
+     * Bucle del hilo del log: escribe los mensajes y avisa de los omitidos una vez por segundo.
+     */
+    private void escribir() {
+        long avisados = 0;
+        long ultimoAviso = System.nanoTime();
+        StringBuilder linea = new StringBuilder();
+        try {
+            while (true) {
+                Object[] partes = cola.poll(1, TimeUnit.SECONDS);
+                if (partes != null) {
+                    linea.setLength(0);
+                    for (Object parte : partes) {
+                        linea.append(parte);
+                    }
+                    System.out.println(linea);
+                }
+
+                long ahora = System.nanoTime();
+                if (ahora - ultimoAviso >= TimeUnit.SECONDS.toNanos(1)) {
+                    long total = omitidos.sum();
+                    if (total > avisados) {
+                        System.out.println("-> Log: " + (total - avisados) + " mensajes omitidos.");
+                        avisados = total;
+                    }
+                    ultimoAviso = ahora;
+                }
+            }
+        } catch (InterruptedException e) {
+            // Termina el hilo.
+        }
+    }
+}
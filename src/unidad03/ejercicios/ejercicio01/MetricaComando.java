@@ -0,0 +1,49 @@
+package unidad03.ejercicios.ejercicio01;
+
+/**
+ * Peticiones y latencias de un comando del protocolo (o de los mensajes normales).
+ *
+ * @author Miguel Angel Ramírez
+ */
+public class MetricaComando {
+    private final String nombre;
+    private final HistogramaConcurrente latencias = new HistogramaConcurrente();
+
+    /**
+     * @param nombre Nombre del comando (ej. "#list").
+     */
+    public MetricaComando(String nombre) {
+        this.nombre = nombre;
+    }
+
+    /**
+     * Registra una ejecución del comando.
+     *
+     * @param nanos Lo que tardó en generarse la respuesta.
+     */
+    public void registrar(long nanos) {
+        latencias.registrar(nanos);
+    }
+
+    public String getNombre() {
+        return nombre;
+    }
+
+    public long getPeticiones() {
+        return latencias.getTotal();
+    }
+
+    public HistogramaConcurrente getLatencias() {
+        return latencias;
+    }
+
+    /**
+     * @return Una línea con las peticiones y las latencias en milisegundos.
+     */
+    public String resumen() {
+        return String.format("%s peticiones=%d media=%.3f p50=%.3f p99=%.3f p99.9=%.3f máx=%.3f (ms)",
+                nombre, latencias.getTotal(), latencias.getMedia() / 1e6,
+                latencias.percentil(50) / 1e6, latencias.percentil(99) / 1e6,
+                latencias.percentil(99.9) / 1e6, latencias.getMaximo() / 1e6);
+    }
+}
@@ -0,0 +1,232 @@
+package unidad03.ejercicios.ejercicio01;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool de conexiones persistentes con el servidor, para clientes que envían muchas peticiones
+ * (por ejemplo ClienteArchivo enviando un lote de ficheros) sin abrir una conexión TCP para cada una.
+ *
+ * - Como mucho hay maxConexiones en uso a la vez; obtener() espera a que se devuelva una.
+ * - Las conexiones libres se reutilizan de la más reciente a la más antigua, para que las que sobran
+ *   se queden sin usar y las cierre el limpiador cuando pasen inactivaMaxMs paradas.
+ * - Una conexión que lleva más de VALIDAR_TRAS_MS parada se comprueba con #ping antes de entregarla,
+ *   porque el servidor puede haberla cerrado mientras tanto.
+ * - enviar() vuelve a conectar y repite la petición una vez si la conexión falla.
+ *
+ * @author Miguel Angel Ramírez
+ */
+public class PoolConexiones implements AutoCloseable {
+    // Tiempo parada a partir del cual una conexión se comprueba con #ping antes de usarla.
+    private static final long VALIDAR_TRAS_MS = 1_000;
+
+    private final String host;
+    private final int puerto;
+    private final int timeoutConexionMs;
+    private final int timeoutLecturaMs;
+    private final long inactivaMaxNanos;
+
+    private final Deque<ConexionProtocolo> libres = new ArrayDeque<>();
+    private final Semaphore permisos;
+    private final ScheduledExecutorService limpiador;
+    private final LongAdder creadas = new LongAdder();
+    private final LongAdder reutilizadas = new LongAdder();
+    private final LongAdder descartadas = new LongAdder();
+    private volatile boolean cerrado;
+
+    /**
+     * Pool con 5 s para conectar, 30 s de espera por respuesta y 60 s de inactividad máxima.
+     *
+     * @param host Host del servidor.
+     * @param puerto Puerto del servidor.
+     * @param maxConexiones Conexiones abiertas como máximo.
+     */
+    public PoolConexiones(String host, int puerto, int maxConexiones) {
+        this(host, puerto, maxConexiones, 5_000, 30_000, 60_000);
+    }
+
+    /**
+     * @param host Host del servidor.
+     * @param puerto Puerto del servidor.
+     * @param maxConexiones Conexiones abiertas como máximo.
+     * @param timeoutConexionMs Tiempo máximo para conectar.
+     * @param timeoutLecturaMs Tiempo máximo de espera de cada respuesta.
+     * @param inactivaMaxMs Tiempo que puede estar parada una conexión libre antes de cerrarla.
+     */
+    public PoolConexiones(String host, int puerto, int maxConexiones, int timeoutConexionMs,
+                          int timeoutLecturaMs, long inactivaMaxMs) {
+        this.host = host;
+        this.puerto = puerto;
+        this.timeoutConexionMs = timeoutConexionMs;
+        this.timeoutLecturaMs = timeoutLecturaMs;
+        this.inactivaMaxNanos = TimeUnit.MILLISECONDS.toNanos(inactivaMaxMs);
+        this.permisos = new Semaphore(maxConexiones, true);
+
+        limpiador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "Limpiador-Pool");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        long periodo = Math.max(1, inactivaMaxMs / 2);
+        limpiador.scheduleWithFixedDelay(this::cerrarInactivas, periodo, periodo, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Entrega una conexión lista para usar: una libre que siga viva o, si no hay, una nueva.
+     * Hay que devolverla siempre con devolver().
+     *
+     * @return La conexión.
+     * @throws IOException Si no se puede conectar, o InterruptedIOException si se interrumpe la espera.
+     */
+    public ConexionProtocolo obtener() throws IOException {
+        if (cerrado) {
+            throw new IOException("El pool está cerrado");
+        }
+        try {
+            permisos.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrumpido esperando una conexión");
+        }
+
+        try {
+            ConexionProtocolo conexion;
+            while ((conexion = sacarLibre()) != null) {
+                long parada = System.nanoTime() - conexion.getUltimoUso();
+                if (parada < TimeUnit.MILLISECONDS.toNanos(VALIDAR_TRAS_MS) || conexion.ping()) {
+                    reutilizadas.increment();
+                    return conexion;
+                }
+                // El servidor la ha cerrado o no responde: se descarta y se prueba con la siguiente.
+                conexion.close();
+                descartadas.increment();
+            }
+            conexion = new ConexionProtocolo(host, puerto, timeoutConexionMs, timeoutLecturaMs);
+            creadas.increment();
+            return conexion;
+        } catch (IOException | RuntimeException e) {
+            permisos.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Devuelve una conexión al pool. Si está cerrada (falló o se envió #fin) simplemente se olvida.
+     *
+     * @param conexion La conexión obtenida con obtener().
+     */
+    public void devolver(ConexionProtocolo conexion) {
+        if (conexion.isCerrada()) {
+            descartadas.increment();
+        } else if (cerrado) {
+            conexion.close();
+        } else {
+            synchronized (libres) {
+                libres.addFirst(conexion);
+            }
+        }
+        permisos.release();
+    }
+
+    /**
+     * Envía una petición por una conexión del pool. Si la conexión falla, abre otra
+     * y repite la petición una vez; por eso solo debe usarse con peticiones que se puedan repetir.
+     *
+     * @param mensaje La línea a enviar (no debe ser #fin, que cierra la conexión).
+     * @return La respuesta del servidor.
+     * @throws IOException Si falla también el segundo intento.
+     */
+    public Respuesta enviar(String mensaje) throws IOException {
+        for (int intento = 1; ; intento++) {
+            ConexionProtocolo conexion = obtener();
+            try {
+                return conexion.enviar(mensaje);
+            } catch (InterruptedIOException e) {
+                // Interrupción o tiempo de espera agotado: repetirla solo cargaría más a un servidor lento.
+                throw e;
+            } catch (IOException e) {
+                // La conexión ya está cerrada y devolver() la descarta.
+                if (intento == 2) throw e;
+            } finally {
+                devolver(conexion);
+            }
+        }
+    }
+
+    /**
+     * @return Conexiones abiertas desde que se creó el pool.
+     */
+    public long getCreadas() {
+        return creadas.sum();
+    }
+
+    /**
+     * @return Veces que se ha entregado una conexión ya abierta.
+     */
+    public long getReutilizadas() {
+        return reutilizadas.sum();
+    }
+
+    /**
+     * @return Conexiones descartadas por fallar, por no responder al #ping o por inactividad.
+     */
+    public long getDescartadas() {
+        return descartadas.sum();
+    }
+
+    /**
+     * @return Conexiones libres en este momento.
+     */
+    public int getLibres() {
+        synchronized (libres) {
+            return libres.size();
+        }
+    }
+
+    /**
+     * Cierra las conexiones libres y para el limpiador. Las que estén en uso se cierran al devolverlas.
+     */
+    @Override
+    public void close() {
+        cerrado = true;
+        limpiador.shutdownNow();
+        ConexionProtocolo conexion;
+        while ((conexion = sacarLibre()) != null) {
+            conexion.close();
+        }
+    }
+
+    private ConexionProtocolo sacarLibre() {
+        synchronized (libres) {
+            return libres.pollFirst();
+        }
+    }
+
+    /**
+     * Tarea del limpiador: cierra las conexiones libres que llevan demasiado tiempo paradas.
+     * Las más antiguas están al final de la cola.
+     */
+    private void cerrarInactivas() {
+        long ahora = System.nanoTime();
+        synchronized (libres) {
+            Iterator<ConexionProtocolo> it = libres.descendingIterator();
+            while (it.hasNext()) {
+                ConexionProtocolo conexion = it.next();
+                if (ahora - conexion.getUltimoUso() < inactivaMaxNanos) {
+                    break;
+                }
+                it.remove();
+                conexion.close();
+                descartadas.increment();
+            }
+        }
+    }
+}
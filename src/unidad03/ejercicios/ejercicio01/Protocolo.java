@@ -0,0 +1,570 @@
+package unidad03.ejercicios.ejercicio01;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+
+/**
+ * Lógica del protocolo de líneas que entienden los servidores.
+ * Recibe un mensaje ya leído del cliente y escribe la respuesta en una SalidaRespuesta,
+ * sin saber si la conexión es bloqueante (Servidor) o no bloqueante (ServidorNIO).
+ *
+ * Cada comando es un Comando registrado por su nombre en un RegistroComandos al crear el protocolo,
+ * así que añadir uno nuevo no obliga a tocar el bucle que procesa los mensajes.
+ *
+ * No guarda estado de ninguna conexión, así que una misma instancia se comparte entre todos los hilos.
+ *
+ * @author Miguel Angel Ramírez
+ */
+public class Protocolo {
+    public static final String FIN_RESPUESTA = "--- FIN RESPUESTA ---";
+
+    public static final String CMD_FIN = "#fin";
+    public static final String CMD_INFO = "#info";
+    public static final String CMD_LIST = "#list";
+    public static final String CMD_CACHE = "#cache";
+    public static final String CMD_TREE = "#tree";
+    public static final String CMD_GET = "#get";
+    public static final String CMD_PUT = "#put";
+    public static final String CMD_STATS = "#stats";
+    public static final String CMD_PING = "#ping";
+    public static final String CMD_COMP = "#comp";
+
+    private final String directorio;
+    private final InfoHost infoHost;
+    private final EstadisticasServidor estadisticas;
+    private final RegistroComandos registro = new RegistroComandos();
+    private final MetricaComando metricaMensajes;
+    private final MetricaComando metricaDesconocidos;
+    private final CacheDirectorios cache = new CacheDirectorios();
+    private final RecepcionFichero recepcion = new RecepcionFichero();
+    private final ArbolDirectorios arbol = new ArbolDirectorios(Runtime.getRuntime().availableProcessors());
+
+    // Entradas que se agrupan en cada escritura al listar por partes.
+    private static final int LOTE_LISTADO = 512;
+    // Profundidad de #tree cuando no se indica.
+    private static final int PROFUNDIDAD_ARBOL = 32;
+
+    /**
+     * @param directorio El directorio que se lista con #list.
+     * @param puerto El puerto del servidor (se muestra en #info).
+     */
+    public Protocolo(String directorio, int puerto) {
+        this(directorio, puerto, new EstadisticasServidor(() -> 0, () -> 0, () -> 0));
+    }
+
+    /**
+     * @param directorio El directorio que se lista con #list.
+     * @param puerto El puerto del servidor (se muestra en #info).
+     * @param estadisticas Las estadísticas del servidor que se muestran en #info.
+     */
+    public Protocolo(String directorio, int puerto, EstadisticasServidor estadisticas) {
+        this.directorio = directorio;
+        this.infoHost = new InfoHost(puerto);
+        this.estadisticas = estadisticas;
+        this.metricaMensajes = estadisticas.metrica("(mensaje)");
+        this.metricaDesconocidos = estadisticas.metrica("(desconocido)");
+        registrarComandos();
+    }
+
+    /**
+     * Procesa un mensaje del cliente y escribe la respuesta completa.
+     *
+     * @param mensaje La línea recibida.
+     * @param salida Donde se escribe la respuesta.
+     * @return true si el mensaje es #fin y se debe cerrar la conexión, false en caso contrario.
+     */
+    public boolean procesar(String mensaje, SalidaRespuesta salida) {
+        estadisticas.contarComando();
+        if (mensaje.startsWith("#")) {
+            // Si empieza por #, es un comando.
+            return procesarComando(mensaje, salida);
+        }
+
+        // Si no es un comando, responde con mensaje normal.
+        long inicio = System.nanoTime();
+        salida.escribirLinea("Mensaje recibido correctamente.");
+        salida.finRespuesta();
+        metricaMensajes.registrar(System.nanoTime() - inicio);
+        return false;
+    }
+
+    /**
+     * Procesa los comandos recibidos del cliente.
+     * El nombre del comando es la primera palabra; el resto son sus argumentos (ej. "#list docs 100 50").
+     * @param comando El comando recibido. (ej. #fin, #info, #list)
+     * @param salida Donde se escribe la respuesta.
+     * @return true si el comando es #fin y se debe cerrar la conexión, false en caso contrario.
+     */
+    private boolean procesarComando(String comando, SalidaRespuesta salida){
+        int espacio = comando.indexOf(' ');
+        Comando encontrado = registro.buscar(comando, espacio < 0 ? comando.length() : espacio);
+        if (encontrado == null) {
+            // Comando no reconocido.
+            long inicio = System.nanoTime();
+            salida.error("Comando no reconocido (" + comando + ")");
+            salida.finRespuesta();
+            metricaDesconocidos.registrar(System.nanoTime() - inicio);
+            return false;
+        }
+        String argumentos = espacio < 0 ? "" : comando.substring(espacio + 1).trim();
+        return encontrado.ejecutar(argumentos, salida);
+    }
+
+    /**
+     * Indica si un mensaje es un comando lento, para que el servidor lo ejecute aparte (ver Comando.esLento()).
+     *
+     * @param mensaje La línea recibida.
+     * @return true si es un comando registrado como lento.
+     */
+    public boolean esLento(String mensaje) {
+        if (!mensaje.startsWith("#")) return false;
+        int espacio = mensaje.indexOf(' ');
+        Comando encontrado = registro.buscar(mensaje, espacio < 0 ? mensaje.length() : espacio);
+        return encontrado != null && encontrado.esLento();
+    }
+
+    /**
+     * Añade un comando al protocolo, o sustituye uno existente. Se debe llamar al arrancar el servidor,
+     * antes de atender peticiones.
+     *
+     * @param nombre Nombre del comando, con la almohadilla (ej. "#hora").
+     * @param comando El comando.
+     */
+    public void registrar(String nombre, Comando comando) {
+        añadir(nombre, comando);
+    }
+
+    /**
+     * Registra un comando envuelto en otro que mide cuánto tarda cada ejecución (ver MetricaComando).
+     */
+    private void añadir(String nombre, Comando comando) {
+        MetricaComando metrica = estadisticas.metrica(nombre.toLowerCase());
+        registro.registrar(nombre, new Comando() {
+            @Override
+            public boolean ejecutar(String argumentos, SalidaRespuesta salida) {
+                long inicio = System.nanoTime();
+                try {
+                    return comando.ejecutar(argumentos, salida);
+                } finally {
+                    metrica.registrar(System.nanoTime() - inicio);
+                }
+            }
+
+            @Override
+            public boolean esLento() {
+                return comando.esLento();
+            }
+        });
+    }
+
+    /**
+     * Registra los comandos que entiende el protocolo.
+     * #list y #tree leen el disco y pueden tardar, así que se marcan como lentos.
+     */
+    private void registrarComandos() {
+        añadir(CMD_FIN, (argumentos, salida) -> {
+            salida.cierre("Fin: Cerrando conexión");
+            return true; // Indica que se debe cerrar la conexión.
+        });
+        añadir(CMD_PING, (argumentos, salida) -> {
+            // Comprobación barata de que la conexión sigue viva (la usa PoolConexiones).
+            salida.escribirLinea("Pong");
+            salida.finRespuesta();
+            return false;
+        });
+        añadir(CMD_COMP, (argumentos, salida) -> {
+            // Compresión de las respuestas grandes de esta conexión: "#comp [on|off]".
+            boolean activar = !argumentos.equalsIgnoreCase("off");
+            if (!argumentos.isEmpty() && activar && !argumentos.equalsIgnoreCase("on")) {
+                salida.error("Uso: #comp [on|off]");
+            } else if (!salida.activarCompresion(activar)) {
+                salida.error("#comp necesita el modo binario (#proto bin)");
+            } else {
+                salida.escribirLinea("Comp: " + (activar ? "on" : "off"));
+            }
+            salida.finRespuesta();
+            return false;
+        });
+        añadir(CMD_INFO, (argumentos, salida) -> {
+            // El nombre del host ya está resuelto y codificado; solo las estadísticas se generan ahora.
+            salida.escribirBloque(infoHost.getLinea());
+            salida.escribirLinea(estadisticas.resumen());
+            salida.finRespuesta(); // Indica el fin de la respuesta.
+            return false;
+        });
+        añadir(CMD_LIST, Comando.lento((argumentos, salida) -> {
+            if (argumentos.isEmpty()) {
+                // Lista los ficheros del directorio configurado.
+                listarFicheros(this.directorio, salida);
+            } else {
+                // Lista un subdirectorio, por partes y opcionalmente paginado.
+                listarPaginado(argumentos, salida);
+            }
+            return false;
+        }));
+        añadir(CMD_TREE, Comando.lento((argumentos, salida) -> {
+            enviarArbol(argumentos, salida);
+            return false;
+        }));
+        añadir(CMD_GET, (argumentos, salida) -> {
+            // Envía el contenido de un fichero (solo en modo binario).
+            enviarFichero(argumentos, salida);
+            return false;
+        });
+        añadir(CMD_PUT, (argumentos, salida) -> {
+            // Las subidas las atiende el bucle binario con recibirFichero(); aquí solo llegan en modo texto.
+            salida.error("#put necesita el modo binario (#proto bin)");
+            salida.finRespuesta();
+            return false;
+        });
+        añadir(CMD_STATS, (argumentos, salida) -> {
+            // Contadores del servidor y latencias de cada comando.
+            long segundos = estadisticas.getSegundosActivo();
+            salida.escribirLinea(String.format("Stats: Activo: %dh %02dm %02ds. Conexiones: %d. Comandos: %d. "
+                            + "Bytes recibidos: %d. Bytes enviados: %d",
+                    segundos / 3600, segundos / 60 % 60, segundos % 60, estadisticas.getConexionesActivas(),
+                    estadisticas.getComandos(), estadisticas.getBytesRecibidos(), estadisticas.getBytesEnviados()));
+            for (String linea : estadisticas.getResumenComandos()) {
+                salida.escribirLinea("Stats: " + linea);
+            }
+            salida.finRespuesta();
+            return false;
+        });
+        añadir(CMD_CACHE, (argumentos, salida) -> {
+            // Muestra los contadores de la caché de directorios.
+            salida.escribirLinea("Cache: Aciertos: " + cache.getAciertos()
+                    + ". Fallos: " + cache.getFallos()
+                    + ". Cambios aplicados: " + cache.getActualizaciones()
+                    + ". Directorios: " + cache.getDirectorios());
+            salida.finRespuesta();
+            return false;
+        });
+    }
+
+    /**
+     * Inventario recursivo del directorio configurado: "#tree [profundidad]".
+     *
+     * @param argumentos La profundidad, o "" para usar PROFUNDIDAD_ARBOL.
+     * @param salida Donde se escribe la respuesta.
+     */
+    private void enviarArbol(String argumentos, SalidaRespuesta salida) {
+        int profundidad = PROFUNDIDAD_ARBOL;
+        if (!argumentos.isEmpty()) {
+            try {
+                profundidad = Integer.parseInt(argumentos);
+            } catch (NumberFormatException e) {
+                profundidad = -1;
+            }
+        }
+        if (profundidad < 0) {
+            salida.error("Uso: #tree [profundidad]");
+            salida.finRespuesta();
+            return;
+        }
+        Path raiz = Paths.get(this.directorio).toAbsolutePath().normalize();
+        if (!Files.isDirectory(raiz)) {
+            salida.error("La ruta -> " + this.directorio + ". No es un directorio valido o no existe");
+            salida.finRespuesta();
+            return;
+        }
+        arbol.enviarArbol(raiz, profundidad, salida);
+    }
+
+    /**
+     * Lista los ficheros y directorios en la ruta especificada.
+     * El listado sale de la caché de directorios, que solo vuelve a leer el disco cuando el directorio cambia.
+     *
+     * @param ruta La ruta del directorio a listar.
+     * @param salida Donde se escribe la respuesta.
+     */
+    private void listarFicheros(String ruta, SalidaRespuesta salida){
+        byte[] listado = cache.obtenerListado(ruta);
+
+        // Verifica que la ruta es un directorio válido.
+        if (listado == null){
+            salida.error("La ruta -> " + ruta + ". No es un directorio valido o no existe");
+            salida.finRespuesta();
+            return;
+        }
+
+        // Envía la lista al cliente e indica el fin de la respuesta.
+        salida.escribirBloque(listado);
+        salida.finRespuesta();
+    }
+
+    /**
+     * Lista un directorio dentro del configurado: "#list ruta [desde] [máximo]".
+     *
+     * Recorre el directorio con un DirectoryStream y va enviando las entradas en lotes de LOTE_LISTADO,
+     * así la memoria usada no depende del tamaño del directorio y el cliente recibe los primeros datos
+     * sin esperar a que se lea entero. El tipo se obtiene de los atributos de la entrada
+     * (en Windows el DirectoryStream ya los trae; Java no expone el tipo de readdir en Linux).
+     *
+     * @param argumentos La ruta relativa al directorio configurado y, opcionalmente, desde y máximo.
+     * @param salida Donde se escribe la respuesta.
+     */
+    private void listarPaginado(String argumentos, SalidaRespuesta salida){
+        // Los dos últimos argumentos, si son números, son "desde" y "máximo"; lo anterior es la ruta.
+        String[] partes = argumentos.split("\\s+");
+        long[] numeros = new long[2];
+        int cantidadNumeros = 0;
+        int finRuta = partes.length;
+        while (finRuta > 1 && cantidadNumeros < 2 && partes[finRuta - 1].matches("\\d+")) {
+            finRuta--;
+            cantidadNumeros++;
+        }
+        for (int i = 0; i < cantidadNumeros; i++) {
+            numeros[i] = leerNumero(partes[finRuta + i]);
+            if (numeros[i] < 0) {
+                salida.error("Número demasiado grande: " + partes[finRuta + i]);
+                salida.finRespuesta();
+                return;
+            }
+        }
+        long desde = cantidadNumeros >= 1 ? numeros[0] : 0;
+        long maximo = cantidadNumeros >= 2 ? numeros[1] : Long.MAX_VALUE;
+        String ruta = String.join(" ", Arrays.copyOfRange(partes, 0, finRuta));
+
+        Path objetivo = resolverRuta(ruta);
+        if (objetivo == null || !Files.isDirectory(objetivo)){
+            salida.error("La ruta -> " + ruta + ". No es un directorio valido o no existe");
+            salida.finRespuesta();
+            return;
+        }
+
+        salida.escribirLinea("Lista: Contenido de " + ruta + " (desde " + desde + "): ");
+
+        ByteArrayOutputStream lote = new ByteArrayOutputStream(LOTE_LISTADO * 32);
+        long posicion = 0;
+        long enviadas = 0;
+        boolean hayMas = false;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(objetivo)) {
+            for (Path p : stream) {
+                if (posicion++ < desde) continue;
+                if (enviadas == maximo) {
+                    hayMas = true;
+                    break;
+                }
+
+                lote.write(esDirectorio(p) ? 'D' : 'F');
+                lote.write(' ');
+                lote.writeBytes(p.getFileName().toString().getBytes(StandardCharsets.UTF_8));
+                lote.write('\n');
+                enviadas++;
+
+                if (enviadas % LOTE_LISTADO == 0) {
+                    salida.escribirBloque(lote.toByteArray());
+                    salida.vaciar();
+                    lote.reset();
+                }
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            salida.escribirBloque(lote.toByteArray());
+            salida.error("No se pudo leer el directorio completo: " + e.getMessage());
+            salida.finRespuesta();
+            return;
+        }
+
+        salida.escribirBloque(lote.toByteArray());
+        if (hayMas) {
+            salida.escribirLinea("Lista: " + enviadas + " entradas. Hay más, siguiente desde: " + (desde + enviadas));
+        } else {
+            salida.escribirLinea("Lista: " + enviadas + " entradas.");
+        }
+        salida.finRespuesta();
+    }
+
+    /**
+     * Envía un fichero del directorio configurado: "#get nombre [desde]".
+     * Con "desde" se continúa una descarga interrumpida a partir de ese byte.
+     *
+     * La respuesta son tres tramas: una línea con el tamaño, la trama ESTADO_FICHERO con los bytes
+     * (enviados con transferTo) y una línea final con los bytes enviados.
+     *
+     * @param argumentos Nombre del fichero y, opcionalmente, la posición desde la que enviar.
+     * @param salida Donde se escribe la respuesta.
+     */
+    private void enviarFichero(String argumentos, SalidaRespuesta salida){
+        if (!salida.admiteFicheros()) {
+            salida.error("#get necesita el modo binario (#proto bin)");
+            salida.finRespuesta();
+            return;
+        }
+
+        String nombre = argumentos;
+        long desde = 0;
+        int espacio = argumentos.lastIndexOf(' ');
+        if (espacio > 0 && argumentos.substring(espacio + 1).matches("\\d+")) {
+            nombre = argumentos.substring(0, espacio).trim();
+            desde = leerNumero(argumentos.substring(espacio + 1));
+            if (desde < 0) {
+                salida.error("Posición demasiado grande: " + argumentos.substring(espacio + 1));
+                salida.finRespuesta();
+                return;
+            }
+        }
+
+        Path fichero = nombre.isEmpty() ? null : resolverRuta(nombre);
+        if (fichero == null || !Files.isRegularFile(fichero)) {
+            salida.error("El fichero -> " + nombre + ". No existe o no es un fichero");
+            salida.finRespuesta();
+            return;
+        }
+
+        try (FileChannel canal = FileChannel.open(fichero, StandardOpenOption.READ)) {
+            long tamaño = canal.size();
+            if (desde > tamaño) {
+                salida.error("La posición " + desde + " es mayor que el tamaño del fichero (" + tamaño + ")");
+                salida.finRespuesta();
+                return;
+            }
+            salida.escribirLinea("Get: " + nombre + " " + tamaño + " bytes, desde " + desde);
+            salida.enviarFichero(canal, desde, tamaño - desde);
+            salida.escribirLinea("Get: " + (tamaño - desde) + " bytes enviados.");
+            salida.finRespuesta();
+        } catch (IOException e) {
+            // Si el envío se corta a mitad el cliente ya no puede seguir la conversación: se cierra la conexión.
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param mensaje Una petición recibida en modo binario.
+     * @return true si es una subida (#put), que necesita leer los trozos del flujo de entrada.
+     */
+    public static boolean esSubida(String mensaje) {
+        // La palabra del comando entera: "#put" solo también es una subida (mal escrita, responde con el uso).
+        return mensaje.regionMatches(true, 0, CMD_PUT, 0, CMD_PUT.length())
+                && (mensaje.length() == CMD_PUT.length() || Character.isWhitespace(mensaje.charAt(CMD_PUT.length())));
+    }
+
+    /**
+     * Atiende una subida por trozos: "#put nombre tamaño trozo" (ver RecepcionFichero).
+     * El fichero se guarda en el directorio configurado.
+     *
+     * @param mensaje La petición #put completa.
+     * @param entrada Flujo de entrada del socket, del que se leen los trozos.
+     * @param salida Donde se escriben las respuestas.
+     * @throws IOException Si falla la conexión durante la subida.
+     */
+    public void recibirFichero(String mensaje, DataInputStream entrada, SalidaRespuesta salida) throws IOException {
+        estadisticas.contarComando();
+        long inicio = System.nanoTime();
+        try {
+            subirFichero(mensaje, entrada, salida);
+        } finally {
+            estadisticas.metrica(CMD_PUT).registrar(System.nanoTime() - inicio);
+        }
+    }
+
+    /**
+     * Valida la petición #put y pasa la subida a RecepcionFichero.
+     */
+    private void subirFichero(String mensaje, DataInputStream entrada, SalidaRespuesta salida) throws IOException {
+        String[] partes = mensaje.substring(CMD_PUT.length()).trim().split("\\s+");
+        int n = partes.length;
+        long tamaño = n < 3 ? -1 : leerNumero(partes[n - 2]);
+        long tamTrozo = n < 3 ? -1 : leerNumero(partes[n - 1]);
+        if (tamaño < 0 || tamTrozo < 0) {
+            salida.error("Uso: #put nombre tamaño trozo");
+            salida.finRespuesta();
+            return;
+        }
+        String nombre = String.join(" ", Arrays.copyOfRange(partes, 0, n - 2));
+
+        Path destino = resolverRuta(nombre);
+        if (destino == null || destino.getParent() == null || !Files.isDirectory(destino.getParent())
+                || Files.isDirectory(destino)) {
+            salida.error("El fichero -> " + nombre + ". No se puede guardar en el directorio configurado");
+            salida.finRespuesta();
+            return;
+        }
+        if (tamTrozo <= 0 || tamTrozo > TramaBinaria.MAX_TROZO) {
+            salida.error("El tamaño de trozo debe estar entre 1 y " + TramaBinaria.MAX_TROZO);
+            salida.finRespuesta();
+            return;
+        }
+        recepcion.recibir(destino, nombre, tamaño, (int) tamTrozo, entrada, salida);
+    }
+
+    /**
+     * Resuelve una ruta dentro del directorio configurado.
+     *
+     * Con ".." o con un enlace simbólico se podría salir de él, así que se comprueba la ruta real: la del
+     * objetivo si existe, o la de su directorio padre si todavía no existe (un fichero nuevo de #put).
+     *
+     * @param ruta Ruta relativa al directorio configurado.
+     * @return La ruta absoluta, o null si no es válida o queda fuera del directorio configurado.
+     */
+    private Path resolverRuta(String ruta) {
+        try {
+            Path raiz = Paths.get(this.directorio).toRealPath();
+            Path objetivo = raiz.resolve(ruta).normalize();
+            if (!objetivo.startsWith(raiz)) return null;
+            // Un enlace que no lleva a ningún sitio también cuenta como existente: toRealPath() fallará.
+            Path real = Files.exists(objetivo, LinkOption.NOFOLLOW_LINKS) || objetivo.getParent() == null
+                    ? objetivo.toRealPath()
+                    : objetivo.getParent().toRealPath().resolve(objetivo.getFileName());
+            return real.startsWith(raiz) ? objetivo : null;
+        } catch (InvalidPathException | IOException e) {
+            // Caracteres no válidos en la ruta (un byte NUL), o el padre no existe.
+            return null;
+        }
+    }
+
+    /**
+     * Lee un número no negativo de un argumento sin lanzar excepciones.
+     *
+     * @param texto El argumento.
+     * @return El número, o -1 si no son solo dígitos o no cabe en un long.
+     */
+    private static long leerNumero(String texto) {
+        if (!texto.matches("\\d+")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(texto);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static boolean esDirectorio(Path p) {
+        try {
+            return Files.readAttributes(p, BasicFileAttributes.class).isDirectory();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @return La caché de listados de directorio, para consultar sus contadores.
+     */
+    public CacheDirectorios getCache() {
+        return cache;
+    }
+
+    /**
+     * @return Las estadísticas del servidor que se muestran en #info.
+     */
+    public EstadisticasServidor getEstadisticas() {
+        return estadisticas;
+    }
+
+    /**
+     * Libera los recursos del protocolo (el WatchService de la caché, los hilos de #tree
+     * y el que resuelve el nombre del host).
+     */
+    public void cerrar() {
+        cache.cerrar();
+        arbol.cerrar();
+        infoHost.cerrar();
+    }
+}
@@ -0,0 +1,130 @@
+package unidad03.ejercicios.ejercicio01;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Recepción de ficheros subidos por trozos con "#put nombre tamaño trozo" (solo en modo binario).
+ *
+ * El fichero se escribe en "nombre.part" dentro del directorio configurado. Cada trozo llega con su CRC32
+ * (ver TramaBinaria.escribirCabeceraTrozo) y solo se escribe y se confirma si el CRC coincide; si no,
+ * se responde con un error y el cliente vuelve a enviar ese trozo. Al llegar el trozo de fin se comprueba
+ * el tamaño y el fichero se renombra a su nombre definitivo.
+ *
+ * Si la subida se corta, el ".part" se queda con los trozos confirmados y el siguiente "#put" del mismo
+ * fichero continúa a partir del último de ellos.
+ *
+ * @author Miguel Angel Ramírez
+ */
+public class RecepcionFichero {
+    private static final String EXTENSION_PARCIAL = ".part";
+
+    // Ficheros que se están subiendo ahora mismo, para no mezclar dos subidas del mismo fichero.
+    private final Set<Path> enCurso = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Atiende una subida completa: valida la petición, responde con los bytes ya confirmados
+     * y recibe los trozos hasta el de fin.
+     *
+     * @param destino Fichero final, ya resuelto dentro del directorio configurado.
+     * @param nombre Nombre tal y como lo escribió el cliente (para las respuestas).
+     * @param tamaño Tamaño total del fichero.
+     * @param tamTrozo Tamaño de cada trozo (el último puede ser menor).
+     * @param entrada Flujo de entrada del socket, del que se leen los trozos.
+     * @param salida Donde se escriben las respuestas.
+     * @throws IOException Si falla la conexión o el cliente no respeta el formato; la conexión debe cerrarse.
+     */
+    public void recibir(Path destino, String nombre, long tamaño, int tamTrozo,
+                        DataInputStream entrada, SalidaRespuesta salida) throws IOException {
+        if (!enCurso.add(destino)) {
+            salida.error("Ya se está subiendo el fichero -> " + nombre);
+            salida.finRespuesta();
+            return;
+        }
+
+        Path parcial = destino.resolveSibling(destino.getFileName() + EXTENSION_PARCIAL);
+        try (FileChannel fichero = FileChannel.open(parcial, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // Solo cuentan los trozos completos; lo que sobre de un trozo a medias se descarta.
+            long confirmados = Math.min(fichero.size() / tamTrozo * tamTrozo, tamaño);
+            fichero.truncate(confirmados);
+
+            salida.escribirLinea("Put: " + nombre + " confirmados " + confirmados);
+            salida.finRespuesta();
+
+            int esperado = (int) (confirmados / tamTrozo);
+            byte[] buffer = new byte[tamTrozo];
+            CRC32 crc = new CRC32();
+
+            while (true) {
+                int indice = entrada.readInt();
+                int longitud = entrada.readInt();
+                long crcRecibido = entrada.readLong();
+
+                if (indice == TramaBinaria.FIN_TROZOS) {
+                    terminar(fichero, parcial, destino, nombre, tamaño, salida);
+                    return;
+                }
+
+                long posicion = (long) indice * tamTrozo;
+                // Todos los trozos son de tamTrozo salvo el último, que acaba justo en el tamaño del fichero:
+                // uno más corto en medio dejaría un hueco de ceros, porque la posición sale de indice * tamTrozo.
+                boolean ultimo = posicion + longitud == tamaño;
+                if (indice != esperado || longitud < 0 || longitud > tamTrozo || posicion + longitud > tamaño
+                        || longitud != tamTrozo && !ultimo) {
+                    // Los bytes del trozo ya no se pueden separar de lo que venga detrás: se cierra la conexión.
+                    throw new IOException("Trozo no válido en la subida de " + nombre + ": " + indice);
+                }
+                entrada.readFully(buffer, 0, longitud);
+
+                crc.reset();
+                crc.update(buffer, 0, longitud);
+                if (crc.getValue() != crcRecibido) {
+                    salida.error("Put: trozo " + indice + " CRC incorrecto");
+                    salida.finRespuesta();
+                    continue;
+                }
+
+                ByteBuffer datos = ByteBuffer.wrap(buffer, 0, longitud);
+                while (datos.hasRemaining()) {
+                    fichero.write(datos, posicion + datos.position());
+                }
+                // El trozo está en disco antes de confirmarlo, para poder continuar aunque el servidor se caiga.
+                fichero.force(false);
+                esperado++;
+
+                salida.escribirLinea("Put: trozo " + indice);
+                salida.finRespuesta();
+            }
+        } finally {
+            enCurso.remove(destino);
+        }
+    }
+
+    /**
+     * Comprueba que han llegado todos los bytes y renombra el ".part" a su nombre definitivo.
+     */
+    private void terminar(FileChannel fichero, Path parcial, Path destino, String nombre, long tamaño,
+                          SalidaRespuesta salida) throws IOException {
+        long recibidos = fichero.size();
+        if (recibidos != tamaño) {
+            salida.error("Put: faltan bytes de " + nombre + " (" + recibidos + " de " + tamaño + ")");
+            salida.finRespuesta();
+            return;
+        }
+        fichero.force(true);
+        fichero.close();
+        Files.move(parcial, destino, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        salida.escribirLinea("Put: " + nombre + " " + tamaño + " bytes guardados.");
+        salida.finRespuesta();
+    }
+}
@@ -0,0 +1,68 @@
+package unidad03.ejercicios.ejercicio01;
+
+/**
+ * Tabla de comandos por nombre, guardada en un trie de caracteres ASCII.
+ *
+ * Buscar un comando recorre los caracteres del mensaje recibido, pasando las mayúsculas a minúsculas
+ * sobre la marcha, así que no hace falta crear el String del nombre ni llamar a toLowerCase()
+ * en cada petición. Los comandos se registran al arrancar; después solo se consulta,
+ * por lo que se puede compartir entre hilos sin sincronizar.
+ *
+ * @author Miguel Angel Ramírez
+ */
+public class RegistroComandos {
+    private static final int ASCII = 128;
+
+    private final Nodo raiz = new Nodo();
+
+    /**
+     * Registra un comando. Si ya había uno con el mismo nombre se sustituye.
+     *
+     * @param nombre Nombre del comando, con la almohadilla (ej. "#list"). Sin espacios y solo ASCII.
+     * @param comando El comando.
+     */
+    public void registrar(String nombre, Comando comando) {
+        Nodo nodo = raiz;
+        for (int i = 0; i < nombre.length(); i++) {
+            char c = nombre.charAt(i);
+            if (c >= ASCII || c == ' ') {
+                throw new IllegalArgumentException("Nombre de comando no válido: " + nombre);
+            }
+            c = minuscula(c);
+            if (nodo.hijos[c] == null) {
+                nodo.hijos[c] = new Nodo();
+            }
+            nodo = nodo.hijos[c];
+        }
+        nodo.comando = comando;
+    }
+
+    /**
+     * Busca el comando cuyo nombre son los primeros caracteres del mensaje, sin distinguir mayúsculas.
+     *
+     * @param mensaje El mensaje recibido.
+     * @param finNombre Posición donde termina el nombre (el primer espacio o la longitud del mensaje).
+     * @return El comando, o null si no hay ninguno con ese nombre.
+     */
+    public Comando buscar(String mensaje, int finNombre) {
+        Nodo nodo = raiz;
+        for (int i = 0; i < finNombre && nodo != null; i++) {
+            char c = mensaje.charAt(i);
+            if (c >= ASCII) return null;
+            nodo = nodo.hijos[minuscula(c)];
+        }
+        return nodo == null ? null : nodo.comando;
+    }
+
+    private static char minuscula(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    /**
+     * Nodo del trie: un hijo por cada carácter ASCII y el comando que termina aquí, si lo hay.
+     */
+    private static class Nodo {
+        private final Nodo[] hijos = new Nodo[ASCII];
+        private Comando comando;
+    }
+}
@@ -0,0 +1,49 @@
+package unidad03.ejercicios.ejercicio01;
+
+import java.util.List;
+
+/**
+ * Respuesta completa del servidor a una petición, ya separada en líneas y sin la línea FIN_RESPUESTA.
+ *
+ * @author Miguel Angel Ramírez
+ */
+public class Respuesta {
+    private final List<String> lineas;
+    private final boolean error;
+    private final boolean cierre;
+
+    /**
+     * @param lineas Las líneas de la respuesta.
+     * @param error true si alguna línea es un error ("Error: ...").
+     * @param cierre true si es la respuesta a #fin (el servidor cierra la conexión).
+     */
+    public Respuesta(List<String> lineas, boolean error, boolean cierre) {
+        this.lineas = List.copyOf(lineas);
+        this.error = error;
+        this.cierre = cierre;
+    }
+
+    public List<String> getLineas() {
+        return lineas;
+    }
+
+    /**
+     * @return Las líneas unidas con saltos de línea.
+     */
+    public String getTexto() {
+        return String.join("\n", lineas);
+    }
+
+    public boolean isError() {
+        return error;
+    }
+
+    public boolean isCierre() {
+        return cierre;
+    }
+
+    @Override
+    public String toString() {
+        return getTexto();
+    }
+}
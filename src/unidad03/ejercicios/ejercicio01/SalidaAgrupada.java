@@ -0,0 +1,77 @@
+package unidad03.ejercicios.ejercicio01;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Base de las salidas que juntan la respuesta entera antes de enviarla.
+ *
+ * Con un PrintWriter con autoflush cada println es una escritura en el socket (y normalmente un segmento TCP),
+ * así que un #list de N entradas hace N+2 escrituras. Aquí las líneas se acumulan en memoria ya codificadas
+ * en UTF-8 y cada subclase las envía de una vez al terminar la respuesta (o en vaciar(), para las largas).
+ *
+ * @author Miguel Angel Ramírez
+ */
+public abstract class SalidaAgrupada implements SalidaRespuesta {
+    protected final ByteArrayOutputStream respuesta = new ByteArrayOutputStream(1024);
+    private boolean hayError;
+
+    @Override
+    public void escribirLinea(String linea) {
+        respuesta.writeBytes(linea.getBytes(StandardCharsets.UTF_8));
+        respuesta.write('\n');
+    }
+
+    @Override
+    public void escribirBloque(byte[] bloque) {
+        respuesta.writeBytes(bloque);
+    }
+
+    @Override
+    public void error(String mensaje) {
+        hayError = true;
+        escribirLinea("Error: " + mensaje);
+    }
+
+    @Override
+    public void vaciar() {
+        if (respuesta.size() > 0) {
+            try {
+                enviarParcial();
+            } finally {
+                respuesta.reset();
+            }
+        }
+    }
+
+    @Override
+    public void finRespuesta() {
+        terminar(hayError ? TramaBinaria.ESTADO_ERROR : TramaBinaria.ESTADO_OK);
+    }
+
+    @Override
+    public void cierre(String mensaje) {
+        escribirLinea(mensaje);
+        terminar(TramaBinaria.ESTADO_CIERRE);
+    }
+
+    private void terminar(byte estado) {
+        try {
+            enviarFinal(estado);
+        } finally {
+            respuesta.reset();
+            hayError = false;
+        }
+    }
+
+    /**
+     * Envía lo acumulado de una respuesta que todavía no ha terminado.
+     */
+    protected abstract void enviarParcial();
+
+    /**
+     * Envía lo acumulado como final de la respuesta.
+     * @param estado ESTADO_OK, ESTADO_ERROR o ESTADO_CIERRE (ver TramaBinaria).
+     */
+    protected abstract void enviarFinal(byte estado);
+}
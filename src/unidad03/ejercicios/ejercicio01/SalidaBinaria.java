@@ -0,0 +1,178 @@
+package unidad03.ejercicios.ejercicio01;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.function.LongConsumer;
+import java.util.zip.Deflater;
+
+/**
+ * Salida de las respuestas en modo binario (ver TramaBinaria).
+ * Junta todas las líneas de la respuesta y, al terminar, las envía en una sola trama
+ * con su estado y su longitud delante.
+ *
+ * Los ficheros de #get se envían con FileChannel.transferTo() directamente al canal del socket,
+ * que en Linux usa sendfile: los datos pasan del disco al socket sin copiarse a la memoria de Java.
+ * Si no hay canal se copian por trozos a través del flujo de salida.
+ * Lo enviado por el canal no pasa por el flujo (ni por su FlujoContador), así que se cuenta aparte.
+ *
+ * Con "#comp on" las tramas de UMBRAL_COMPRESION bytes o más se comprimen con Deflate, cada una por
+ * separado y con el diccionario de TramaBinaria (los listados son muy repetitivos: "F nombre" por línea).
+ * Si la trama comprimida no sale más pequeña se envía sin comprimir.
+ *
+ * @author Miguel Angel Ramírez
+ */
+public class SalidaBinaria extends SalidaAgrupada {
+    private static final int TAM_COPIA = 64 * 1024;
+
+    private final DataOutputStream out;
+    private final WritableByteChannel canal;
+    private final LongConsumer contarEnviados;
+    // Solo existe mientras la compresión está activada; se reutiliza en todas las tramas.
+    private Deflater deflater;
+    private byte[] comprimidos = new byte[0];
+
+    /**
+     * @param out Flujo de salida del socket del cliente.
+     * @param canal Canal del socket para enviar ficheros con transferTo(), o null para copiarlos por el flujo.
+     * @param contarEnviados Recibe los bytes de cada transferTo() para las estadísticas del servidor.
+     */
+    public SalidaBinaria(DataOutputStream out, WritableByteChannel canal, LongConsumer contarEnviados) {
+        this.out = out;
+        this.canal = canal;
+        this.contarEnviados = contarEnviados;
+    }
+
+    @Override
+    public boolean admiteFicheros() {
+        return true;
+    }
+
+    @Override
+    public boolean activarCompresion(boolean activar) {
+        if (activar && deflater == null) {
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        } else if (!activar) {
+            cerrar();
+        }
+        return true;
+    }
+
+    /**
+     * Libera la memoria nativa del compresor, si se ha usado.
+     */
+    public void cerrar() {
+        if (deflater != null) {
+            deflater.end();
+            deflater = null;
+        }
+    }
+
+    @Override
+    public void enviarFichero(FileChannel fichero, long desde, long longitud) throws IOException {
+        // Primero sale lo acumulado y la cabecera, para que el fichero vaya justo detrás.
+        vaciar();
+        out.writeByte(TramaBinaria.ESTADO_FICHERO);
+        out.writeLong(longitud);
+
+        if (canal == null) {
+            copiarFichero(fichero, desde, longitud);
+            return;
+        }
+        out.flush();
+
+        long posicion = desde;
+        long fin = desde + longitud;
+        while (posicion < fin) {
+            long enviados = fichero.transferTo(posicion, fin - posicion, canal);
+            if (enviados <= 0 && posicion >= fichero.size()) {
+                throw new IOException("El fichero se ha acortado durante el envío");
+            }
+            posicion += enviados;
+            contarEnviados.accept(enviados);
+        }
+    }
+
+    /**
+     * Envío sin transferTo(): lee el fichero en un buffer de 64 KB y lo escribe en el flujo de salida.
+     */
+    private void copiarFichero(FileChannel fichero, long desde, long longitud) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(TAM_COPIA);
+        long posicion = desde;
+        long fin = desde + longitud;
+        while (posicion < fin) {
+            buffer.clear().limit((int) Math.min(TAM_COPIA, fin - posicion));
+            int leidos = fichero.read(buffer, posicion);
+            if (leidos < 0) {
+                throw new IOException("El fichero se ha acortado durante el envío");
+            }
+            out.write(buffer.array(), 0, leidos);
+            posicion += leidos;
+        }
+        out.flush();
+    }
+
+    @Override
+    protected void enviarParcial() {
+        // Los trozos intermedios van como tramas PARCIAL; el estado final se envía en la última.
+        escribirTrama(TramaBinaria.ESTADO_PARCIAL);
+    }
+
+    @Override
+    protected void enviarFinal(byte estado) {
+        escribirTrama(estado);
+    }
+
+    /**
+     * Escribe lo acumulado como una trama con el estado indicado.
+     * Los errores de escritura se lanzan como UncheckedIOException porque la interfaz no declara IOException.
+     */
+    private void escribirTrama(byte estado) {
+        try {
+            if (deflater != null && respuesta.size() >= TramaBinaria.UMBRAL_COMPRESION && escribirComprimida(estado)) {
+                return;
+            }
+            out.writeByte(estado);
+            out.writeInt(respuesta.size());
+            respuesta.writeTo(out);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Comprime lo acumulado y lo escribe como trama comprimida.
+     *
+     * @return false si comprimido no ocupa menos; entonces no se ha escrito nada.
+     */
+    private boolean escribirComprimida(byte estado) throws IOException {
+        byte[] original = respuesta.toByteArray();
+        deflater.reset();
+        deflater.setDictionary(TramaBinaria.DICCIONARIO);
+        deflater.setInput(original);
+        deflater.finish();
+
+        // Si no cabe en el tamaño del original, comprimir no merece la pena.
+        if (comprimidos.length < original.length) {
+            comprimidos = new byte[original.length];
+        }
+        int longitud = 0;
+        while (!deflater.finished() && longitud < original.length) {
+            longitud += deflater.deflate(comprimidos, longitud, original.length - longitud);
+        }
+        if (!deflater.finished() || longitud + 4 >= original.length) {
+            return false;
+        }
+
+        out.writeByte(estado | TramaBinaria.FLAG_COMPRIMIDA);
+        out.writeInt(longitud + 4);
+        out.writeInt(original.length);
+        out.write(comprimidos, 0, longitud);
+        out.flush();
+        return true;
+    }
+}
@@ -0,0 +1,82 @@
+package unidad03.ejercicios.ejercicio01;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Destino donde el Protocolo escribe las respuestas a los clientes.
+ * Cada servidor (bloqueante o NIO) tiene su propia implementación, así la lógica de los comandos
+ * se escribe una sola vez y no depende de cómo se envían los datos.
+ *
+ * @author Miguel Angel Ramírez
+ */
+public interface SalidaRespuesta {
+
+    /**
+     * Añade una línea a la respuesta actual.
+     * @param linea Texto de la línea, sin salto de línea final.
+     */
+    void escribirLinea(String linea);
+
+    /**
+     * Añade a la respuesta un bloque de líneas ya codificado en UTF-8 (cada línea terminada en '\n').
+     * Sirve para enviar respuestas preparadas de antemano sin volver a construirlas.
+     * @param bloque Los bytes a enviar tal cual.
+     */
+    void escribirBloque(byte[] bloque);
+
+    /**
+     * Indica si esta salida puede enviar el contenido de ficheros (#get).
+     * Solo el modo binario puede, porque el fichero va con su longitud delante y sin convertir a texto.
+     * @return true si se puede usar enviarFichero().
+     */
+    default boolean admiteFicheros() {
+        return false;
+    }
+
+    /**
+     * Envía un trozo de un fichero como parte de la respuesta actual.
+     * Solo se puede llamar si admiteFicheros() devuelve true (Protocolo lo comprueba antes de #get).
+     * @param fichero Canal del fichero abierto para lectura.
+     * @param desde Posición del primer byte a enviar.
+     * @param longitud Número de bytes a enviar.
+     * @throws IOException Si falla la lectura del fichero o la escritura en el socket.
+     * @throws IllegalStateException Si esta salida no admite ficheros.
+     */
+    default void enviarFichero(FileChannel fichero, long desde, long longitud) throws IOException {
+        throw new IllegalStateException("Esta salida no admite el envío de ficheros (ver admiteFicheros())");
+    }
+
+    /**
+     * Activa o desactiva la compresión de las respuestas grandes (#comp).
+     * Solo el modo binario puede, porque el texto comprimido ya no se puede separar por líneas.
+     * @param activar true para comprimir las siguientes respuestas.
+     * @return false si esta salida no admite compresión.
+     */
+    default boolean activarCompresion(boolean activar) {
+        return false;
+    }
+
+    /**
+     * Añade una línea de error ("Error: ...") a la respuesta actual.
+     * @param mensaje Descripción del error.
+     */
+    void error(String mensaje);
+
+    /**
+     * Envía ya lo acumulado de la respuesta actual, que todavía no ha terminado.
+     * Lo usan las respuestas largas que se generan por partes para no tenerlas enteras en memoria.
+     */
+    void vaciar();
+
+    /**
+     * Indica que la respuesta ha terminado (en modo texto envía FIN_RESPUESTA).
+     */
+    void finRespuesta();
+
+    /**
+     * Envía la respuesta al comando #fin. No lleva FIN_RESPUESTA porque después se cierra la conexión.
+     * @param mensaje El mensaje de despedida.
+     */
+    void cierre(String mensaje);
+}
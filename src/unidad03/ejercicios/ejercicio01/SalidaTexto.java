@@ -0,0 +1,66 @@
+package unidad03.ejercicios.ejercicio01;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+
+/**
+ * Salida de las respuestas en modo texto sobre un PrintWriter.
+ * Cada línea se envía con println y el final de respuesta con la línea FIN_RESPUESTA.
+ *
+ * Con un PrintWriter con autoflush cada línea es una escritura en el socket; se mantiene para poder
+ * compararla con SalidaTextoAgrupada (ver BenchmarkListado).
+ *
+ * @author Miguel Angel Ramírez
+ */
+public class SalidaTexto implements SalidaRespuesta {
+    private final PrintWriter printWriter;
+    private final OutputStream out;
+
+    /**
+     * @param printWriter El PrintWriter asociado al socket del cliente.
+     * @param out El flujo de salida del socket, para los bloques ya codificados.
+     */
+    public SalidaTexto(PrintWriter printWriter, OutputStream out) {
+        this.printWriter = printWriter;
+        this.out = out;
+    }
+
+    @Override
+    public void escribirLinea(String linea) {
+        printWriter.println(linea);
+    }
+
+    @Override
+    public void escribirBloque(byte[] bloque) {
+        try {
+            // Primero se vacía el PrintWriter para no desordenar lo que ya tuviera pendiente.
+            printWriter.flush();
+            out.write(bloque);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void vaciar() {
+        printWriter.flush();
+    }
+
+    @Override
+    public void error(String mensaje) {
+        printWriter.println("Error: " + mensaje);
+    }
+
+    @Override
+    public void finRespuesta() {
+        printWriter.println(Protocolo.FIN_RESPUESTA);
+    }
+
+    @Override
+    public void cierre(String mensaje) {
+        printWriter.println(mensaje);
+    }
+}
@@ -0,0 +1,48 @@
+package unidad03.ejercicios.ejercicio01;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Salida de las respuestas en modo texto que envía cada respuesta completa, incluida la línea
+ * FIN_RESPUESTA, con una sola escritura en el socket.
+ *
+ * @author Miguel Angel Ramírez
+ */
+public class SalidaTextoAgrupada extends SalidaAgrupada {
+    private static final byte[] FIN = (Protocolo.FIN_RESPUESTA + "\n").getBytes(StandardCharsets.UTF_8);
+
+    private final OutputStream out;
+
+    /**
+     * @param out Flujo de salida del socket del cliente (sin buffer: cada write llega al socket).
+     */
+    public SalidaTextoAgrupada(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    protected void enviarParcial() {
+        escribir();
+    }
+
+    @Override
+    protected void enviarFinal(byte estado) {
+        // La respuesta a #fin no lleva FIN_RESPUESTA porque después se cierra la conexión.
+        if (estado != TramaBinaria.ESTADO_CIERRE) {
+            respuesta.writeBytes(FIN);
+        }
+        escribir();
+    }
+
+    private void escribir() {
+        try {
+            respuesta.writeTo(out);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,34 +1,85 @@
 package unidad03.ejercicios.ejercicio01;
 
 import java.io.*;
-import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.net.UnknownHostException;
+import java.net.SocketException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
 import java.util.Scanner;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Clase servidor que gestiona las conexiones entrantes de los clientes.
  * El servidor se encarga de procesar los comandos recibidos y enviar las respuestas correspondientes.
  *
+ * Tiene dos modos de funcionamiento:
+ *  - Un cliente: acepta una única conexión y la atiende hasta que envía #fin.
+ *  - Concurrente: sigue aceptando conexiones y atiende cada una en su propio hilo virtual,
+ *    con un límite de conexiones simultáneas.
+ *
  * @author Miguel Angel Ramírez
  */
 public class Servidor {
     private ServerSocket serverSocket;
-    private Socket clienteSocket;
-    private PrintWriter printWriter;
-    private BufferedReader reader;
     private String directorio;
-    private final int PUERTO = 54321;
+    private Protocolo protocolo;
+    private final int PUERTO;
+    private final int MAX_CONEXIONES;
+
+    private ExecutorService ejecutor;
+    private Semaphore plazasLibres;
+    // Máximo de comandos lentos (#list, #tree) ejecutándose a la vez entre todas las conexiones.
+    private final Semaphore plazasLentas = new Semaphore(2 * Runtime.getRuntime().availableProcessors());
+    private final Set<ConexionCliente> conexionesActivas = ConcurrentHashMap.newKeySet();
+    private volatile boolean activo;
+
+    // Opciones de escritura: respuesta agrupada en una sola escritura y TCP_NODELAY.
+    private boolean escrituraAgrupada = true;
+    private boolean tcpNoDelay = true;
+    private boolean envioDirecto = true;
+    private final LongAdder escrituras = new LongAdder();
+    private final LongAdder bytesEnviados = new LongAdder();
+    private final LongAdder bytesRecibidos = new LongAdder();
+    private final EstadisticasServidor estadisticas =
+            new EstadisticasServidor(conexionesActivas::size, bytesEnviados::sum, bytesRecibidos::sum);
+
+    // Mensajes de las conexiones (uno por petición recibida): asíncronos y como mucho 200 por segundo.
+    static final LogAsincrono LOG = new LogAsincrono("Log-Servidor", 200);
 
-    private static final String FIN_RESPUESTA = "--- FIN RESPUESTA ---";
+    private static final long ESPERA_CIERRE_SEGUNDOS = 10;
 
-    private static final String CMD_FIN = "#fin";
-    private static final String CMD_INFO = "#info";
-    private static final String CMD_LIST = "#list";
+    /**
+     * Construye el servidor con el puerto y el límite de conexiones por defecto.
+     * El directorio se solicita por consola al llamar a start().
+     */
+    public Servidor() {
+        this(null, 54321, 10_000);
+    }
+
+    /**
+     * Construye el servidor con una configuración concreta.
+     *
+     * @param directorio Directorio que se lista con #list (si es null se pregunta por consola).
+     * @param puerto Puerto en el que escucha el servidor.
+     * @param maxConexiones Número máximo de clientes atendidos a la vez en modo concurrente.
+     */
+    public Servidor(String directorio, int puerto, int maxConexiones) {
+        this.directorio = directorio;
+        this.PUERTO = puerto;
+        this.MAX_CONEXIONES = maxConexiones;
+    }
 
     /**
      * Inicia el servidor, espera conexiones de clientes y procesa los mensajes recibidos.
+     * Pregunta por consola el directorio y el modo de funcionamiento.
      */
     public void start(){
         Scanner sc = new Scanner(System.in);
@@ -37,125 +88,320 @@ public class Servidor {
         directorio = sc.nextLine();
         System.out.println("-> Servidor: Directorio: " + directorio);
 
+        System.out.print("-> Servidor: ¿Modo concurrente? (s/n): ");
+        boolean concurrente = sc.nextLine().trim().equalsIgnoreCase("s");
+
+        if (concurrente){
+            // Con Ctrl+C se detiene el servidor terminando las peticiones en curso.
+            Runtime.getRuntime().addShutdownHook(new Thread(this::detener, "Cierre-Servidor"));
+            atenderConcurrente();
+        } else {
+            atenderUnCliente();
+        }
+    }
+
+    /**
+     * Acepta una única conexión y la atiende en el hilo actual hasta que el cliente envía #fin.
+     */
+    public void atenderUnCliente(){
+        protocolo = new Protocolo(directorio, PUERTO, estadisticas);
+        estadisticas.registrarJmx("Servidor", PUERTO);
+        activo = true;
         try{
             // Crea el socket del servidor en el puerto especificado.
-            serverSocket = new ServerSocket(PUERTO);
+            serverSocket = abrirServerSocket();
             System.out.println("-> Servidor: Esperando conexión en el puerto " + PUERTO + ". ");
 
-            // Espera a que un cliente se conecte.
-            clienteSocket = serverSocket.accept();
-            System.out.println("-> Servidor: Cliente conectado desde " + clienteSocket.getInetAddress().getHostAddress());
+            // Espera a que un cliente se conecte y lo atiende.
+            Socket clienteSocket = serverSocket.accept();
+            ConexionCliente conexion = new ConexionCliente(this, clienteSocket, protocolo);
+            conexionesActivas.add(conexion);
+            conexion.run();
+        } catch (IOException e){
+            System.err.println("-> Servidor: Error en la conexión: " + e.getMessage());
+        } finally {
+            activo = false;
+            cerrarServerSocket();
+            protocolo.cerrar();
+            estadisticas.quitarJmx();
+        }
+    }
 
-            // Configura la entrada y salida para la comunicación con el cliente.
-            printWriter = new PrintWriter(clienteSocket.getOutputStream(), true);
-            reader = new BufferedReader(new InputStreamReader(clienteSocket.getInputStream()));
+    /**
+     * Bucle de aceptación del modo concurrente.
+     * Cada conexión aceptada se atiende en su propio hilo virtual, de modo que un cliente lento
+     * o inactivo no bloquea al resto. Si se alcanza MAX_CONEXIONES el cliente recibe un error
+     * y se cierra su conexión.
+     */
+    public void atenderConcurrente(){
+        ejecutor = Executors.newVirtualThreadPerTaskExecutor();
+        plazasLibres = new Semaphore(MAX_CONEXIONES);
+        protocolo = new Protocolo(directorio, PUERTO, estadisticas);
+        estadisticas.registrarJmx("Servidor", PUERTO);
+        activo = true;
 
-            // Bucle principal para recibir y procesar mensajes del cliente.
-            String mensaje;
-            // Lee mensajes hasta que el cliente envíe el comando de fin.
-            while ((mensaje = reader.readLine()) != null){
-                System.out.println("-> Servidor (Recibido): " + mensaje);
+        try{
+            serverSocket = abrirServerSocket();
+            System.out.println("-> Servidor: Esperando conexiones en el puerto " + PUERTO
+                    + " (máximo " + MAX_CONEXIONES + " clientes).");
 
-                if (mensaje.startsWith("#")){
-                    // Si empieza por #, es un comando.
-                    if (procesarComando(mensaje)){
-                        break; // Sale del bucle si es el comando de fin.
-                    }
-                } else {
-                    // Si no es un comando, responde con mensaje normal.
-                    printWriter.println("Mensaje recibido correctamente.");
-                    printWriter.println(FIN_RESPUESTA);
+            while (activo){
+                Socket clienteSocket = serverSocket.accept();
+
+                if (!plazasLibres.tryAcquire()){
+                    rechazar(clienteSocket);
+                    continue;
                 }
+
+                ConexionCliente conexion = new ConexionCliente(this, clienteSocket, protocolo);
+                conexionesActivas.add(conexion);
+                ejecutor.execute(conexion);
+            }
+        } catch (SocketException | ClosedChannelException e){
+            // accept() lanza SocketException (o, al venir de un ServerSocketChannel, AsynchronousCloseException)
+            // cuando detener() cierra el ServerSocket.
+            if (activo){
+                System.err.println("-> Servidor: Error en la conexión: " + e.getMessage());
             }
         } catch (IOException e){
             System.err.println("-> Servidor: Error en la conexión: " + e.getMessage());
         } finally {
-            // Cierra todos los recursos.
+            cerrarServerSocket();
+        }
+    }
+
+    /**
+     * Detiene el servidor de forma ordenada:
+     *  1. Deja de aceptar conexiones nuevas.
+     *  2. Cierra la entrada de cada conexión, para que termine la petición en curso y salga.
+     *  3. Espera a que terminen las conexiones y, si tardan demasiado, las cierra a la fuerza.
+     */
+    public void detener(){
+        if (!activo) return;
+        activo = false;
+        System.out.println("-> Servidor: Deteniendo servidor. Conexiones activas: " + conexionesActivas.size());
+
+        cerrarServerSocket();
+        for (ConexionCliente conexion : conexionesActivas){
+            conexion.finalizarLectura();
+        }
+
+        if (ejecutor != null){
+            ejecutor.shutdown();
             try {
-                if (printWriter != null) printWriter.close();
-                if (reader != null) reader.close();
-                if (clienteSocket != null) clienteSocket.close();
-                if (serverSocket != null) serverSocket.close();
-                System.out.println("-> Servidor: Conexión cerrada.");
-            } catch (IOException e) {
-                System.err.println("-> Servidor: Error al cerrar los recursos.");
+                if (!ejecutor.awaitTermination(ESPERA_CIERRE_SEGUNDOS, TimeUnit.SECONDS)){
+                    System.err.println("-> Servidor: Forzando el cierre de " + conexionesActivas.size() + " conexiones.");
+                    for (ConexionCliente conexion : conexionesActivas){
+                        conexion.cerrar();
+                    }
+                    ejecutor.shutdownNow();
+                }
+            } catch (InterruptedException e) {
+                ejecutor.shutdownNow();
+                Thread.currentThread().interrupt();
             }
         }
+        protocolo.cerrar();
+        estadisticas.quitarJmx();
+        System.out.println("-> Servidor: Servidor detenido.");
     }
 
     /**
-     * Procesa los comandos recibidos del cliente.
-     * @param comando El comando recibido. (ej. #fin, #info, #list)
-     * @return true si el comando es #fin y se debe cerrar la conexión, false en caso contrario.
+     * Indica si el servidor sigue en marcha.
+     *
+     * @return true mientras no se haya llamado a detener().
      */
-    private boolean procesarComando(String comando){
-        String respuesta;
+    public boolean isActivo(){
+        return activo;
+    }
 
-        switch (comando.toLowerCase()){
-            case CMD_FIN:
-                respuesta = "Fin: Cerrando conexión";
-                printWriter.println(respuesta);
-                return true; // Indica que se debe cerrar la conexión.
+    /**
+     * Devuelve el número de clientes conectados en este momento.
+     *
+     * @return Número de conexiones activas.
+     */
+    public int getConexionesActivas(){
+        return conexionesActivas.size();
+    }
 
-            case CMD_INFO:
-                try{
-                    // Obtiene el nombre del host local.
-                    String host = InetAddress.getLocalHost().getHostName();
-                    respuesta = "Info: Host: " + host + ". Puerto: " + PUERTO;
-                } catch (UnknownHostException e) {
-                    respuesta = "Info: Puerto: " + PUERTO + " Host no disponible.";
-                }
+    /**
+     * Elige cómo se escriben las respuestas en modo texto.
+     * Debe llamarse antes de empezar a atender clientes.
+     *
+     * @param escrituraAgrupada true para enviar cada respuesta con una sola escritura,
+     *                          false para el PrintWriter con autoflush (una escritura por línea).
+     */
+    public void setEscrituraAgrupada(boolean escrituraAgrupada){
+        this.escrituraAgrupada = escrituraAgrupada;
+    }
 
-                printWriter.println(respuesta); // Envía la respuesta al cliente.
-                printWriter.println(FIN_RESPUESTA); // Indica el fin de la respuesta.
-                break;
+    /**
+     * @return true si las respuestas en modo texto se envían con una sola escritura.
+     */
+    public boolean isEscrituraAgrupada(){
+        return escrituraAgrupada;
+    }
 
-            case CMD_LIST:
-                // Lista los ficheros del directorio configurado.
-                listarFicheros(this.directorio);
-                break;
+    /**
+     * Activa o desactiva TCP_NODELAY (algoritmo de Nagle) en los sockets de los clientes.
+     * Con las respuestas agrupadas no hay segmentos pequeños que juntar, así que conviene activarlo
+     * para no esperar al ACK retardado del cliente. Java no ofrece TCP_CORK; agrupar la respuesta
+     * en memoria consigue el mismo efecto.
+     *
+     * @param tcpNoDelay true para enviar sin esperar.
+     */
+    public void setTcpNoDelay(boolean tcpNoDelay){
+        this.tcpNoDelay = tcpNoDelay;
+    }
 
-            default:
-                // Comando no reconocido.
-                printWriter.println("Error: Comando no reconocido (" + comando + ")" );
-                printWriter.println(FIN_RESPUESTA);
-        }
-        return false;
+    /**
+     * @return true si los sockets de los clientes usan TCP_NODELAY.
+     */
+    public boolean isTcpNoDelay(){
+        return tcpNoDelay;
+    }
+
+    /**
+     * Elige cómo se envían los ficheros de #get: con FileChannel.transferTo() (sendfile, sin copias en Java)
+     * o copiándolos al socket por trozos de 64 KB con un buffer. La copia solo sirve para comparar.
+     *
+     * @param envioDirecto true para usar transferTo().
+     */
+    public void setEnvioDirecto(boolean envioDirecto){
+        this.envioDirecto = envioDirecto;
+    }
+
+    /**
+     * @return true si los ficheros de #get se envían con transferTo().
+     */
+    public boolean isEnvioDirecto(){
+        return envioDirecto;
+    }
+
+    /**
+     * @return Número de escrituras hechas en los sockets de los clientes (cada una es una llamada al sistema).
+     */
+    public long getEscrituras(){
+        return escrituras.sum();
+    }
+
+    /**
+     * @return Número de bytes enviados a los clientes.
+     */
+    public long getBytesEnviados(){
+        return bytesEnviados.sum();
+    }
+
+    /**
+     * Envuelve el flujo de salida de un socket para contar sus escrituras y bytes.
+     *
+     * @param out Flujo de salida del socket.
+     * @return El flujo que cuenta.
+     */
+    OutputStream contarEscrituras(OutputStream out){
+        return new FlujoContador(out, escrituras, bytesEnviados);
+    }
+
+    /**
+     * Cuenta lo que se ha enviado con transferTo() directamente al canal del socket, sin pasar por FlujoContador.
+     *
+     * @param bytes Bytes enviados en una llamada a transferTo().
+     */
+    void contarEnvioDirecto(long bytes){
+        escrituras.increment();
+        bytesEnviados.add(bytes);
     }
 
     /**
-     * Lista los ficheros y directorios en la ruta especificada.
+     * Envuelve el flujo de entrada de un socket para contar los bytes recibidos.
      *
-     * @param ruta La ruta del directorio a listar.
+     * @param in Flujo de entrada del socket.
+     * @return El flujo que cuenta.
+     */
+    InputStream contarLecturas(InputStream in){
+        return new FlujoEntradaContador(in, bytesRecibidos);
+    }
+
+    /**
+     * @return Las estadísticas del servidor (también publicadas por JMX mientras está activo).
      */
-    private void listarFicheros(String ruta){
-        File directorio = new File(ruta);
+    public EstadisticasServidor getEstadisticas(){
+        return estadisticas;
+    }
 
-        // Verifica que la ruta es un directorio válido.
-        if (!directorio.exists() || !directorio.isDirectory()){
-            printWriter.println("Error: La ruta -> " + ruta + ". No es un directorio valido o no existe");
-            printWriter.println(FIN_RESPUESTA);
-            return;
+    /**
+     * Procesa un mensaje. Los comandos lentos (ver Comando.esLento()) esperan a que haya una plaza libre
+     * en plazasLentas, para que muchos #list o #tree a la vez no se queden con todos los hilos del sistema
+     * y el disco mientras los comandos rápidos del resto de conexiones siguen sin esperar.
+     *
+     * @param mensaje La línea recibida.
+     * @param salida Donde se escribe la respuesta.
+     * @return true si el mensaje es #fin y se debe cerrar la conexión.
+     */
+    boolean procesar(String mensaje, SalidaRespuesta salida){
+        if (!protocolo.esLento(mensaje)){
+            return protocolo.procesar(mensaje, salida);
+        }
+        plazasLentas.acquireUninterruptibly();
+        try {
+            return protocolo.procesar(mensaje, salida);
+        } finally {
+            plazasLentas.release();
         }
+    }
 
-        // Obtiene la lista de ficheros y directorios.
-        File[] ficheros = directorio.listFiles();
-        if (ficheros == null || ficheros.length == 0){
-            printWriter.println("Lista: Directorio vacío o acceso denegado.");
-            printWriter.println(FIN_RESPUESTA);
-            return;
+    /**
+     * Llamado por cada conexión al terminar, para liberar su plaza.
+     *
+     * @param conexion La conexión que ha terminado.
+     */
+    void conexionTerminada(ConexionCliente conexion){
+        if (conexionesActivas.remove(conexion) && plazasLibres != null){
+            plazasLibres.release();
         }
+    }
 
-        // Envía la lista al cliente.
-        printWriter.println("Lista: Contenido de " + ruta + ": ");
+    /**
+     * Abre el puerto del servidor a través de un ServerSocketChannel.
+     * Así los sockets aceptados tienen canal (getChannel() no es null) y #get puede enviar ficheros
+     * con FileChannel.transferTo(); por lo demás se usan igual que los de un ServerSocket normal.
+     *
+     * @return El ServerSocket ya escuchando en PUERTO.
+     * @throws IOException Si no se puede abrir el puerto.
+     */
+    private ServerSocket abrirServerSocket() throws IOException {
+        ServerSocket socket = ServerSocketChannel.open().socket();
+        socket.bind(new InetSocketAddress(PUERTO));
+        return socket;
+    }
 
-        for (File f : ficheros){
-            String tipo = f.isDirectory() ? "D" : "F";
-            printWriter.println(tipo + " " + f.getName());
+    /**
+     * Responde con un error a un cliente cuando se ha alcanzado el límite de conexiones y lo desconecta.
+     *
+     * @param clienteSocket El socket del cliente rechazado.
+     */
+    private void rechazar(Socket clienteSocket){
+        try (Socket s = clienteSocket;
+             PrintWriter pw = new PrintWriter(s.getOutputStream(), true)) {
+            pw.println("Error: Servidor lleno (" + MAX_CONEXIONES + " conexiones). Inténtalo más tarde.");
+            pw.println(Protocolo.FIN_RESPUESTA);
+        } catch (IOException e) {
+            // El cliente ya se ha ido, no hay nada más que hacer.
         }
+    }
 
-        // Indica el fin de la respuesta.
-        printWriter.println(FIN_RESPUESTA);
+    /**
+     * Cierra el ServerSocket si está abierto.
+     */
+    private void cerrarServerSocket(){
+        try {
+            if (serverSocket != null && !serverSocket.isClosed()){
+                serverSocket.close();
+                System.out.println("-> Servidor: Conexión cerrada.");
+            }
+        } catch (IOException e) {
+            System.err.println("-> Servidor: Error al cerrar los recursos.");
+        }
     }
 
     /**
@@ -164,4 +410,4 @@ public class Servidor {
     public static void main(String[] args) {
         new Servidor().start();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,539 @@
+package unidad03.ejercicios.ejercicio01;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Scanner;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Servidor no bloqueante basado en ServerSocketChannel y Selector.
+ * Entiende el mismo protocolo de líneas que Servidor (#fin, #info, #list, mensajes normales y FIN_RESPUESTA),
+ * pero en lugar de un hilo por cliente usa unos pocos hilos "selector", cada uno vigilando miles de conexiones.
+ *
+ * La memoria por conexión es pequeña y acotada:
+ *  - Cada hilo selector tiene un único ByteBuffer directo de lectura que comparten todas sus conexiones.
+ *  - Una conexión solo guarda bytes propios cuando una línea llega partida entre dos lecturas (máximo MAX_LINEA).
+ *  - Mientras una conexión tiene respuestas pendientes de enviar no se leen más peticiones suyas.
+ *  - Si una sola lectura trae tantas peticiones que sus respuestas pasan de MAX_PENDIENTES bytes, o trae un
+ *    comando lento, se deja de atender líneas y el resto de la lectura (máximo TAM_LECTURA) se guarda hasta
+ *    que se hayan enviado. Así cada conexión tiene como mucho un comando lento en los trabajadores.
+ *
+ * Los comandos lentos (#list, #tree) no se ejecutan en el hilo selector, que dejaría esperando a todas sus
+ * conexiones, sino en un grupo de hilos trabajadores. En la cola de la conexión se deja una marca en su lugar
+ * para que las respuestas salgan en el mismo orden que las peticiones.
+ *
+ * @author Miguel Angel Ramírez
+ */
+public class ServidorNIO {
+    private final String directorio;
+    private final int PUERTO;
+    private final int NUM_SELECTORES;
+
+    private Protocolo protocolo;
+    private ServerSocketChannel serverChannel;
+    private BucleSelector[] bucles;
+    private ExecutorService trabajadores;
+    private final AtomicInteger conexionesActivas = new AtomicInteger();
+    private final LongAdder bytesEnviados = new LongAdder();
+    private final LongAdder bytesRecibidos = new LongAdder();
+    private final EstadisticasServidor estadisticas =
+            new EstadisticasServidor(conexionesActivas::get, bytesEnviados::sum, bytesRecibidos::sum);
+    private volatile boolean activo;
+
+    private static final int MAX_LINEA = 8 * 1024;
+    private static final int TAM_LECTURA = 64 * 1024;
+    // Bytes de respuestas en cola a partir de los que se dejan de atender las líneas ya leídas.
+    private static final int MAX_PENDIENTES = 64 * 1024;
+    private static final int BACKLOG = 1024;
+    // Marca en la cola de pendientes del lugar de una respuesta que se está generando en un trabajador.
+    private static final ByteBuffer MARCA_DIFERIDA = ByteBuffer.allocate(0);
+
+    /**
+     * @param directorio El directorio que se lista con #list.
+     * @param puerto Puerto en el que escucha el servidor.
+     * @param numSelectores Número de hilos selector que reparten las conexiones.
+     */
+    public ServidorNIO(String directorio, int puerto, int numSelectores) {
+        this.directorio = directorio;
+        this.PUERTO = puerto;
+        this.NUM_SELECTORES = numSelectores;
+    }
+
+    /**
+     * Abre el puerto y arranca los hilos selector. El método vuelve enseguida; el servidor sigue
+     * funcionando en sus propios hilos hasta que se llama a detener().
+     *
+     * @throws IOException Si no se puede abrir el puerto.
+     */
+    public void iniciar() throws IOException {
+        protocolo = new Protocolo(directorio, PUERTO, estadisticas);
+        estadisticas.registrarJmx("ServidorNIO", PUERTO);
+        activo = true;
+        AtomicInteger numTrabajador = new AtomicInteger();
+        trabajadores = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            Thread hilo = new Thread(r, "TrabajadorNIO-" + numTrabajador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(PUERTO), BACKLOG);
+        serverChannel.configureBlocking(false);
+
+        bucles = new BucleSelector[NUM_SELECTORES];
+        for (int i = 0; i < NUM_SELECTORES; i++) {
+            bucles[i] = new BucleSelector();
+        }
+        // El primer selector también se encarga de aceptar las conexiones nuevas.
+        serverChannel.register(bucles[0].selector, SelectionKey.OP_ACCEPT);
+
+        for (int i = 0; i < NUM_SELECTORES; i++) {
+            new Thread(bucles[i], "Selector-" + (i + 1)).start();
+        }
+        System.out.println("-> ServidorNIO: Esperando conexiones en el puerto " + PUERTO
+                + " con " + NUM_SELECTORES + " hilos selector.");
+    }
+
+    /**
+     * Detiene el servidor: deja de aceptar conexiones y cierra todas las existentes.
+     */
+    public void detener() {
+        if (!activo) return;
+        activo = false;
+        trabajadores.shutdownNow();
+        protocolo.cerrar();
+        estadisticas.quitarJmx();
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            System.err.println("-> ServidorNIO: Error al cerrar el puerto.");
+        }
+        for (BucleSelector bucle : bucles) {
+            bucle.selector.wakeup();
+        }
+        System.out.println("-> ServidorNIO: Servidor detenido.");
+    }
+
+    /**
+     * Devuelve el número de clientes conectados en este momento.
+     *
+     * @return Número de conexiones activas.
+     */
+    public int getConexionesActivas() {
+        return conexionesActivas.get();
+    }
+
+    /**
+     * @return Las estadísticas del servidor (también publicadas por JMX mientras está activo).
+     */
+    public EstadisticasServidor getEstadisticas() {
+        return estadisticas;
+    }
+
+    /**
+     * Estado de una conexión. Se guarda como "attachment" de su SelectionKey.
+     */
+    private static class EstadoConexion {
+        // Bytes de una línea que llegó incompleta; null mientras no haga falta.
+        private byte[] parcial;
+        private int longitudParcial;
+        // Respuestas ya codificadas que aún no se han podido escribir en el socket.
+        private final Deque<ByteBuffer> pendientes = new ArrayDeque<>();
+        private long bytesPendientes;
+        // Lo que quedaba de una lectura al llegar a MAX_PENDIENTES; null si no hay nada sin atender.
+        private ByteBuffer retenido;
+        // Respuestas de comandos lentos, en el orden de sus marcas en pendientes.
+        private final Queue<RespuestaDiferida> diferidas = new ArrayDeque<>();
+        private final SalidaNIO salida = new SalidaNIO(this, pendientes);
+        private boolean cerrarAlTerminar;
+
+        /**
+         * Guarda el trozo final de una lectura que no termina en salto de línea.
+         *
+         * @return false si la línea supera MAX_LINEA.
+         */
+        private boolean acumular(ByteBuffer origen, int desde, int longitud) {
+            if (longitudParcial + longitud > MAX_LINEA) return false;
+            if (parcial == null) parcial = new byte[Math.max(256, longitud)];
+            if (longitudParcial + longitud > parcial.length) {
+                byte[] mayor = new byte[Math.min(MAX_LINEA, Math.max(parcial.length * 2, longitudParcial + longitud))];
+                System.arraycopy(parcial, 0, mayor, 0, longitudParcial);
+                parcial = mayor;
+            }
+            origen.get(desde, parcial, longitudParcial, longitud);
+            longitudParcial += longitud;
+            return true;
+        }
+    }
+
+    /**
+     * Respuesta de un comando lento que se genera en un hilo trabajador.
+     * El trabajador solo toca sus buffers; el hilo selector los lee cuando ve terminada a true.
+     */
+    private static class RespuestaDiferida {
+        private final Deque<ByteBuffer> buffers = new ArrayDeque<>();
+        private final SalidaNIO salida;
+        private volatile boolean terminada;
+        private volatile boolean fallida;
+
+        private RespuestaDiferida(EstadoConexion estado) {
+            this.salida = new SalidaNIO(estado, buffers);
+        }
+    }
+
+    /**
+     * Salida de respuestas para una conexión NIO: agrupa las líneas de la respuesta y,
+     * al terminar, la deja codificada en una cola (la de pendientes de la conexión o la de una respuesta diferida).
+     */
+    private static class SalidaNIO extends SalidaAgrupada {
+        private static final byte[] FIN = (Protocolo.FIN_RESPUESTA + "\n").getBytes(StandardCharsets.UTF_8);
+
+        private final EstadoConexion estado;
+        private final Queue<ByteBuffer> destino;
+
+        private SalidaNIO(EstadoConexion estado, Queue<ByteBuffer> destino) {
+            this.estado = estado;
+            this.destino = destino;
+        }
+
+        @Override
+        protected void enviarParcial() {
+            encolar();
+        }
+
+        @Override
+        protected void enviarFinal(byte estadoRespuesta) {
+            if (estadoRespuesta == TramaBinaria.ESTADO_CIERRE) {
+                estado.cerrarAlTerminar = true;
+            } else {
+                respuesta.writeBytes(FIN);
+            }
+            encolar();
+        }
+
+        private void encolar() {
+            byte[] bytes = respuesta.toByteArray();
+            destino.add(ByteBuffer.wrap(bytes));
+            // Las diferidas se cuentan al pasar a pendientes, en el hilo selector.
+            if (destino == estado.pendientes) estado.bytesPendientes += bytes.length;
+        }
+    }
+
+    /**
+     * Hilo que atiende, con un único Selector, todas las conexiones que se le asignan.
+     */
+    private class BucleSelector implements Runnable {
+        private final Selector selector;
+        private final Queue<SocketChannel> nuevas = new ConcurrentLinkedQueue<>();
+        // Conexiones cuya respuesta diferida ha terminado un trabajador.
+        private final Queue<SelectionKey> terminadas = new ConcurrentLinkedQueue<>();
+        private final ByteBuffer lectura = ByteBuffer.allocateDirect(TAM_LECTURA);
+        private final byte[] linea = new byte[MAX_LINEA];
+        private int siguiente;
+
+        private BucleSelector() throws IOException {
+            this.selector = Selector.open();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (activo) {
+                    selector.select();
+                    registrarNuevas();
+                    atenderTerminadas();
+
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        try {
+                            if (!key.isValid()) continue;
+                            if (key.isAcceptable()) aceptar();
+                            else if (key.isReadable()) leer(key);
+                            else if (key.isWritable()) escribir(key);
+                        } catch (IOException | RuntimeException e) {
+                            // Solo se pierde esta conexión; el resto del selector sigue atendiéndose.
+                            cerrar(key);
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("-> ServidorNIO: Error en el selector: " + e.getMessage());
+            } finally {
+                for (SelectionKey key : selector.keys()) {
+                    cerrar(key);
+                }
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    System.err.println("-> ServidorNIO: Error al cerrar el selector.");
+                }
+            }
+        }
+
+        /**
+         * Acepta todas las conexiones pendientes y las reparte entre los selectores (round robin).
+         */
+        private void aceptar() throws IOException {
+            SocketChannel canal;
+            while ((canal = serverChannel.accept()) != null) {
+                canal.configureBlocking(false);
+                canal.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                conexionesActivas.incrementAndGet();
+
+                BucleSelector destino = bucles[siguiente];
+                siguiente = (siguiente + 1) % bucles.length;
+                destino.nuevas.add(canal);
+                if (destino != this) destino.selector.wakeup();
+            }
+            registrarNuevas();
+        }
+
+        /**
+         * Registra en este selector los canales que le ha pasado el hilo aceptador.
+         */
+        private void registrarNuevas() {
+            SocketChannel canal;
+            while ((canal = nuevas.poll()) != null) {
+                try {
+                    canal.register(selector, SelectionKey.OP_READ, new EstadoConexion());
+                } catch (ClosedChannelException e) {
+                    conexionesActivas.decrementAndGet();
+                }
+            }
+        }
+
+        /**
+         * Lee lo que haya disponible, separa las líneas completas y procesa cada una.
+         * Lo que quede sin salto de línea se guarda hasta la siguiente lectura.
+         */
+        private void leer(SelectionKey key) throws IOException {
+            SocketChannel canal = (SocketChannel) key.channel();
+            EstadoConexion estado = (EstadoConexion) key.attachment();
+
+            lectura.clear();
+            int leidos = canal.read(lectura);
+            if (leidos == -1) {
+                cerrar(key);
+                return;
+            }
+            bytesRecibidos.add(leidos);
+            lectura.flip();
+
+            if (procesarLineas(key, estado, lectura)) {
+                escribir(key);
+            }
+        }
+
+        /**
+         * Procesa las líneas completas de origen, desde su posición hasta su límite.
+         * Si las respuestas en cola pasan de MAX_PENDIENTES, o se ha mandado un comando lento a los trabajadores,
+         * para y guarda lo que falta en estado.retenido, que se procesa cuando escribir() haya vaciado la cola.
+         *
+         * @return false si se ha cerrado la conexión.
+         */
+        private boolean procesarLineas(SelectionKey key, EstadoConexion estado, ByteBuffer origen) {
+            int inicio = origen.position();
+            int limite = origen.limit();
+            for (int i = inicio; i < limite && !estado.cerrarAlTerminar; i++) {
+                if (origen.get(i) != '\n') continue;
+
+                String mensaje = decodificar(estado, origen, inicio, i - inicio);
+                inicio = i + 1;
+                if (mensaje == null) {
+                    cerrar(key);
+                    return false;
+                }
+                if (protocolo.esLento(mensaje)) {
+                    diferir(key, estado, mensaje);
+                } else {
+                    protocolo.procesar(mensaje, estado.salida);
+                }
+                if ((estado.bytesPendientes > MAX_PENDIENTES || !estado.diferidas.isEmpty()) && inicio < limite) {
+                    if (origen == estado.retenido) {
+                        origen.position(inicio);
+                    } else {
+                        // lectura es de todas las conexiones del selector: hay que copiar lo que falta.
+                        estado.retenido = ByteBuffer.allocate(limite - inicio).put(origen.slice(inicio, limite - inicio)).flip();
+                    }
+                    return true;
+                }
+            }
+            if (origen == estado.retenido) estado.retenido = null;
+
+            if (!estado.cerrarAlTerminar && inicio < limite && !estado.acumular(origen, inicio, limite - inicio)) {
+                cerrar(key); // Línea demasiado larga.
+                return false;
+            }
+            return true;
+        }
+
+        /**
+         * Manda un comando lento a un hilo trabajador y deja su marca en la cola de pendientes.
+         * Al terminar, el trabajador avisa a este selector para que envíe la respuesta.
+         */
+        private void diferir(SelectionKey key, EstadoConexion estado, String mensaje) {
+            RespuestaDiferida diferida = new RespuestaDiferida(estado);
+            estado.pendientes.add(MARCA_DIFERIDA);
+            estado.diferidas.add(diferida);
+            trabajadores.execute(() -> {
+                try {
+                    protocolo.procesar(mensaje, diferida.salida);
+                } catch (RuntimeException e) {
+                    // La respuesta ha quedado a medias: se cerrará la conexión.
+                    diferida.fallida = true;
+                } finally {
+                    diferida.terminada = true;
+                    terminadas.add(key);
+                    selector.wakeup();
+                }
+            });
+        }
+
+        /**
+         * Envía las respuestas diferidas que han terminado los trabajadores.
+         */
+        private void atenderTerminadas() {
+            SelectionKey key;
+            while ((key = terminadas.poll()) != null) {
+                if (!key.isValid()) continue;
+                try {
+                    escribir(key);
+                } catch (IOException | RuntimeException e) {
+                    cerrar(key);
+                }
+            }
+        }
+
+        /**
+         * Convierte en String una línea completa, uniendo el trozo guardado de lecturas anteriores si lo hay.
+         *
+         * @return La línea sin '\r' ni '\n', o null si es demasiado larga.
+         */
+        private String decodificar(EstadoConexion estado, ByteBuffer origen, int desde, int longitud) {
+            byte[] bytes;
+            int total;
+            if (estado.longitudParcial > 0) {
+                if (!estado.acumular(origen, desde, longitud)) return null;
+                bytes = estado.parcial;
+                total = estado.longitudParcial;
+                estado.longitudParcial = 0;
+            } else {
+                if (longitud > MAX_LINEA) return null;
+                origen.get(desde, linea, 0, longitud);
+                bytes = linea;
+                total = longitud;
+            }
+            if (total > 0 && bytes[total - 1] == '\r') total--;
+            return new String(bytes, 0, total, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Escribe todas las respuestas pendientes que admita el socket.
+         * Si no caben todas se espera a OP_WRITE y, mientras tanto, se deja de leer de este cliente.
+         * Con la cola vacía se siguen atendiendo las líneas retenidas, y solo sin ellas se vuelve a leer.
+         */
+        private void escribir(SelectionKey key) throws IOException {
+            SocketChannel canal = (SocketChannel) key.channel();
+            EstadoConexion estado = (EstadoConexion) key.attachment();
+
+            while (true) {
+                if (!vaciarPendientes(key, canal, estado)) return;
+                if (estado.cerrarAlTerminar) {
+                    cerrar(key);
+                    return;
+                }
+                if (estado.retenido == null) {
+                    key.interestOps(SelectionKey.OP_READ);
+                    return;
+                }
+                if (!procesarLineas(key, estado, estado.retenido)) return;
+            }
+        }
+
+        /**
+         * @return true si se ha enviado toda la cola; false si hay que esperar al socket o a un trabajador,
+         *         o si se ha cerrado la conexión.
+         */
+        private boolean vaciarPendientes(SelectionKey key, SocketChannel canal, EstadoConexion estado) throws IOException {
+            while (!estado.pendientes.isEmpty()) {
+                ByteBuffer buffer = estado.pendientes.peek();
+                if (buffer == MARCA_DIFERIDA) {
+                    RespuestaDiferida diferida = estado.diferidas.peek();
+                    if (!diferida.terminada) {
+                        // Hasta que termine no se envía nada más ni se leen más peticiones.
+                        key.interestOps(0);
+                        return false;
+                    }
+                    estado.pendientes.poll();
+                    estado.diferidas.poll();
+                    if (diferida.fallida) {
+                        cerrar(key);
+                        return false;
+                    }
+                    // Sus buffers pasan al principio de la cola, en su orden.
+                    Iterator<ByteBuffer> it = diferida.buffers.descendingIterator();
+                    while (it.hasNext()) {
+                        ByteBuffer trozo = it.next();
+                        estado.bytesPendientes += trozo.remaining();
+                        estado.pendientes.addFirst(trozo);
+                    }
+                    continue;
+                }
+                int escritos = canal.write(buffer);
+                bytesEnviados.add(escritos);
+                estado.bytesPendientes -= escritos;
+                if (buffer.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    return false;
+                }
+                estado.pendientes.poll();
+            }
+            return true;
+        }
+
+        /**
+         * Cierra el canal de una conexión y la da de baja del selector.
+         */
+        private void cerrar(SelectionKey key) {
+            key.cancel();
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+                // El canal ya estaba cerrado.
+            }
+            if (key.attachment() != null) {
+                key.attach(null);
+                conexionesActivas.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Método principal para iniciar el servidor NIO.
+     */
+    public static void main(String[] args) throws IOException {
+        Scanner sc = new Scanner(System.in);
+        System.out.print("-> ServidorNIO: Especifica el directorio: ");
+        String directorio = sc.nextLine();
+        System.out.print("-> ServidorNIO: Número de hilos selector: ");
+        int selectores = Integer.parseInt(sc.nextLine().trim());
+
+        ServidorNIO servidor = new ServidorNIO(directorio, 54321, selectores);
+        Runtime.getRuntime().addShutdownHook(new Thread(servidor::detener, "Cierre-ServidorNIO"));
+        servidor.iniciar();
+    }
+}
@@ -0,0 +1,285 @@
+package unidad03.ejercicios.ejercicio01;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Formato binario del protocolo, que se activa con el comando "#proto bin".
+ *
+ * En modo texto las respuestas terminan con la línea FIN_RESPUESTA, así que el cliente tiene que
+ * comparar cada línea y un fichero llamado igual rompería el protocolo. En modo binario cada mensaje
+ * lleva delante su longitud y se lee entero de una sola vez:
+ *  - Petición (cliente -> servidor): [int longitud][texto UTF-8]
+ *  - Respuesta (servidor -> cliente): [byte estado][int longitud][líneas UTF-8 separadas por '\n']
+ *  - Contenido de un fichero (#get): [byte ESTADO_FICHERO][long longitud][bytes del fichero]
+ *  - Trozo de una subida (#put, cliente -> servidor): [int índice][int longitud][long CRC32][bytes];
+ *    el índice FIN_TROZOS indica que no quedan más trozos.
+ *  - Respuesta comprimida (tras "#comp on"): [byte estado | FLAG_COMPRIMIDA][int longitud]
+ *    [int longitud original][datos Deflate]. Solo se comprimen las tramas de UMBRAL_COMPRESION bytes
+ *    o más, cada una por separado y con DICCIONARIO como diccionario inicial.
+ *
+ * El cambio de formato se negocia en modo texto: el cliente envía "#proto bin" y espera la respuesta
+ * "Proto: bin" antes de mandar la primera trama. Si el servidor no lo admite responde con un error
+ * y la conexión sigue en modo texto.
+ *
+ * @author Miguel Angel Ramírez
+ */
+public final class TramaBinaria {
+    public static final String CMD_PROTO_BIN = "#proto bin";
+    public static final String RESPUESTA_PROTO_BIN = "Proto: bin";
+
+    /** Respuesta completa y correcta. */
+    public static final byte ESTADO_OK = 0;
+    /** Respuesta completa con un error. */
+    public static final byte ESTADO_ERROR = 1;
+    /** Respuesta a #fin; después el servidor cierra la conexión. */
+    public static final byte ESTADO_CIERRE = 2;
+    /** Trozo de una respuesta larga; le siguen más tramas de la misma respuesta. */
+    public static final byte ESTADO_PARCIAL = 3;
+    /** Contenido de un fichero (#get); la longitud va en un long y después vienen los bytes tal cual. */
+    public static final byte ESTADO_FICHERO = 4;
+
+    /** Bit del estado que indica que el contenido de la trama va comprimido con Deflate. */
+    public static final byte FLAG_COMPRIMIDA = 0x40;
+    /** Tamaño mínimo de una trama para comprimirla: en las pequeñas la cabecera de Deflate no compensa. */
+    public static final int UMBRAL_COMPRESION = 1024;
+    /**
+     * Diccionario inicial de Deflate, con los textos que más se repiten en las respuestas.
+     * Como cada trama se comprime por separado, sin él las primeras líneas de cada una no tendrían
+     * con qué compararse. Lo más frecuente va al final, que es lo que Deflate tiene más cerca.
+     */
+    public static final byte[] DICCIONARIO = ("Error: Comando no reconocido (Stats: peticiones= media= p50= p99= "
+            + "p99.9= máx= (ms)\nInfo: Host: . Puerto: Activo: 0h 00m 00s. Conexiones: . Comandos: . "
+            + "Bytes recibidos: . Bytes enviados: \nArbol: directorios, ficheros, bytes.\n ficheros= bytes= "
+            + "(total: [sin acceso]\nLista: Contenido de (desde ): \nLista: entradas. Hay más, siguiente desde: "
+            + "\n.json\n.xml\n.html\n.png\n.jpg\n.pdf\n.log\n.md\n.class\n.java\n.txt\nD \nF ")
+            .getBytes(StandardCharsets.UTF_8);
+
+    /** Índice del trozo que termina una subida (#put). */
+    public static final int FIN_TROZOS = -1;
+    /** Tamaño máximo de un trozo de subida. */
+    public static final int MAX_TROZO = 16 * 1024 * 1024;
+
+    private static final int MAX_PETICION = 64 * 1024;
+    private static final int MAX_RESPUESTA = 64 * 1024 * 1024;
+
+    private TramaBinaria() {
+    }
+
+    /**
+     * Envía una petición al servidor.
+     *
+     * @param out Flujo de salida del socket.
+     * @param mensaje La línea de la petición.
+     * @throws IOException Si ocurre un error de entrada/salida.
+     */
+    public static void escribirPeticion(DataOutputStream out, String mensaje) throws IOException {
+        escribirPeticion(out, mensaje, true);
+    }
+
+    /**
+     * Escribe una petición en el flujo, enviándola ya o dejándola en el buffer para juntarla con otras.
+     *
+     * @param out Flujo de salida del socket.
+     * @param mensaje La línea de la petición.
+     * @param vaciar true para hacer flush después de escribirla.
+     * @throws IOException Si ocurre un error de entrada/salida.
+     */
+    public static void escribirPeticion(DataOutputStream out, String mensaje, boolean vaciar) throws IOException {
+        byte[] datos = mensaje.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(datos.length);
+        out.write(datos);
+        if (vaciar) out.flush();
+    }
+
+    /**
+     * Escribe la cabecera de un trozo de subida (#put). Detrás deben ir los "longitud" bytes del trozo.
+     *
+     * @param out Flujo de salida del socket.
+     * @param indice Número del trozo (empezando en 0), o FIN_TROZOS para terminar.
+     * @param longitud Bytes del trozo.
+     * @param crc CRC32 de los bytes del trozo.
+     * @throws IOException Si ocurre un error de entrada/salida.
+     */
+    public static void escribirCabeceraTrozo(DataOutputStream out, int indice, int longitud, long crc) throws IOException {
+        out.writeInt(indice);
+        out.writeInt(longitud);
+        out.writeLong(crc);
+    }
+
+    /**
+     * Lee una petición del cliente.
+     *
+     * @param in Flujo de entrada del socket.
+     * @return El texto de la petición o null si el cliente ha cerrado la conexión.
+     * @throws IOException Si ocurre un error de entrada/salida o la trama no es válida.
+     */
+    public static String leerPeticion(DataInputStream in) throws IOException {
+        int longitud;
+        try {
+            longitud = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (longitud < 0 || longitud > MAX_PETICION) {
+            throw new IOException("Longitud de petición no válida: " + longitud);
+        }
+        byte[] datos = new byte[longitud];
+        in.readFully(datos);
+        return new String(datos, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Lee una trama de respuesta completa del servidor.
+     * La cabecera se lee de una vez, así el flujo puede no tener buffer (como en Cliente, que después
+     * lee los ficheros directamente del canal del socket).
+     *
+     * Si la trama es de tipo ESTADO_FICHERO solo se lee la cabecera: los bytes del fichero quedan en el
+     * flujo y quien llama debe leer getLongitud() bytes antes de pedir la siguiente trama.
+     *
+     * @param in Flujo de entrada del socket.
+     * @return La trama leída.
+     * @throws IOException Si ocurre un error de entrada/salida o la trama no es válida.
+     */
+    public static Trama leerRespuesta(DataInputStream in) throws IOException {
+        byte[] cabecera = new byte[9];
+        in.readFully(cabecera, 0, 5);
+        byte estado = cabecera[0];
+
+        if (estado == ESTADO_FICHERO) {
+            in.readFully(cabecera, 5, 4);
+            long longitud = ByteBuffer.wrap(cabecera, 1, 8).getLong();
+            return new Trama(estado, null, longitud);
+        }
+
+        int longitud = ByteBuffer.wrap(cabecera, 1, 4).getInt();
+        if (longitud < 0 || longitud > MAX_RESPUESTA) {
+            throw new IOException("Longitud de respuesta no válida: " + longitud);
+        }
+        byte[] datos = new byte[longitud];
+        in.readFully(datos);
+
+        if ((estado & FLAG_COMPRIMIDA) != 0) {
+            datos = descomprimir(datos);
+            return new Trama((byte) (estado & ~FLAG_COMPRIMIDA), datos, datos.length);
+        }
+        return new Trama(estado, datos, longitud);
+    }
+
+    /**
+     * Descomprime el contenido de una trama comprimida: [int longitud original][datos Deflate].
+     *
+     * @param comprimidos El contenido de la trama tal y como llegó.
+     * @return Los bytes originales.
+     * @throws IOException Si los datos no son válidos.
+     */
+    private static byte[] descomprimir(byte[] comprimidos) throws IOException {
+        if (comprimidos.length < 4) {
+            throw new IOException("Trama comprimida demasiado corta");
+        }
+        int original = ByteBuffer.wrap(comprimidos, 0, 4).getInt();
+        if (original < 0 || original > MAX_RESPUESTA) {
+            throw new IOException("Longitud original no válida: " + original);
+        }
+
+        byte[] datos = new byte[original];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(comprimidos, 4, comprimidos.length - 4);
+            int leidos = 0;
+            while (leidos < original) {
+                int n = inflater.inflate(datos, leidos, original - leidos);
+                if (n == 0) {
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(DICCIONARIO);
+                    } else if (inflater.finished() || inflater.needsInput()) {
+                        throw new IOException("Faltan datos en la trama comprimida");
+                    }
+                }
+                leidos += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Trama comprimida no válida: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+        return datos;
+    }
+
+    /**
+     * Descarta del flujo el contenido de una trama de fichero, para quien no quiera guardarlo.
+     *
+     * @param in Flujo de entrada del socket.
+     * @param trama La trama de fichero recién leída.
+     * @throws IOException Si ocurre un error de entrada/salida.
+     */
+    public static void saltarFichero(DataInputStream in, Trama trama) throws IOException {
+        if (trama.esFichero()) {
+            in.skipNBytes(trama.getLongitud());
+        }
+    }
+
+    /**
+     * Una trama de respuesta recibida por el cliente.
+     */
+    public static class Trama {
+        private final byte estado;
+        private final byte[] datos;
+        private final long longitud;
+
+        private Trama(byte estado, byte[] datos, long longitud) {
+            this.estado = estado;
+            this.datos = datos;
+            this.longitud = longitud;
+        }
+
+        public byte getEstado() {
+            return estado;
+        }
+
+        public byte[] getDatos() {
+            return datos;
+        }
+
+        /**
+         * @return Número de bytes del contenido (en las tramas de fichero, los que siguen en el flujo).
+         */
+        public long getLongitud() {
+            return longitud;
+        }
+
+        /**
+         * @return true si la trama anuncia el contenido de un fichero.
+         */
+        public boolean esFichero() {
+            return estado == ESTADO_FICHERO;
+        }
+
+        /**
+         * @return El contenido de la trama como texto (líneas separadas por '\n').
+         */
+        public String getTexto() {
+            return datos == null ? "" : new String(datos, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * @return true si es la última trama de la respuesta.
+         */
+        public boolean esUltima() {
+            return estado != ESTADO_PARCIAL && estado != ESTADO_FICHERO;
+        }
+
+        /**
+         * @return true si es la respuesta a #fin.
+         */
+        public boolean esCierre() {
+            return estado == ESTADO_CIERRE;
+        }
+    }
+}
@@ -1,9 +1,36 @@
 package unidad03.ejercicios.ejercicio02;
 
+import unidad03.ejercicios.ejercicio01.PoolConexiones;
+import unidad03.ejercicios.ejercicio01.Protocolo;
+import unidad03.ejercicios.ejercicio01.Respuesta;
+import unidad03.ejercicios.ejercicio01.TramaBinaria;
+
 import java.io.*;
 import java.net.ConnectException;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
 
 /**
  * Clase principal que gestiona el lado del Cliente.
@@ -15,10 +42,18 @@ public class ClienteArchivo {
     private Socket clienteSocket;
     private PrintWriter printWriter;
     private BufferedReader reader;
+    // Flujos del modo binario, se crean al negociar "#proto bin".
+    private DataInputStream entradaBinaria;
+    private DataOutputStream salidaBinaria;
+    private boolean binario;
     private final String HOST = "localhost";
     private final int PUERTO = 54321;
 
     private static final String FIN_RESPUESTA = "--- FIN RESPUESTA ---";
+    // Subida por trozos: tamaño de cada trozo, de cada zona proyectada en memoria y reintentos por trozo.
+    private static final int TAM_TROZO = 1024 * 1024;
+    private static final long TAM_PROYECCION = 256L * TAM_TROZO;
+    private static final int MAX_REINTENTOS = 3;
 
     /**
      * Establece la conexión con el servidor.
@@ -27,7 +62,8 @@ public class ClienteArchivo {
      */
     public boolean conectar(){
         try{
-            clienteSocket = new Socket(HOST, PUERTO);
+            // A través de un SocketChannel para que la subida por trozos escriba en el canal sin copias.
+            clienteSocket = SocketChannel.open(new InetSocketAddress(HOST, PUERTO)).socket();
             printWriter = new PrintWriter(clienteSocket.getOutputStream(), true);
             reader = new BufferedReader(new InputStreamReader(clienteSocket.getInputStream()));
             System.out.println("-> Cliente: Conectado al servidor (" + HOST + ": " + PUERTO + ")");
@@ -43,48 +79,105 @@ public class ClienteArchivo {
 
     /**
      * Envía mensajes al servidor desde un archivo especificado por el usuario.
-     * Lee el archivo línea por línea, envía cada línea al servidor y muestra la respuesta.
-     * Finaliza la comunicación al enviar el comando "#fin".
+     * Hay tres modos:
+     *  1. Paso a paso: envía una línea, espera su respuesta completa y la muestra antes de enviar la siguiente.
+     *  2. En tubería: envía las líneas sin esperar, con un máximo de peticiones pendientes (ventana),
+     *     mientras otro hilo va leyendo las respuestas en el mismo orden.
+     *  3. Subida: envía el fichero entero, tal cual, para que el servidor lo guarde (ver subirFichero).
+     *  4. Lote: la ruta es un directorio y se envían las líneas de todos sus ficheros por un pool
+     *     de conexiones que se reutilizan de un fichero a otro (ver enviarLote).
+     * En los dos primeros se finaliza al enviar el comando "#fin" y al terminar se muestran líneas/seg y latencias.
      */
     public void enviarDesdeArchivo(){
         Scanner sc = new Scanner(System.in);
         System.out.print("-> Cliente: Introduzca la ruta completa del fichero a enviar: ");
         String rutaArchivo = sc.nextLine();
+        System.out.print("-> Cliente: Modo de envío (1 = paso a paso, 2 = en tubería, 3 = subir el fichero, "
+                + "4 = lote de un directorio): ");
+        String modo = sc.nextLine().trim();
+        boolean tuberia = modo.equals("2");
+        int ventana = 1;
+        if (tuberia){
+            System.out.print("-> Cliente: Número máximo de peticiones pendientes: ");
+            ventana = Math.max(1, Integer.parseInt(sc.nextLine().trim()));
+        }
+
+        if (modo.equals("4")){
+            System.out.print("-> Cliente: Número de conexiones del pool: ");
+            int conexiones = Math.max(1, Integer.parseInt(sc.nextLine().trim()));
+            // El lote usa sus propias conexiones: la inicial no hace falta.
+            cerrar();
+            try {
+                enviarLote(Paths.get(rutaArchivo), conexiones);
+            } catch (NoSuchFileException e) {
+                System.err.println("-> Cliente: ERROR: Directorio no encontrado en la ruta especificada.");
+            } catch (IOException e) {
+                System.err.println("-> Cliente: Error de I/O durante el lote: " + e.getMessage());
+            } catch (InterruptedException e) {
+                System.err.println("-> Cliente: Lote interrumpido.");
+                Thread.currentThread().interrupt();
+            }
+            return;
+        }
+
+        if (modo.equals("3")){
+            // La subida siempre va en tramas binarias.
+            try {
+                negociarBinario();
+                if (binario) {
+                    subirFichero(Paths.get(rutaArchivo));
+                    enviarLinea(Protocolo.CMD_FIN, true);
+                    leerRespuestaCompleta(true);
+                } else {
+                    System.err.println("-> Cliente: La subida necesita el modo binario.");
+                }
+            } catch (NoSuchFileException e) {
+                System.err.println("-> Cliente: ERROR: Fichero no encontrado en la ruta especificada.");
+            } catch (IOException e) {
+                System.err.println("-> Cliente: Error de I/O durante la subida: " + e.getMessage());
+            } finally {
+                cerrar();
+            }
+            return;
+        }
+
+        System.out.print("-> Cliente: ¿Usar tramas binarias? (s/n): ");
+        boolean usarBinario = sc.nextLine().trim().equalsIgnoreCase("s");
+        boolean comprimir = false;
+        if (usarBinario){
+            System.out.print("-> Cliente: ¿Comprimir las respuestas grandes? (s/n): ");
+            comprimir = sc.nextLine().trim().equalsIgnoreCase("s");
+        }
 
         BufferedReader fileReader = null;
 
         try {
             fileReader = new BufferedReader(new FileReader(rutaArchivo));
-            String lineaArchivo;
-
-            System.out.println("-> Cliente: Iniciando el envío de mensajes desde el archivo '" + rutaArchivo + "'...");
-
-            // Leer el archivo línea por línea
-            while ((lineaArchivo = fileReader.readLine()) != null){
 
-                if (lineaArchivo.isEmpty()){
-                    continue; // Ignora líneas vacías
+            if (usarBinario){
+                negociarBinario();
+                if (binario && comprimir){
+                    // Las tramas comprimidas se descomprimen solas en TramaBinaria.leerRespuesta().
+                    enviarLinea(Protocolo.CMD_COMP + " on", true);
+                    leerRespuestaCompleta(true);
                 }
+            }
 
-                System.out.println("-> Cliente (Enviando): " + lineaArchivo);
-                printWriter.println(lineaArchivo);
-                // Asegura que el mensaje se envíe inmediatamente
-                printWriter.flush();
-
-                // Si es el comando de fin, leer la respuesta y salir
-                if (lineaArchivo.equalsIgnoreCase("#fin")){
-                    leerRespuestaCompleta(true); // Indica que es el comando final
-                    break;
-                }
+            System.out.println("-> Cliente: Iniciando el envío de mensajes desde el archivo '" + rutaArchivo + "'...");
 
-                // Leer y mostrar la respuesta completa del servidor
-                leerRespuestaCompleta(false);
+            if (tuberia){
+                enviarEnTuberia(fileReader, ventana);
+            } else {
+                enviarPasoAPaso(fileReader);
             }
 
         } catch (FileNotFoundException e) {
             System.err.println("-> Cliente: ERROR: Fichero no encontrado en la ruta especificada.");
         } catch (IOException e) {
             System.err.println("-> Cliente: Error de I/O durante la comunicación o lectura del archivo: " + e.getMessage());
+        } catch (InterruptedException e) {
+            System.err.println("-> Cliente: Envío interrumpido.");
+            Thread.currentThread().interrupt();
         } finally {
             // Cierra el lector de archivo
             try {
@@ -96,6 +189,348 @@ public class ClienteArchivo {
         }
     }
 
+    /**
+     * Modo paso a paso: cada línea espera a su respuesta antes de enviar la siguiente,
+     * por lo que cada línea cuesta un viaje de ida y vuelta completo.
+     *
+     * @param fileReader El lector del archivo ya abierto.
+     * @throws IOException Si ocurre un error de entrada/salida.
+     */
+    private void enviarPasoAPaso(BufferedReader fileReader) throws IOException {
+        String lineaArchivo;
+        long[] latencias = new long[1024];
+        int enviadas = 0;
+        long inicio = System.nanoTime();
+
+        // Leer el archivo línea por línea
+        while ((lineaArchivo = fileReader.readLine()) != null){
+
+            if (lineaArchivo.isEmpty()){
+                continue; // Ignora líneas vacías
+            }
+
+            System.out.println("-> Cliente (Enviando): " + lineaArchivo);
+            long envio = System.nanoTime();
+            enviarLinea(lineaArchivo, true);
+
+            // Si es el comando de fin, leer la respuesta y salir
+            boolean esFin = lineaArchivo.equalsIgnoreCase("#fin");
+            // Leer y mostrar la respuesta completa del servidor
+            leerRespuestaCompleta(esFin);
+
+            if (enviadas == latencias.length) latencias = Arrays.copyOf(latencias, enviadas * 2);
+            latencias[enviadas++] = System.nanoTime() - envio;
+
+            if (esFin){
+                break;
+            }
+        }
+        mostrarEstadisticas("paso a paso", latencias, enviadas, System.nanoTime() - inicio);
+    }
+
+    /**
+     * Modo en tubería: este hilo envía líneas mientras haya hueco en la ventana y un hilo lector
+     * recoge las respuestas. El servidor responde en orden, así que cada respuesta (delimitada por
+     * FIN_RESPUESTA) corresponde a la petición pendiente más antigua.
+     * Las respuestas no se muestran para no medir el tiempo de la consola.
+     *
+     * @param fileReader El lector del archivo ya abierto.
+     * @param ventana Número máximo de peticiones enviadas sin respuesta.
+     * @throws IOException Si ocurre un error al leer el archivo.
+     * @throws InterruptedException Si el hilo se interrumpe mientras espera hueco en la ventana.
+     */
+    private void enviarEnTuberia(BufferedReader fileReader, int ventana) throws IOException, InterruptedException {
+        Semaphore huecos = new Semaphore(ventana);
+        BlockingQueue<Long> tiemposEnvio = new ArrayBlockingQueue<>(ventana);
+        long[][] latencias = { new long[1024] };
+        int[] recibidas = { 0 };
+        AtomicBoolean lectorTerminado = new AtomicBoolean(false);
+
+        // Hilo lector: empareja cada respuesta con el tiempo de envío más antiguo.
+        Thread lector = new Thread(() -> {
+            try {
+                while (true) {
+                    Long envio = tiemposEnvio.take();
+                    boolean conexionCerrada = leerRespuestaSinMostrar();
+                    if (recibidas[0] == latencias[0].length) {
+                        latencias[0] = Arrays.copyOf(latencias[0], recibidas[0] * 2);
+                    }
+                    latencias[0][recibidas[0]++] = System.nanoTime() - envio;
+                    huecos.release();
+                    if (conexionCerrada) break;
+                }
+            } catch (IOException e) {
+                if (!clienteSocket.isClosed()) {
+                    System.err.println("-> Cliente: Error al leer las respuestas: " + e.getMessage());
+                }
+            } catch (InterruptedException e) {
+                // Se interrumpe cuando ya no quedan respuestas por leer.
+            } finally {
+                lectorTerminado.set(true);
+                // Despierta al hilo emisor por si estaba esperando hueco.
+                huecos.release(ventana);
+            }
+        }, "Lector-Respuestas");
+
+        String lineaArchivo;
+        int enviadas = 0;
+        long inicio = System.nanoTime();
+        lector.start();
+
+        while ((lineaArchivo = fileReader.readLine()) != null){
+            if (lineaArchivo.isEmpty()){
+                continue; // Ignora líneas vacías
+            }
+
+            if (!huecos.tryAcquire()){
+                // La ventana está llena: se envía de golpe lo acumulado y se espera a que haya hueco.
+                vaciarSalida();
+                huecos.acquire();
+            }
+            if (lectorTerminado.get()){
+                break; // El servidor ha cerrado la conexión.
+            }
+            tiemposEnvio.put(System.nanoTime());
+            enviarLinea(lineaArchivo, false);
+            enviadas++;
+
+            if (lineaArchivo.equalsIgnoreCase("#fin")){
+                break;
+            }
+        }
+        vaciarSalida();
+
+        // Espera a que lleguen todas las respuestas pendientes.
+        huecos.acquire(ventana);
+        lector.interrupt();
+        lector.join();
+        long total = System.nanoTime() - inicio;
+
+        if (recibidas[0] < enviadas){
+            System.err.println("-> Cliente: Solo se recibieron " + recibidas[0] + " de " + enviadas + " respuestas.");
+        }
+        mostrarEstadisticas("en tubería (ventana " + ventana + ")", latencias[0], recibidas[0], total);
+    }
+
+    /**
+     * Modo subida: envía el fichero con "#put nombre tamaño trozo" en trozos de TAM_TROZO bytes.
+     *
+     * El fichero se proyecta en memoria (FileChannel.map) por zonas de TAM_PROYECCION y cada trozo se
+     * escribe directamente en el canal del socket, sin copiarlo a un array. Cada trozo lleva su CRC32 y
+     * se espera la confirmación del servidor antes de enviar el siguiente; si el CRC no coincide se reenvía.
+     * El servidor responde primero con los bytes que ya tiene de una subida anterior, y se continúa desde ahí.
+     *
+     * @param ruta El fichero a subir.
+     * @throws IOException Si ocurre un error de entrada/salida o el servidor rechaza la subida.
+     */
+    private void subirFichero(Path ruta) throws IOException {
+        long tamaño = Files.size(ruta);
+        String nombre = ruta.getFileName().toString();
+        enviarLinea(Protocolo.CMD_PUT + " " + nombre + " " + tamaño + " " + TAM_TROZO, true);
+
+        TramaBinaria.Trama respuesta = TramaBinaria.leerRespuesta(entradaBinaria);
+        String texto = respuesta.getTexto().trim();
+        if (respuesta.getEstado() != TramaBinaria.ESTADO_OK) {
+            throw new IOException(texto);
+        }
+        long confirmados = Long.parseLong(texto.substring(texto.lastIndexOf(' ') + 1));
+        System.out.println("-> Cliente: Subiendo '" + nombre + "' (" + tamaño + " bytes), desde el byte " + confirmados);
+
+        SocketChannel canal = clienteSocket.getChannel();
+        CRC32 crc = new CRC32();
+        long inicio = System.nanoTime();
+        int totalTrozos = (int) ((tamaño + TAM_TROZO - 1) / TAM_TROZO);
+
+        try (FileChannel fichero = FileChannel.open(ruta, StandardOpenOption.READ)) {
+            MappedByteBuffer proyeccion = null;
+            long inicioProyeccion = 0;
+
+            for (int indice = (int) (confirmados / TAM_TROZO); indice < totalTrozos; indice++) {
+                long posicion = (long) indice * TAM_TROZO;
+                int longitud = (int) Math.min(TAM_TROZO, tamaño - posicion);
+                // Las zonas son múltiplos del trozo, así que un trozo nunca queda partido entre dos.
+                if (proyeccion == null || posicion >= inicioProyeccion + proyeccion.capacity()) {
+                    inicioProyeccion = posicion;
+                    proyeccion = fichero.map(FileChannel.MapMode.READ_ONLY, posicion,
+                            Math.min(TAM_PROYECCION, tamaño - posicion));
+                }
+                ByteBuffer trozo = proyeccion.slice((int) (posicion - inicioProyeccion), longitud);
+                crc.reset();
+                crc.update(trozo.duplicate());
+
+                enviarTrozo(canal, indice, trozo, crc.getValue());
+                if (indice % 64 == 63 || indice == totalTrozos - 1) {
+                    System.out.printf("-> Cliente: %d de %d trozos (%.0f%%)%n", indice + 1, totalTrozos,
+                            100.0 * (indice + 1) / totalTrozos);
+                }
+            }
+        }
+
+        TramaBinaria.escribirCabeceraTrozo(salidaBinaria, TramaBinaria.FIN_TROZOS, 0, 0);
+        salidaBinaria.flush();
+        respuesta = TramaBinaria.leerRespuesta(entradaBinaria);
+        System.out.print(respuesta.getTexto());
+        if (respuesta.getEstado() != TramaBinaria.ESTADO_OK) {
+            throw new IOException("La subida no se ha completado");
+        }
+
+        double segundos = (System.nanoTime() - inicio) / 1_000_000_000.0;
+        System.out.printf("-> Cliente: %.1f MB enviados en %.3f s -> %.1f MB/s%n",
+                (tamaño - confirmados) / (1024.0 * 1024), segundos, (tamaño - confirmados) / segundos / (1024 * 1024));
+    }
+
+    /**
+     * Modo lote: envía las líneas de cada fichero del directorio, varios ficheros a la vez,
+     * por las conexiones de un PoolConexiones. Cada fichero usa la conexión que esté libre, así que
+     * solo se abren tantas conexiones como ficheros simultáneos y el resto del lote no paga la conexión TCP.
+     * Las líneas "#fin" de los ficheros se saltan, porque cerrarían una conexión que se va a reutilizar.
+     *
+     * @param directorio El directorio con los ficheros a enviar.
+     * @param conexiones Ficheros que se envían a la vez (y tamaño del pool).
+     * @throws IOException Si no se puede leer el directorio.
+     * @throws InterruptedException Si se interrumpe la espera del lote.
+     */
+    private void enviarLote(Path directorio, int conexiones) throws IOException, InterruptedException {
+        List<Path> ficheros;
+        try (Stream<Path> rutas = Files.list(directorio)) {
+            ficheros = rutas.filter(Files::isRegularFile).sorted().toList();
+        }
+        System.out.println("-> Cliente: Enviando " + ficheros.size() + " ficheros con " + conexiones + " conexiones...");
+
+        LongAdder lineas = new LongAdder();
+        LongAdder errores = new LongAdder();
+        long inicio = System.nanoTime();
+        try (PoolConexiones pool = new PoolConexiones(HOST, PUERTO, conexiones)) {
+            ExecutorService hilos = Executors.newFixedThreadPool(conexiones);
+            for (Path fichero : ficheros) {
+                hilos.execute(() -> enviarFicheroDelLote(pool, fichero, lineas, errores));
+            }
+            hilos.shutdown();
+            hilos.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+
+            double segundos = (System.nanoTime() - inicio) / 1_000_000_000.0;
+            System.out.println("--- ESTADÍSTICAS (lote de " + ficheros.size() + " ficheros) ---");
+            System.out.printf("Líneas: %d en %.3f s -> %.1f líneas/seg. Errores: %d%n",
+                    lineas.sum(), segundos, lineas.sum() / segundos, errores.sum());
+            System.out.println("Conexiones abiertas: " + pool.getCreadas() + ". Reutilizadas: " + pool.getReutilizadas()
+                    + ". Descartadas: " + pool.getDescartadas());
+            System.out.println("------------------------------");
+        }
+    }
+
+    /**
+     * Envía las líneas de un fichero del lote, cada una por una conexión del pool.
+     */
+    private void enviarFicheroDelLote(PoolConexiones pool, Path fichero, LongAdder lineas, LongAdder errores) {
+        int enviadas = 0;
+        try (BufferedReader fileReader = Files.newBufferedReader(fichero)) {
+            String linea;
+            while ((linea = fileReader.readLine()) != null) {
+                if (linea.isEmpty() || linea.equalsIgnoreCase(Protocolo.CMD_FIN)) {
+                    continue;
+                }
+                Respuesta respuesta = pool.enviar(linea);
+                enviadas++;
+                if (respuesta.isError()) errores.increment();
+            }
+            System.out.println("-> Cliente: '" + fichero.getFileName() + "' enviado (" + enviadas + " líneas)");
+        } catch (IOException e) {
+            errores.increment();
+            System.err.println("-> Cliente: Error al enviar '" + fichero.getFileName() + "': " + e.getMessage());
+        } finally {
+            lineas.add(enviadas);
+        }
+    }
+
+    /**
+     * Envía un trozo y espera su confirmación, reenviándolo si el servidor avisa de que el CRC no coincide.
+     *
+     * @param canal Canal del socket.
+     * @param indice Número del trozo.
+     * @param trozo Los bytes del trozo (zona del fichero proyectado).
+     * @param crc CRC32 del trozo.
+     * @throws IOException Si ocurre un error de entrada/salida o se agotan los reintentos.
+     */
+    private void enviarTrozo(SocketChannel canal, int indice, ByteBuffer trozo, long crc) throws IOException {
+        for (int intento = 0; intento <= MAX_REINTENTOS; intento++) {
+            TramaBinaria.escribirCabeceraTrozo(salidaBinaria, indice, trozo.remaining(), crc);
+            salidaBinaria.flush();
+            ByteBuffer datos = trozo.duplicate();
+            while (datos.hasRemaining()) {
+                canal.write(datos);
+            }
+
+            TramaBinaria.Trama confirmacion = TramaBinaria.leerRespuesta(entradaBinaria);
+            if (confirmacion.getEstado() == TramaBinaria.ESTADO_OK) {
+                return;
+            }
+            System.err.print("-> Cliente: " + confirmacion.getTexto());
+        }
+        throw new IOException("El trozo " + indice + " no se ha podido enviar");
+    }
+
+    /**
+     * Lee una respuesta completa del servidor sin mostrarla.
+     *
+     * @return true si la respuesta era la de cierre (#fin) o el servidor cerró la conexión.
+     * @throws IOException Si ocurre un error de entrada/salida.
+     */
+    private boolean leerRespuestaSinMostrar() throws IOException {
+        if (binario) {
+            TramaBinaria.Trama trama;
+            do {
+                trama = TramaBinaria.leerRespuesta(entradaBinaria);
+                // Los ficheros de #get no se guardan: solo se descartan sus bytes.
+                if (trama.esFichero()) TramaBinaria.saltarFichero(entradaBinaria, trama);
+            } while (!trama.esUltima());
+            return trama.esCierre();
+        }
+
+        String linea;
+        while ((linea = reader.readLine()) != null) {
+            if (linea.equals(FIN_RESPUESTA)) {
+                return false;
+            }
+            if (linea.startsWith("Fin: Cerrando conexión")) {
+                return true;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Muestra el rendimiento del envío: líneas por segundo y percentiles de latencia.
+     *
+     * @param modo Nombre del modo de envío.
+     * @param latencias Latencias de cada línea en nanosegundos.
+     * @param n Número de latencias válidas en el array.
+     * @param nanosTotales Tiempo total del envío.
+     */
+    private void mostrarEstadisticas(String modo, long[] latencias, int n, long nanosTotales){
+        if (n == 0){
+            System.out.println("-> Cliente: No se ha enviado ninguna línea.");
+            return;
+        }
+        long[] ordenadas = Arrays.copyOf(latencias, n);
+        Arrays.sort(ordenadas);
+        double segundos = nanosTotales / 1_000_000_000.0;
+
+        System.out.println("--- ESTADÍSTICAS (" + modo + ") ---");
+        System.out.printf("Líneas: %d en %.3f s -> %.1f líneas/seg%n", n, segundos, n / segundos);
+        System.out.printf("Latencia (ms): p50=%.3f p90=%.3f p99=%.3f máx=%.3f%n",
+                percentil(ordenadas, 50) / 1e6, percentil(ordenadas, 90) / 1e6,
+                percentil(ordenadas, 99) / 1e6, ordenadas[n - 1] / 1e6);
+        System.out.println("------------------------------");
+    }
+
+    /**
+     * Devuelve el percentil indicado de un array ya ordenado.
+     */
+    private static long percentil(long[] ordenadas, double p){
+        int indice = (int) Math.ceil(p / 100.0 * ordenadas.length) - 1;
+        return ordenadas[Math.max(0, Math.min(indice, ordenadas.length - 1))];
+    }
+
     /**
      * Lee la respuesta completa del servidor hasta encontrar el fin de respuesta.
      * Muestra la respuesta en la consola.
@@ -110,15 +545,28 @@ public class ClienteArchivo {
             System.out.println("--- RESPUESTA DEL SERVIDOR ---");
         }
 
-        while ((linea = reader.readLine()) != null) {
-            if (linea.equals(FIN_RESPUESTA)) {
-                break; // Fin de la respuesta
-            }
-            System.out.println(linea);
+        if (binario) {
+            // En modo binario la respuesta llega entera en una o varias tramas, sin comparar líneas.
+            TramaBinaria.Trama trama;
+            do {
+                trama = TramaBinaria.leerRespuesta(entradaBinaria);
+                if (trama.esFichero()) {
+                    TramaBinaria.saltarFichero(entradaBinaria, trama);
+                    System.out.println("(fichero de " + trama.getLongitud() + " bytes descartado)");
+                }
+                System.out.print(trama.getTexto());
+            } while (!trama.esUltima());
+        } else {
+            while ((linea = reader.readLine()) != null) {
+                if (linea.equals(FIN_RESPUESTA)) {
+                    break; // Fin de la respuesta
+                }
+                System.out.println(linea);
 
-            // Si es el mensaje de cierre, salimos del bucle
-            if (linea.startsWith("Fin: Cerrando conexión")) {
-                break;
+                // Si es el mensaje de cierre, salimos del bucle
+                if (linea.startsWith("Fin: Cerrando conexión")) {
+                    break;
+                }
             }
         }
         // Si no es un comando de cierre, mostramos el pie de página
@@ -127,6 +575,65 @@ public class ClienteArchivo {
         }
     }
 
+    /**
+     * Envía una línea al servidor en el formato de la conexión (texto o trama binaria).
+     *
+     * @param linea La línea a enviar.
+     * @param vaciar true para enviarla ya; false para dejarla en el buffer y juntarla con las siguientes.
+     * @throws IOException Si ocurre un error de entrada/salida.
+     */
+    private void enviarLinea(String linea, boolean vaciar) throws IOException {
+        if (binario) {
+            TramaBinaria.escribirPeticion(salidaBinaria, linea, vaciar);
+        } else {
+            // write() no provoca el autoflush del PrintWriter, println() sí.
+            printWriter.write(linea);
+            printWriter.write('\n');
+            if (vaciar) printWriter.flush();
+        }
+    }
+
+    /**
+     * Envía lo que haya quedado en el buffer de salida.
+     *
+     * @throws IOException Si ocurre un error de entrada/salida.
+     */
+    private void vaciarSalida() throws IOException {
+        if (binario) {
+            salidaBinaria.flush();
+        } else {
+            printWriter.flush();
+        }
+    }
+
+    /**
+     * Pide al servidor el cambio a tramas binarias ("#proto bin").
+     * Se espera la confirmación en modo texto antes de enviar ninguna trama;
+     * si el servidor no lo admite se sigue en modo texto.
+     *
+     * @throws IOException Si ocurre un error de entrada/salida.
+     */
+    private void negociarBinario() throws IOException {
+        printWriter.println(TramaBinaria.CMD_PROTO_BIN);
+
+        String linea;
+        boolean aceptado = false;
+        while ((linea = reader.readLine()) != null && !linea.equals(FIN_RESPUESTA)) {
+            if (linea.equals(TramaBinaria.RESPUESTA_PROTO_BIN)) {
+                aceptado = true;
+            }
+        }
+
+        if (aceptado) {
+            entradaBinaria = new DataInputStream(new BufferedInputStream(clienteSocket.getInputStream()));
+            salidaBinaria = new DataOutputStream(new BufferedOutputStream(clienteSocket.getOutputStream()));
+            binario = true;
+            System.out.println("-> Cliente: Modo binario activado.");
+        } else {
+            System.out.println("-> Cliente: El servidor no admite el modo binario, se usa el modo texto.");
+        }
+    }
+
     /**
      * Cierra los recursos abiertos: PrintWriter, BufferedReader y Socket.
      */